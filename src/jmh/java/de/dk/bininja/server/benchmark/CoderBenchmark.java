@@ -0,0 +1,106 @@
+package de.dk.bininja.server.benchmark;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.server.net.GcmCoder;
+import de.dk.util.net.Coder;
+import de.dk.util.net.security.CipherCoderAdapter;
+
+/**
+ * The cost of encoding a single chunk of a download for the wire.
+ * Every chunk is base64 encoded by the connection and additionally encrypted on secure connections,
+ * either by the {@link CipherCoderAdapter} or by the {@link GcmCoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoderBenchmark {
+   @Param({"1024", "8192", "65536", "1048576"})
+   private int chunkSize;
+
+   private byte[] chunk;
+   private byte[] base64Chunk;
+   private byte[] encryptedChunk;
+   private Coder cipher;
+   private GcmCoder gcmServer;
+   private GcmCoder gcmClient;
+
+   @Setup
+   public void setup() throws Exception {
+      this.chunk = new byte[chunkSize];
+      new Random(0).nextBytes(chunk);
+      this.base64Chunk = Base64.getEncoder().encode(chunk);
+
+      KeyGenerator generator = KeyGenerator.getInstance("AES");
+      generator.init(128);
+      this.cipher = new CipherCoderAdapter(generator.generateKey());
+      this.encryptedChunk = cipher.encode(chunk);
+
+      SecretKey key = generator.generateKey();
+      this.gcmServer = new GcmCoder(key, true);
+      this.gcmClient = new GcmCoder(key, false);
+   }
+
+   @Benchmark
+   public byte[] base64Encode() {
+      return Base64.getEncoder().encode(chunk);
+   }
+
+   @Benchmark
+   public byte[] base64Decode() {
+      return Base64.getDecoder().decode(base64Chunk);
+   }
+
+   @Benchmark
+   public byte[] cipherEncode() throws Exception {
+      return cipher.encode(chunk);
+   }
+
+   @Benchmark
+   public byte[] cipherDecode() throws Exception {
+      return cipher.decode(encryptedChunk);
+   }
+
+   @Benchmark
+   public byte[] secureEncode() throws Exception {
+      return Base64.getEncoder().encode(cipher.encode(chunk));
+   }
+
+   @Benchmark
+   public byte[] gcmEncode() throws Exception {
+      return gcmServer.encode(chunk);
+   }
+
+   /**
+    * GCM messages can only be decoded once and in order, so each chunk is encoded by the server and decoded by the client.
+    */
+   @Benchmark
+   public byte[] gcmRoundTrip() throws Exception {
+      return gcmClient.decode(gcmServer.encode(chunk));
+   }
+
+   @Benchmark
+   public byte[] gcmSecureEncode() throws Exception {
+      return Base64.getEncoder().encode(gcmServer.encode(chunk));
+   }
+}
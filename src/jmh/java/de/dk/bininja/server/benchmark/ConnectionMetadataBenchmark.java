@@ -0,0 +1,73 @@
+package de.dk.bininja.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.ConnectionMetadata;
+import de.dk.bininja.net.ConnectionType;
+
+/**
+ * Reading the metadata of all connections, as an admin client does.
+ * Every connection is a real loopback connection, so the limit of open files
+ * has to allow two file descriptors per connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionMetadataBenchmark {
+   @Param({"100", "10000"})
+   private int connections;
+
+   private LocalServer server;
+   private final List<Base64Connection> clients = new ArrayList<>();
+
+   @Setup
+   public void setup() throws Exception {
+      this.server = new LocalServer();
+      for (int i = 0; i < connections; i++)
+         clients.add(server.connect(i % 100 == 0 ? ConnectionType.ADMIN : ConnectionType.CLIENT, false));
+
+      while (server.getServer().countTotalConnections() < connections)
+         Thread.sleep(10);
+   }
+
+   @TearDown
+   public void tearDown() throws Exception {
+      for (Base64Connection client : clients)
+         LocalServer.close(client);
+
+      clients.clear();
+      server.close();
+   }
+
+   @Benchmark
+   public Collection<ConnectionMetadata> all() {
+      return server.getServer()
+                   .getConnectionMetadataOf(ConnectionType.ALL);
+   }
+
+   @Benchmark
+   public Collection<ConnectionMetadata> downloadClients() {
+      return server.getServer()
+                   .getConnectionMetadataOf(ConnectionType.CLIENT);
+   }
+}
@@ -0,0 +1,120 @@
+package de.dk.bininja.server.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.dk.bininja.server.net.ExecutionMode;
+
+/**
+ * Measures the memory and the threads, that tasks blocked in a socket read occupy in one execution mode,
+ * like downloads waiting for their origin.
+ * The chunk buffers of the downloads are not part of the measurement.
+ * Every task reads from its own loopback connection, so the limit of open files
+ * has to allow two file descriptors per task.
+ * The resident set size and the threads of the process are read from <code>/proc/self/status</code>,
+ * so they are only reported on Linux. Run it once per mode, because the resident set of a process does not shrink.
+ * <p>
+ * Arguments: <code>&lt;thread|pool|virtual&gt; [tasks, default 2000] [pool size, default 256]</code>
+ */
+public class FootprintProbe {
+   public static void main(String... args) throws Exception {
+      ExecutionMode mode = ExecutionMode.parse(args.length > 0 ? args[0] : "thread");
+      int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+      int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : ExecutionMode.DEFAULT_POOL_SIZE;
+
+      List<Socket> clients = new ArrayList<>();
+      List<Socket> origins = new ArrayList<>();
+      try (ServerSocket listener = new ServerSocket(0, tasks, InetAddress.getLoopbackAddress())) {
+         for (int i = 0; i < tasks; i++) {
+            clients.add(new Socket(listener.getInetAddress(), listener.getLocalPort()));
+            origins.add(listener.accept());
+         }
+
+         // The connections are open before, so only the tasks are measured
+         Snapshot before = Snapshot.take();
+         ExecutorService executor = mode.createExecutor("probe", poolSize);
+         // Only as many tasks as the pool has threads block, the others wait in its queue
+         int running = mode == ExecutionMode.POOL ? Math.min(tasks, poolSize) : tasks;
+         CountDownLatch blocked = new CountDownLatch(running);
+         for (Socket client : clients) {
+            executor.execute(() -> {
+               blocked.countDown();
+               try (InputStream in = client.getInputStream()) {
+                  in.read();
+               } catch (IOException e) {
+                  // Closed at the end of the measurement
+               }
+            });
+         }
+         blocked.await(1, TimeUnit.MINUTES);
+         // Give the tasks time to reach the read
+         Thread.sleep(1000);
+         Snapshot after = Snapshot.take();
+
+         System.out.println(mode + " mode, " + running + " blocked and " + (tasks - running) + " queued tasks"
+                            + ", java " + System.getProperty("java.version"));
+         System.out.println(after.report(before, running));
+
+         for (Socket origin : origins)
+            origin.close();
+
+         executor.shutdown();
+         executor.awaitTermination(1, TimeUnit.MINUTES);
+      }
+   }
+
+   private static class Snapshot {
+      private final long heap;
+      private final long rss;
+      private final long threads;
+
+      private Snapshot(long heap, long rss, long threads) {
+         this.heap = heap;
+         this.rss = rss;
+         this.threads = threads;
+      }
+
+      static Snapshot take() throws IOException {
+         MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+         for (int i = 0; i < 3; i++)
+            System.gc();
+
+         long heap = memory.getHeapMemoryUsage().getUsed();
+         long rss = -1;
+         long threads = -1;
+         if (Files.isReadable(Paths.get("/proc/self/status"))) {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+               if (line.startsWith("VmRSS:"))
+                  rss = Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+               else if (line.startsWith("Threads:"))
+                  threads = Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+         }
+         return new Snapshot(heap, rss, threads);
+      }
+
+      String report(Snapshot before, int tasks) {
+         return String.format("heap: +%d KiB (%.1f KiB per blocked task)%n"
+                              + "rss: +%d KiB (%.1f KiB per blocked task)%n"
+                              + "os threads: +%d",
+                              (heap - before.heap) / 1024,
+                              (heap - before.heap) / 1024d / tasks,
+                              (rss - before.rss) / 1024,
+                              (rss - before.rss) / 1024d / tasks,
+                              threads - before.threads);
+      }
+   }
+}
@@ -0,0 +1,53 @@
+package de.dk.bininja.server.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.ConnectionType;
+
+/**
+ * The time from opening a socket to the server until the connection answer is received,
+ * including the session key arrangement of secure connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandshakeBenchmark {
+   @Param({"false", "true"})
+   private boolean secure;
+
+   private LocalServer server;
+
+   @Setup
+   public void setup() throws Exception {
+      this.server = LocalServer.secure();
+   }
+
+   @TearDown
+   public void tearDown() throws Exception {
+      server.close();
+   }
+
+   @Benchmark
+   public Base64Connection handshake() throws Exception {
+      Base64Connection connection = server.connect(ConnectionType.CLIENT, secure);
+      LocalServer.close(connection);
+      return connection;
+   }
+}
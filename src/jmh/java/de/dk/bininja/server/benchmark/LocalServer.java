@@ -0,0 +1,143 @@
+package de.dk.bininja.server.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.ConnectionType;
+import de.dk.bininja.net.packet.ConnectionAnswerPacket;
+import de.dk.bininja.net.packet.ConnectionRequestPacket;
+import de.dk.bininja.server.net.Server;
+import de.dk.util.net.security.CipherCoderAdapter;
+import de.dk.util.net.security.SessionKeyArrangement;
+
+/**
+ * A {@link Server} accepting connections on the loopback interface
+ * and the client side of the handshake to connect to it.
+ */
+public class LocalServer implements AutoCloseable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(LocalServer.class);
+
+   private final Server server;
+   private final KeyPair keys;
+   private final ServerSocket serverSocket;
+   private final Thread acceptor;
+
+   public LocalServer(Server server, KeyPair keys) throws IOException {
+      this.server = server;
+      this.keys = keys;
+      this.serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+      this.acceptor = new Thread(this::accept, "bininja-benchmark-acceptor");
+      acceptor.setDaemon(true);
+      acceptor.start();
+   }
+
+   public LocalServer() throws IOException {
+      this((KeyPair) null);
+   }
+
+   private LocalServer(KeyPair keys) throws IOException {
+      this(new Server(() -> {}, keys), keys);
+   }
+
+   /**
+    * Creates a server, that supports secure connections.
+    */
+   public static LocalServer secure() throws IOException {
+      return new LocalServer(generateKeys());
+   }
+
+   public static KeyPair generateKeys() {
+      try {
+         KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+         generator.initialize(2048);
+         return generator.generateKeyPair();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("RSA not supported", e);
+      }
+   }
+
+   private void accept() {
+      while (!serverSocket.isClosed()) {
+         try {
+            Socket socket = serverSocket.accept();
+            server.newConnection(socket);
+         } catch (SocketException e) {
+            // Closed
+         } catch (IOException e) {
+            LOGGER.warn("Could not accept a connection", e);
+         }
+      }
+   }
+
+   /**
+    * Connects to the server like a client does, including the session key arrangement of secure connections.
+    *
+    * @return The established connection, that is not started yet
+    */
+   public Base64Connection connect(ConnectionType type, boolean secure) throws IOException {
+      Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+      Base64Connection connection = new Base64Connection(socket);
+      try {
+         if (secure) {
+            connection.send(new ConnectionRequestPacket(type, true));
+            SecretKey sessionKey = new SessionKeyArrangement(connection, connection.getObjectOutput())
+                                          .setGenerateSessionKey(true)
+                                          .setPublicKey(keys.getPublic())
+                                          .arrange();
+
+            connection.appendCoder(new CipherCoderAdapter(sessionKey));
+         }
+         connection.send(new ConnectionRequestPacket(type));
+
+         ConnectionAnswerPacket answer = (ConnectionAnswerPacket) connection.readObject();
+         if (!answer.isAccepted())
+            throw new IOException("The server declined the connection");
+      } catch (IOException | RuntimeException e) {
+         close(connection);
+         throw e;
+      } catch (GeneralSecurityException e) {
+         close(connection);
+         throw new IOException("Could not secure the connection", e);
+      }
+      return connection;
+   }
+
+   public static void close(Base64Connection connection) {
+      try {
+         if (!connection.isClosed())
+            connection.close(0);
+      } catch (IOException e) {
+         // Already broken
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   public Server getServer() {
+      return server;
+   }
+
+   public int getPort() {
+      return serverSocket.getLocalPort();
+   }
+
+   @Override
+   public void close() throws Exception {
+      serverSocket.close();
+      acceptor.join();
+      server.destroy();
+   }
+}
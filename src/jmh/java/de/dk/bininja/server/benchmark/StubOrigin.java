@@ -0,0 +1,93 @@
+package de.dk.bininja.server.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An origin on the loopback interface, that serves generated content from memory.
+ * The path of a request is the size of the content in bytes, e.g. <code>/1048576</code>.
+ */
+public class StubOrigin implements AutoCloseable {
+   private static final int WRITE_SIZE = 64 * 1024;
+
+   private final HttpServer server;
+   private final ExecutorService executor;
+   private final byte[] block = new byte[WRITE_SIZE];
+
+   public StubOrigin() throws IOException {
+      new Random(0).nextBytes(block);
+      this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      this.executor = Executors.newCachedThreadPool();
+      server.setExecutor(executor);
+      server.createContext("/", this::handle);
+      server.start();
+   }
+
+   private void handle(HttpExchange exchange) throws IOException {
+      long length;
+      try {
+         length = Long.parseLong(exchange.getRequestURI().getPath().substring(1));
+      } catch (NumberFormatException e) {
+         exchange.sendResponseHeaders(404, -1);
+         exchange.close();
+         return;
+      }
+
+      exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+      exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + length + ".bin\"");
+      try {
+         beforeResponse();
+         exchange.sendResponseHeaders(200, length == 0 ? -1 : length);
+         try (OutputStream out = exchange.getResponseBody()) {
+            for (long remaining = length; remaining > 0;) {
+               int n = (int) Math.min(remaining, block.length);
+               beforeWrite(n);
+               out.write(block, 0, n);
+               remaining -= n;
+            }
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         exchange.close();
+      }
+   }
+
+   /**
+    * Called before the response headers are sent. Does nothing by default.
+    */
+   protected void beforeResponse() throws InterruptedException {
+
+   }
+
+   /**
+    * Called before a block of the content is written. Does nothing by default.
+    */
+   protected void beforeWrite(int bytes) throws InterruptedException {
+
+   }
+
+   public URL urlOf(long length) throws MalformedURLException {
+      return new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), getPort(), "/" + length);
+   }
+
+   public int getPort() {
+      return server.getAddress().getPort();
+   }
+
+   @Override
+   public void close() {
+      server.stop(0);
+      executor.shutdownNow();
+   }
+}
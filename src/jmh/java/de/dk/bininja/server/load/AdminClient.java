@@ -0,0 +1,59 @@
+package de.dk.bininja.server.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.ConnectionType;
+import de.dk.bininja.server.benchmark.LocalServer;
+import de.dk.bininja.server.net.packet.MetricsPacket;
+
+/**
+ * A simulated admin client, that reads the metrics of the server periodically until it is interrupted.
+ */
+public class AdminClient implements Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(AdminClient.class);
+
+   private final LocalServer server;
+   private final boolean secure;
+   private final long intervalMillis;
+   private final LoadReport report;
+
+   public AdminClient(LocalServer server, boolean secure, long intervalMillis, LoadReport report) {
+      this.server = server;
+      this.secure = secure;
+      this.intervalMillis = intervalMillis;
+      this.report = report;
+   }
+
+   @Override
+   public void run() {
+      long begin = System.nanoTime();
+      Base64Connection connection;
+      try {
+         connection = server.connect(ConnectionType.ADMIN, secure);
+      } catch (Exception e) {
+         LOGGER.warn("Could not connect", e);
+         report.failedHandshakes.incrementAndGet();
+         return;
+      }
+      report.handshakes.add(System.nanoTime() - begin);
+
+      try {
+         while (!Thread.currentThread().isInterrupted()) {
+            long request = System.nanoTime();
+            connection.send(new MetricsPacket("bininja_downloads"));
+            connection.readObject();
+            report.adminRequests.add(System.nanoTime() - request);
+            Thread.sleep(intervalMillis);
+         }
+      } catch (InterruptedException e) {
+         // Load test finished
+      } catch (Exception e) {
+         if (!Thread.currentThread().isInterrupted())
+            LOGGER.warn("Admin request failed", e);
+      } finally {
+         LocalServer.close(connection);
+      }
+   }
+}
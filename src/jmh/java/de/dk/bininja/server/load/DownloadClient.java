@@ -0,0 +1,139 @@
+package de.dk.bininja.server.load;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.ConnectionType;
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
+import de.dk.bininja.net.packet.download.DownloadCompletePacket;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.bininja.server.benchmark.LocalServer;
+import de.dk.bininja.server.net.packet.DownloadQueuedPacket;
+import de.dk.ch.Channel;
+import de.dk.ch.ChannelDeclinedException;
+import de.dk.ch.ChannelHandler;
+import de.dk.ch.ChannelListener;
+import de.dk.ch.ChannelManager;
+
+/**
+ * A simulated download client, that downloads one url after another over its own connection.
+ */
+public class DownloadClient implements Runnable, ChannelHandler<DownloadPacket> {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadClient.class);
+
+   private static final long TIMEOUT_MINUTES = 10;
+
+   private final LocalServer server;
+   private final boolean secure;
+   private final List<URL> urls;
+   private final int downloads;
+   private final LoadReport report;
+   private final Random random;
+
+   public DownloadClient(LocalServer server, boolean secure, List<URL> urls, int downloads, LoadReport report, long seed) {
+      this.server = server;
+      this.secure = secure;
+      this.urls = urls;
+      this.downloads = downloads;
+      this.report = report;
+      this.random = new Random(seed);
+   }
+
+   @Override
+   public void run() {
+      long begin = System.nanoTime();
+      Base64Connection connection;
+      try {
+         connection = server.connect(ConnectionType.CLIENT, secure);
+      } catch (Exception e) {
+         LOGGER.warn("Could not connect", e);
+         report.failedHandshakes.incrementAndGet();
+         return;
+      }
+      report.handshakes.add(System.nanoTime() - begin);
+
+      try {
+         ChannelManager channels = connection.attachMultiplexer(this);
+         connection.start();
+         for (int i = 0; i < downloads; i++)
+            download(channels, urls.get(random.nextInt(urls.size())));
+      } finally {
+         LocalServer.close(connection);
+      }
+   }
+
+   private void download(ChannelManager channels, URL url) {
+      long begin = System.nanoTime();
+      try {
+         Channel<DownloadPacket> channel = channels.establishNewChannel(DownloadPacket.class, Optional.empty());
+         ChannelDownload download = new ChannelDownload(channel);
+         channel.addListener(download);
+         channel.send(new DownloadRequestPacket(url));
+         report.bytes.addAndGet(download.done.get(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+         report.downloads.add(System.nanoTime() - begin);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         report.failedDownloads.incrementAndGet();
+      } catch (Exception e) {
+         LOGGER.warn("Download of " + url + " failed", e);
+         report.failedDownloads.incrementAndGet();
+      }
+   }
+
+   @Override
+   public void newChannelRequested(Channel<DownloadPacket> channel,
+                                   Optional<DownloadPacket> initialMsg) throws ChannelDeclinedException {
+      throw new ChannelDeclinedException();
+   }
+
+   @Override
+   public void channelClosed(Channel<DownloadPacket> channel) {
+
+   }
+
+   @Override
+   public Class<DownloadPacket> getType() {
+      return DownloadPacket.class;
+   }
+
+   private static class ChannelDownload implements ChannelListener<DownloadPacket> {
+      private final Channel<DownloadPacket> channel;
+      private final CompletableFuture<Long> done = new CompletableFuture<>();
+      private long bytes;
+
+      ChannelDownload(Channel<DownloadPacket> channel) {
+         this.channel = channel;
+      }
+
+      @Override
+      public void received(DownloadPacket packet) {
+         if (packet instanceof DownloadQueuedPacket) {
+            return;
+         } else if (packet instanceof DownloadHeaderPacket) {
+            try {
+               channel.send(new DownloadReadyPacket());
+            } catch (Exception e) {
+               done.completeExceptionally(e);
+            }
+         } else if (packet instanceof DownloadDataPacket) {
+            bytes += ((DownloadDataPacket) packet).getData().length;
+         } else if (packet instanceof DownloadCompletePacket) {
+            done.complete(bytes);
+         } else if (packet instanceof DownloadCancelPacket) {
+            done.completeExceptionally(new IllegalStateException("Cancelled: " + ((DownloadCancelPacket) packet).getMsg()));
+         }
+      }
+   }
+}
@@ -0,0 +1,107 @@
+package de.dk.bininja.server.load;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.dk.bininja.server.benchmark.LocalServer;
+
+/**
+ * Puts load on a server in this process with simulated download and admin clients, that connect over the loopback interface.
+ * The content is served by a local origin with a configurable latency and bandwidth.
+ * <p>
+ * Arguments (all optional):
+ * <pre>
+ * --clients &lt;n&gt;          Number of download clients, default 50
+ * --downloads &lt;n&gt;        Downloads per client, default 10
+ * --admins &lt;n&gt;           Number of admin clients, default 2
+ * --admin-interval &lt;ms&gt;  Time between the requests of an admin client, default 100
+ * --sizes &lt;bytes,...&gt;    Sizes of the content, default 65536,1048576,8388608
+ * --latency &lt;ms&gt;         Latency of the origin, default 20
+ * --bandwidth &lt;KB/s&gt;     Bandwidth of every origin response, default unlimited
+ * --secure              Use secure connections
+ * </pre>
+ */
+public class LoadGenerator {
+   private final int clients;
+   private final int downloads;
+   private final int admins;
+   private final long adminInterval;
+   private final List<Long> sizes = new ArrayList<>();
+   private final long latency;
+   private final long bandwidth;
+   private final boolean secure;
+
+   public LoadGenerator(Map<String, String> args) {
+      this.clients = Integer.parseInt(args.getOrDefault("clients", "50"));
+      this.downloads = Integer.parseInt(args.getOrDefault("downloads", "10"));
+      this.admins = Integer.parseInt(args.getOrDefault("admins", "2"));
+      this.adminInterval = Long.parseLong(args.getOrDefault("admin-interval", "100"));
+      for (String size : args.getOrDefault("sizes", "65536,1048576,8388608").split(","))
+         sizes.add(Long.parseLong(size.trim()));
+
+      this.latency = Long.parseLong(args.getOrDefault("latency", "20"));
+      this.bandwidth = Long.parseLong(args.getOrDefault("bandwidth", "0")) * 1024;
+      this.secure = args.containsKey("secure");
+   }
+
+   public static void main(String... args) throws Exception {
+      Map<String, String> parsed = new HashMap<>();
+      for (int i = 0; i < args.length; i++) {
+         if (!args[i].startsWith("--"))
+            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+
+         String name = args[i].substring(2);
+         boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+         parsed.put(name, hasValue ? args[++i] : "");
+      }
+      new LoadGenerator(parsed).run();
+   }
+
+   public LoadReport run() throws Exception {
+      LoadReport report = new LoadReport();
+      try (ThrottledOrigin origin = new ThrottledOrigin(latency, bandwidth);
+           LocalServer server = secure ? LocalServer.secure() : new LocalServer()) {
+         List<URL> urls = urlsOf(origin);
+         System.out.println("Running " + clients + " download clients with " + downloads + " downloads each of "
+                            + sizes + " bytes and " + admins + " admin clients"
+                            + (secure ? " over secure connections." : "."));
+
+         ExecutorService adminExecutor = Executors.newFixedThreadPool(Math.max(1, admins));
+         for (int i = 0; i < admins; i++)
+            adminExecutor.execute(new AdminClient(server, secure, adminInterval, report));
+
+         long begin = System.nanoTime();
+         ExecutorService clientExecutor = Executors.newFixedThreadPool(Math.max(1, clients));
+         for (int i = 0; i < clients; i++)
+            clientExecutor.execute(new DownloadClient(server, secure, urls, downloads, report, i));
+
+         clientExecutor.shutdown();
+         clientExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+         long elapsed = System.nanoTime() - begin;
+         adminExecutor.shutdownNow();
+         adminExecutor.awaitTermination(10, TimeUnit.SECONDS);
+
+         report.print(System.out, elapsed);
+         System.out.println("Server metrics:");
+         server.getServer()
+               .readMetrics("bininja_")
+               .forEach((name, value) -> System.out.println("   " + name + " = " + value));
+      }
+      return report;
+   }
+
+   private List<URL> urlsOf(ThrottledOrigin origin) throws IOException {
+      List<URL> urls = new ArrayList<>();
+      for (long size : sizes)
+         urls.add(origin.urlOf(size));
+
+      return urls;
+   }
+}
@@ -0,0 +1,27 @@
+package de.dk.bininja.server.load;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The results of a load test.
+ */
+public class LoadReport {
+   final Samples handshakes = new Samples();
+   final Samples downloads = new Samples();
+   final Samples adminRequests = new Samples();
+   final AtomicLong bytes = new AtomicLong();
+   final AtomicInteger failedHandshakes = new AtomicInteger();
+   final AtomicInteger failedDownloads = new AtomicInteger();
+
+   public void print(PrintStream out, long elapsedNanos) {
+      double seconds = elapsedNanos / 1_000_000_000d;
+      out.println(String.format("Duration:          %.2fs", seconds));
+      out.println(String.format("Throughput:        %.2f MB/s (%d bytes)", bytes.get() / seconds / 1_000_000, bytes.get()));
+      out.println(String.format("Downloads:         %.2f/s, %d failed", downloads.getCount() / seconds, failedDownloads.get()));
+      out.println("Connection setup:  " + handshakes.summary() + ", " + failedHandshakes.get() + " failed");
+      out.println("Time to complete:  " + downloads.summary());
+      out.println("Admin requests:    " + adminRequests.summary());
+   }
+}
@@ -0,0 +1,46 @@
+package de.dk.bininja.server.load;
+
+import java.util.Arrays;
+
+/**
+ * Collects durations in nanoseconds and computes exact percentiles of them.
+ */
+public class Samples {
+   private long[] values = new long[1024];
+   private int count;
+
+   public synchronized void add(long nanos) {
+      if (count == values.length)
+         values = Arrays.copyOf(values, count * 2);
+
+      values[count++] = nanos;
+   }
+
+   public synchronized int getCount() {
+      return count;
+   }
+
+   /**
+    * @param percentile The percentile between 0 and 100
+    *
+    * @return The percentile in milliseconds or 0 if there are no samples
+    */
+   public synchronized double percentileMillis(double percentile) {
+      if (count == 0)
+         return 0;
+
+      long[] sorted = Arrays.copyOf(values, count);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * count) - 1;
+      return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000d;
+   }
+
+   public String summary() {
+      return String.format("n=%d p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                           getCount(),
+                           percentileMillis(50),
+                           percentileMillis(99),
+                           percentileMillis(99.9),
+                           percentileMillis(100));
+   }
+}
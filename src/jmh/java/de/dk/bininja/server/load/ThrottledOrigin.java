@@ -0,0 +1,35 @@
+package de.dk.bininja.server.load;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import de.dk.bininja.server.benchmark.StubOrigin;
+
+/**
+ * A {@link StubOrigin} with a latency before every response and a bandwidth limit per response.
+ */
+public class ThrottledOrigin extends StubOrigin {
+   private final long latencyMillis;
+   private final long bytesPerSecond;
+
+   /**
+    * @param latencyMillis The time to wait before a response is sent
+    * @param bytesPerSecond The bandwidth of every response or 0 for unlimited
+    */
+   public ThrottledOrigin(long latencyMillis, long bytesPerSecond) throws IOException {
+      this.latencyMillis = latencyMillis;
+      this.bytesPerSecond = bytesPerSecond;
+   }
+
+   @Override
+   protected void beforeResponse() throws InterruptedException {
+      if (latencyMillis > 0)
+         Thread.sleep(latencyMillis);
+   }
+
+   @Override
+   protected void beforeWrite(int bytes) throws InterruptedException {
+      if (bytesPerSecond > 0)
+         TimeUnit.NANOSECONDS.sleep(bytes * 1_000_000_000L / bytesPerSecond);
+   }
+}
@@ -0,0 +1,143 @@
+package de.dk.bininja.server.net;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
+import de.dk.bininja.net.packet.download.DownloadCompletePacket;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.bininja.server.benchmark.StubOrigin;
+import de.dk.bininja.server.buffer.BufferPool;
+import de.dk.ch.Channel;
+
+/**
+ * A whole download through {@link ServerDownload} from an origin on the loopback interface
+ * into a channel, that discards the packets.
+ * This covers the chunk loop with the buffer pool, the chunk sizing and the throttle,
+ * but not the encoding and writing of the packets by the connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkLoopBenchmark {
+   @Param({"1024", "65536"})
+   private int bufferSize;
+
+   @Param({"1048576", "16777216"})
+   private long contentLength;
+
+   @Param({"false", "true"})
+   private boolean adaptiveChunks;
+
+   private StubOrigin origin;
+   private URL url;
+   private ExecutorService executor;
+   private DownloadContext context;
+   private Bandwidth.AddressBucket bucket;
+
+   @Setup
+   public void setup() throws Exception {
+      this.origin = new StubOrigin();
+      this.url = origin.urlOf(contentLength);
+      this.executor = Executors.newCachedThreadPool();
+      this.context = new DownloadContext(executor, executor, new BufferPool());
+      context.setChunkSizing(new ChunkSizing(adaptiveChunks));
+      this.bucket = context.getBandwidth()
+                           .lease(InetAddress.getLoopbackAddress());
+   }
+
+   @TearDown
+   public void tearDown() {
+      context.getBandwidth()
+             .release(bucket);
+      executor.shutdownNow();
+      origin.close();
+   }
+
+   @Benchmark
+   public long download() throws Exception {
+      DiscardingChannel sink = new DiscardingChannel();
+      ServerDownload download = new ServerDownload(sink.proxy(),
+                                                   context,
+                                                   bufferSize,
+                                                   "benchmark",
+                                                   context.getBandwidth().newThrottle(bucket),
+                                                   new WriteScheduler(context),
+                                                   new Compressor.Pool());
+
+      download.request(new DownloadRequestPacket(url));
+      // The download is prepared on the executor, like a client the benchmark waits for the header
+      sink.header.get(1, TimeUnit.MINUTES);
+      download.ready(new DownloadReadyPacket());
+      return sink.done.get(1, TimeUnit.MINUTES);
+   }
+
+   /**
+    * Counts the bytes of the data packets and completes, when the download is complete or cancelled.
+    * Completes the header, when the header was sent.
+    */
+   private static class DiscardingChannel {
+      private final AtomicLong bytes = new AtomicLong();
+      private final CompletableFuture<Long> done = new CompletableFuture<>();
+      private final CompletableFuture<Void> header = new CompletableFuture<>();
+
+      @SuppressWarnings("unchecked")
+      Channel<DownloadPacket> proxy() {
+         return (Channel<DownloadPacket>) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                                                                 new Class<?>[] {Channel.class},
+                                                                 (proxy, method, args) -> {
+            if (!method.getName().equals("send"))
+               return defaultValue(method.getReturnType());
+
+            Object packet = args[0];
+            if (packet instanceof DownloadDataPacket)
+               bytes.addAndGet(((DownloadDataPacket) packet).getData().length);
+            else if (packet instanceof DownloadHeaderPacket)
+               header.complete(null);
+            else if (packet instanceof DownloadCompletePacket)
+               done.complete(bytes.get());
+            else if (packet instanceof DownloadCancelPacket) {
+               IllegalStateException cancelled = new IllegalStateException(((DownloadCancelPacket) packet).getMsg());
+               header.completeExceptionally(cancelled);
+               done.completeExceptionally(cancelled);
+            }
+
+            return null;
+         });
+      }
+
+      private static Object defaultValue(Class<?> type) {
+         if (!type.isPrimitive() || type == void.class)
+            return null;
+
+         return Array.get(Array.newInstance(type, 1), 0);
+      }
+   }
+}
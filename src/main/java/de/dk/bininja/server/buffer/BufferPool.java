@@ -0,0 +1,127 @@
+package de.dk.bininja.server.buffer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of byte buffers with a size class for every requested buffer size.
+ * A buffer is leased with {@link #lease(int)} and must be given back with {@link #release(byte[])}
+ * as soon as nobody refers to it anymore.
+ */
+public class BufferPool {
+   public static final int DEFAULT_MAX_BUFFERS_PER_SIZE = 1024;
+
+   private final ConcurrentMap<Integer, SizeClass> sizeClasses = new ConcurrentHashMap<>();
+   private final int maxBuffersPerSize;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder drops = new LongAdder();
+   private final AtomicInteger leased = new AtomicInteger();
+
+   public BufferPool(int maxBuffersPerSize) {
+      if (maxBuffersPerSize < 0)
+         throw new IllegalArgumentException("maxBuffersPerSize must not be negative: " + maxBuffersPerSize);
+
+      this.maxBuffersPerSize = maxBuffersPerSize;
+   }
+
+   public BufferPool() {
+      this(DEFAULT_MAX_BUFFERS_PER_SIZE);
+   }
+
+   public byte[] lease(int size) {
+      byte[] buffer = sizeClass(size).poll();
+      if (buffer != null) {
+         hits.increment();
+      } else {
+         misses.increment();
+         buffer = new byte[size];
+      }
+      leased.incrementAndGet();
+      return buffer;
+   }
+
+   public void release(byte[] buffer) {
+      leased.decrementAndGet();
+      if (!sizeClass(buffer.length).offer(buffer))
+         drops.increment();
+   }
+
+   private SizeClass sizeClass(int size) {
+      SizeClass sizeClass = sizeClasses.get(size);
+      if (sizeClass == null)
+         sizeClass = sizeClasses.computeIfAbsent(size, s -> new SizeClass());
+
+      return sizeClass;
+   }
+
+   public long getHits() {
+      return hits.sum();
+   }
+
+   public long getMisses() {
+      return misses.sum();
+   }
+
+   public long getDrops() {
+      return drops.sum();
+   }
+
+   public int getLeased() {
+      return leased.get();
+   }
+
+   public long getPooledBytes() {
+      long bytes = 0;
+      for (Map.Entry<Integer, SizeClass> entry : sizeClasses.entrySet())
+         bytes += (long) entry.getKey() * entry.getValue().count.get();
+
+      return bytes;
+   }
+
+   public Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("hits", getHits());
+      statistics.put("misses", getMisses());
+      statistics.put("drops", getDrops());
+      statistics.put("leased", (long) getLeased());
+      statistics.put("pooledBytes", getPooledBytes());
+      for (Map.Entry<Integer, SizeClass> entry : sizeClasses.entrySet())
+         statistics.put("pooled." + entry.getKey(), (long) entry.getValue().count.get());
+
+      return statistics;
+   }
+
+   public int getMaxBuffersPerSize() {
+      return maxBuffersPerSize;
+   }
+
+   private class SizeClass {
+      private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+      private final AtomicInteger count = new AtomicInteger();
+
+      public byte[] poll() {
+         byte[] buffer = buffers.poll();
+         if (buffer != null)
+            count.decrementAndGet();
+
+         return buffer;
+      }
+
+      public boolean offer(byte[] buffer) {
+         if (count.incrementAndGet() > maxBuffersPerSize) {
+            count.decrementAndGet();
+            return false;
+         }
+         buffers.offer(buffer);
+         return true;
+      }
+   }
+}
@@ -0,0 +1,232 @@
+package de.dk.bininja.server.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * A cached response body together with the validators needed to revalidate it at the origin.
+ * The metadata is stored next to the data file, when the entry is complete.
+ */
+public class CacheEntry {
+   private static final String URL = "url";
+   private static final String DATA = "data";
+   private static final String ETAG = "etag";
+   private static final String LAST_MODIFIED = "lastModified";
+   private static final String LENGTH = "length";
+   private static final String FILENAME = "filename";
+   private static final String CONTENT_TYPE = "contentType";
+   private static final String PINNED = "pinned";
+   private static final String EXPIRES = "expires";
+
+   private final String url;
+   private final Path metaFile;
+   private final Spool spool;
+
+   private final String etag;
+   private final String lastModified;
+   private final String filename;
+   private final String contentType;
+   private final long length;
+
+   private volatile boolean pinned;
+   private volatile long expires;
+   private volatile long lastAccess = System.currentTimeMillis();
+
+   public CacheEntry(String url,
+                     Path metaFile,
+                     Spool spool,
+                     String etag,
+                     String lastModified,
+                     String filename,
+                     String contentType,
+                     long length) {
+      this.url = Objects.requireNonNull(url);
+      this.metaFile = Objects.requireNonNull(metaFile);
+      this.spool = Objects.requireNonNull(spool);
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.filename = filename;
+      this.contentType = contentType;
+      this.length = length;
+   }
+
+   public static CacheEntry load(Path metaFile) throws IOException {
+      Properties properties = new Properties();
+      try (InputStream in = Files.newInputStream(metaFile)) {
+         properties.load(in);
+      }
+
+      String url = properties.getProperty(URL);
+      String data = properties.getProperty(DATA);
+      if (url == null || data == null)
+         throw new IOException("Incomplete cache metadata " + metaFile);
+
+      long length;
+      long expires;
+      try {
+         length = Long.parseLong(properties.getProperty(LENGTH, "-1"));
+         expires = Long.parseLong(properties.getProperty(EXPIRES, "0"));
+      } catch (NumberFormatException e) {
+         throw new IOException("Invalid number in cache metadata " + metaFile, e);
+      }
+
+      Spool spool = Spool.open(metaFile.resolveSibling(data));
+      if (length != -1 && spool.getAvailable() != length) {
+         spool.discard();
+         throw new IOException("The cached data of " + url + " is incomplete.");
+      }
+
+      CacheEntry entry = new CacheEntry(url,
+                                        metaFile,
+                                        spool,
+                                        properties.getProperty(ETAG),
+                                        properties.getProperty(LAST_MODIFIED),
+                                        properties.getProperty(FILENAME),
+                                        properties.getProperty(CONTENT_TYPE),
+                                        spool.getAvailable());
+
+      entry.pinned = Boolean.parseBoolean(properties.getProperty(PINNED));
+      entry.expires = expires;
+      entry.lastAccess = Files.getLastModifiedTime(metaFile)
+                              .toMillis();
+      return entry;
+   }
+
+   public synchronized void store() throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty(URL, url);
+      properties.setProperty(DATA, spool.getFile().getFileName().toString());
+      properties.setProperty(LENGTH, Long.toString(spool.getAvailable()));
+      properties.setProperty(PINNED, Boolean.toString(pinned));
+      properties.setProperty(EXPIRES, Long.toString(expires));
+      if (etag != null)
+         properties.setProperty(ETAG, etag);
+      if (lastModified != null)
+         properties.setProperty(LAST_MODIFIED, lastModified);
+      if (filename != null)
+         properties.setProperty(FILENAME, filename);
+      if (contentType != null)
+         properties.setProperty(CONTENT_TYPE, contentType);
+
+      try (OutputStream out = Files.newOutputStream(metaFile)) {
+         properties.store(out, null);
+      }
+   }
+
+   public void prepareRevalidation(URLConnection connection) {
+      if (etag != null)
+         connection.setRequestProperty("If-None-Match", etag);
+      if (lastModified != null)
+         connection.setRequestProperty("If-Modified-Since", lastModified);
+   }
+
+   public static boolean isNotModified(URLConnection connection) throws IOException {
+      return connection instanceof HttpURLConnection
+             && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+   }
+
+   public void discard() {
+      spool.discard();
+      try {
+         Files.deleteIfExists(metaFile);
+      } catch (IOException e) {
+         // The metadata without its data file is dropped on the next start
+      }
+   }
+
+   public void touch() {
+      this.lastAccess = System.currentTimeMillis();
+   }
+
+   public String getUrl() {
+      return url;
+   }
+
+   public Spool getSpool() {
+      return spool;
+   }
+
+   public boolean isComplete() {
+      return spool.isComplete();
+   }
+
+   /**
+    * @return The length of the content or -1 if unknown
+    */
+   public long getLength() {
+      return spool.isComplete() ? spool.getAvailable() : length;
+   }
+
+   public long getSize() {
+      return spool.getAvailable();
+   }
+
+   public String getEtag() {
+      return etag;
+   }
+
+   public String getLastModified() {
+      return lastModified;
+   }
+
+   /**
+    * @return The <code>ETag</code> or if not present the <code>Last-Modified</code> value
+    */
+   public String getValidator() {
+      return etag != null ? etag : lastModified;
+   }
+
+   public boolean matches(String validator) {
+      return validator != null && (validator.equals(etag) || validator.equals(lastModified));
+   }
+
+   public String getFilename() {
+      return filename;
+   }
+
+   public String getContentType() {
+      return contentType;
+   }
+
+   public boolean isPinned() {
+      return pinned;
+   }
+
+   public void setPinned(boolean pinned) {
+      this.pinned = pinned;
+   }
+
+   /**
+    * @return If the entry may be served without revalidating it at the origin
+    */
+   public boolean isFresh() {
+      return System.currentTimeMillis() < expires;
+   }
+
+   /**
+    * @return The time in milliseconds since the epoch, until which the entry is fresh, or 0 if it is always revalidated
+    */
+   public long getExpires() {
+      return expires;
+   }
+
+   public void setExpires(long expires) {
+      this.expires = expires;
+   }
+
+   public long getLastAccess() {
+      return lastAccess;
+   }
+
+   @Override
+   public String toString() {
+      return "CacheEntry { url=" + url + ", size=" + getSize() + ", etag=" + etag + ", pinned=" + pinned + " }";
+   }
+}
@@ -0,0 +1,66 @@
+package de.dk.bininja.server.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.dk.bininja.server.upstream.Content;
+
+/**
+ * Content served from a cache entry, that may still be filled.
+ */
+class CachedContent implements Content {
+   private final CacheEntry entry;
+   private final long position;
+   private final InputStream in;
+
+   public CachedContent(CacheEntry entry, long position) throws IOException {
+      this.entry = entry;
+      this.position = position;
+      this.in = entry.getSpool()
+                     .newInputStream(position);
+   }
+
+   @Override
+   public long getLength() {
+      return entry.getLength();
+   }
+
+   @Override
+   public long getPosition() {
+      return position;
+   }
+
+   @Override
+   public String getValidator() {
+      return entry.getValidator();
+   }
+
+   @Override
+   public String getContentType() {
+      return entry.getContentType();
+   }
+
+   @Override
+   public String getFilename() {
+      return entry.getFilename();
+   }
+
+   @Override
+   public InputStream getInputStream() {
+      return in;
+   }
+
+   @Override
+   public void close() {
+      try {
+         in.close();
+      } catch (IOException e) {
+         // Closing a spool stream does not throw
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "CachedContent { entry=" + entry + " }";
+   }
+}
@@ -0,0 +1,461 @@
+package de.dk.bininja.server.cache;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.upstream.Content;
+import de.dk.bininja.server.upstream.UpstreamRequest;
+
+/**
+ * A persistent cache of upstream response bodies on the local disk, keyed by URL.
+ * Entries are filled by a separate task, so any number of downloads can read an entry
+ * while it is still being filled.
+ * Entries carry the <code>ETag</code> and <code>Last-Modified</code> validators of the origin.
+ * They are served without asking the origin while they are fresh according to the
+ * <code>Cache-Control</code> or <code>Expires</code> header of the response,
+ * afterwards they are revalidated with conditional requests before they are served.
+ * If the cache grows beyond its maximum size, the least recently used entries,
+ * that are not pinned, are evicted.
+ */
+public class ContentCache {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ContentCache.class);
+
+   public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+   private static final String DATA_SUFFIX = ".data";
+   private static final String META_SUFFIX = ".properties";
+   private static final int FILL_BUFFER_SIZE = 64 * 1024;
+
+   private final Path directory;
+   private final long maxSize;
+   private final Executor fillExecutor;
+
+   private final ConcurrentMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+   private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder revalidations = new LongAdder();
+   private final LongAdder staleHits = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+   private final LongAdder failedFills = new LongAdder();
+   private final LongAdder coalesced = new LongAdder();
+
+   public ContentCache(Path directory, long maxSize, Executor fillExecutor) throws IOException {
+      this.directory = Objects.requireNonNull(directory);
+      this.maxSize = maxSize;
+      this.fillExecutor = Objects.requireNonNull(fillExecutor);
+      Files.createDirectories(directory);
+      load();
+   }
+
+   private void load() throws IOException {
+      try (DirectoryStream<Path> metaFiles = Files.newDirectoryStream(directory, "*" + META_SUFFIX)) {
+         for (Path metaFile : metaFiles) {
+            CacheEntry entry;
+            try {
+               entry = CacheEntry.load(metaFile);
+            } catch (IOException e) {
+               LOGGER.warn("Dropping invalid cache entry " + metaFile, e);
+               Files.deleteIfExists(metaFile);
+               continue;
+            }
+
+            CacheEntry previous = entries.get(entry.getUrl());
+            if (previous == null || previous.getLastAccess() < entry.getLastAccess()) {
+               entries.put(entry.getUrl(), entry);
+               if (previous != null)
+                  previous.discard();
+            } else {
+               entry.discard();
+            }
+         }
+      }
+
+      // Data files without metadata are left over from fills, that were interrupted
+      Set<Path> referenced = entries.values()
+                                    .stream()
+                                    .map(entry -> entry.getSpool().getFile())
+                                    .collect(toSet());
+
+      try (DirectoryStream<Path> dataFiles = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+         for (Path dataFile : dataFiles) {
+            if (!referenced.contains(dataFile))
+               Files.deleteIfExists(dataFile);
+         }
+      }
+
+      LOGGER.info(entries.size() + " cache entries with " + getSize() + " bytes loaded from " + directory);
+      evict();
+   }
+
+   public boolean accepts(URL url) {
+      String protocol = url.getProtocol();
+      return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+   }
+
+   /**
+    * @return The entry of the url or <code>null</code> if there is none.
+    * An entry, whose data can not be read anymore, is evicted instead of being returned.
+    */
+   public CacheEntry lookup(URL url) {
+      CacheEntry entry = entries.get(url.toString());
+      if (entry == null || !entry.getSpool().isBroken())
+         return entry;
+
+      if (entries.remove(entry.getUrl(), entry)) {
+         LOGGER.warn("Evicting the broken cache entry " + entry);
+         entry.discard();
+         evictions.increment();
+      }
+      return null;
+   }
+
+   /**
+    * Serves an entry, that is still being filled.
+    */
+   public Content join(CacheEntry entry, long position) throws IOException {
+      return hit(entry, position);
+   }
+
+   public void prepareRevalidation(CacheEntry entry, URLConnection connection) {
+      revalidations.increment();
+      entry.prepareRevalidation(connection);
+   }
+
+   /**
+    * Serves an entry, that was confirmed to be up to date by the origin.
+    * The freshness of the entry is renewed from the headers of the confirmation.
+    */
+   public Content revalidated(CacheEntry entry, URLConnection connection, long position) throws IOException {
+      entry.setExpires(freshUntil(connection, System.currentTimeMillis()));
+      if (entry.isComplete()) {
+         try {
+            entry.store();
+         } catch (IOException e) {
+            LOGGER.warn("Could not persist the freshness of " + entry, e);
+         }
+      }
+      return hit(entry, position);
+   }
+
+   /**
+    * Serves an entry, that is fresh or was confirmed to be up to date by the origin.
+    */
+   public Content hit(CacheEntry entry, long position) throws IOException {
+      hits.increment();
+      entry.touch();
+      return new CachedContent(entry, position);
+   }
+
+   /**
+    * Serves an entry, that could not be revalidated, because the origin is not reachable.
+    */
+   public Content stale(CacheEntry entry, long position) throws IOException {
+      staleHits.increment();
+      return hit(entry, position);
+   }
+
+   public boolean isCacheable(URLConnection connection) throws IOException {
+      if (!(connection instanceof HttpURLConnection))
+         return false;
+
+      HttpURLConnection http = (HttpURLConnection) connection;
+      if (http.getResponseCode() != HttpURLConnection.HTTP_OK)
+         return false;
+
+      String cacheControl = http.getHeaderField("Cache-Control");
+      if (cacheControl != null) {
+         for (String directive : cacheControl.toLowerCase().split(",")) {
+            directive = directive.trim();
+            // This cache is shared by all clients, so it must not keep a response meant for one of them
+            if (directive.equals("no-store") || directive.startsWith("private"))
+               return false;
+         }
+      }
+
+      // The entries are keyed by the url only, so a response, that varies with the request headers, is not kept
+      String vary = http.getHeaderField("Vary");
+      if (vary != null && !vary.trim().isEmpty())
+         return false;
+
+      // Without a validator the entry could never be revalidated
+      if (http.getHeaderField("ETag") == null && http.getHeaderField("Last-Modified") == null)
+         return false;
+
+      // A response of unknown length could grow beyond the maximum size while it is filled
+      long length = http.getContentLengthLong();
+      return length != -1 && length <= maxSize;
+   }
+
+   /**
+    * Determines how long a response may be served from the cache without revalidation.
+    * <code>s-maxage</code> takes precedence over <code>max-age</code>, which takes precedence over <code>Expires</code>.
+    *
+    * @param now The current time in milliseconds since the epoch
+    *
+    * @return The time in milliseconds since the epoch, until which the response is fresh,
+    * or 0 if it has to be revalidated every time
+    */
+   static long freshUntil(URLConnection connection, long now) {
+      String cacheControl = connection.getHeaderField("Cache-Control");
+      long maxAge = -1;
+      long sharedMaxAge = -1;
+      if (cacheControl != null) {
+         for (String directive : cacheControl.toLowerCase().split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-cache"))
+               return 0;
+            else if (directive.startsWith("s-maxage="))
+               sharedMaxAge = parseSeconds(directive.substring("s-maxage=".length()));
+            else if (directive.startsWith("max-age="))
+               maxAge = parseSeconds(directive.substring("max-age=".length()));
+         }
+      }
+
+      long fresh;
+      if (sharedMaxAge >= 0 || maxAge >= 0) {
+         long age = Math.max(0, connection.getHeaderFieldLong("Age", 0));
+         fresh = now + ((sharedMaxAge >= 0 ? sharedMaxAge : maxAge) - age) * 1000;
+      } else {
+         long expires = connection.getHeaderFieldDate("Expires", 0);
+         if (expires == 0)
+            return 0;
+
+         // Relative to the clock of the origin, so a skewed clock of either side does not matter
+         long date = connection.getHeaderFieldDate("Date", 0);
+         fresh = date == 0 ? expires : now + expires - date;
+      }
+      return fresh > now ? fresh : 0;
+   }
+
+   private static long parseSeconds(String value) {
+      try {
+         return Long.parseLong(value.replace("\"", "").trim());
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   /**
+    * Creates a new entry for the response of the connection and starts filling it.
+    * An existing entry of the same URL is replaced.
+    *
+    * @return The content of the new entry
+    */
+   public Content store(URL url, UpstreamRequest request, String filename) throws IOException {
+      URLConnection connection = request.getConnection();
+      String key = url.toString();
+      String name = hash(key) + "-" + Long.toHexString(generation.incrementAndGet());
+      Spool spool = Spool.create(directory.resolve(name + DATA_SUFFIX));
+      CacheEntry entry = new CacheEntry(key,
+                                        directory.resolve(name + META_SUFFIX),
+                                        spool,
+                                        connection.getHeaderField("ETag"),
+                                        connection.getHeaderField("Last-Modified"),
+                                        filename,
+                                        connection.getContentType(),
+                                        connection.getContentLengthLong());
+      entry.setExpires(freshUntil(connection, System.currentTimeMillis()));
+
+      CacheEntry[] replaced = new CacheEntry[1];
+      CacheEntry current = entries.compute(key, (k, existing) -> {
+         // Another download started to fill the entry while this one was connecting
+         if (existing != null && !existing.isComplete())
+            return existing;
+
+         replaced[0] = existing;
+         return entry;
+      });
+      if (current != entry) {
+         LOGGER.debug("Joining the cache entry of " + key + ", that was created concurrently.");
+         coalesced.increment();
+         request.close();
+         entry.discard();
+         return join(current, 0);
+      }
+
+      misses.increment();
+      Content content = new CachedContent(entry, 0);
+      if (replaced[0] != null)
+         replaced[0].discard();
+
+      try {
+         fillExecutor.execute(() -> fill(entry, request));
+      } catch (RejectedExecutionException e) {
+         entries.remove(key, entry);
+         content.close();
+         entry.discard();
+         throw new IOException("Could not start to fill the cache entry of " + key, e);
+      }
+      return content;
+   }
+
+   private void fill(CacheEntry entry, UpstreamRequest request) {
+      LOGGER.debug("Filling cache entry of " + entry.getUrl());
+      Spool spool = entry.getSpool();
+      long length = entry.getLength();
+      byte[] buffer = new byte[FILL_BUFFER_SIZE];
+      try (UpstreamRequest upstream = request) {
+         InputStream in = upstream.getInputStream();
+         int readBytes;
+         while ((readBytes = in.read(buffer)) != -1)
+            spool.append(buffer, 0, readBytes);
+
+         if (length != -1 && spool.getAvailable() != length)
+            throw new IOException("Expected " + length + " bytes, but got " + spool.getAvailable());
+
+         spool.complete();
+         entry.store();
+      } catch (IOException e) {
+         LOGGER.warn("Could not cache " + entry.getUrl(), e);
+         failedFills.increment();
+         spool.fail(e);
+         entries.remove(entry.getUrl(), entry);
+         entry.discard();
+         return;
+      }
+      LOGGER.debug("Cache entry complete: " + entry);
+      evict();
+   }
+
+   private synchronized void evict() {
+      long size = getSize();
+      if (size <= maxSize)
+         return;
+
+      List<CacheEntry> candidates = entries.values()
+                                           .stream()
+                                           .filter(entry -> entry.isComplete() && !entry.isPinned())
+                                           .sorted(Comparator.comparingLong(CacheEntry::getLastAccess))
+                                           .collect(toList());
+
+      for (CacheEntry entry : candidates) {
+         if (size <= maxSize)
+            break;
+
+         if (entries.remove(entry.getUrl(), entry)) {
+            LOGGER.debug("Evicting " + entry);
+            size -= entry.getSize();
+            entry.discard();
+            evictions.increment();
+         }
+      }
+   }
+
+   public boolean purge(String url) {
+      CacheEntry entry = entries.remove(url);
+      if (entry == null)
+         return false;
+
+      LOGGER.info("Purging " + entry);
+      entry.discard();
+      return true;
+   }
+
+   /**
+    * Removes all entries, that are not pinned.
+    *
+    * @return The number of removed entries
+    */
+   public int purgeAll() {
+      int count = 0;
+      for (CacheEntry entry : entries.values()) {
+         if (!entry.isPinned() && entries.remove(entry.getUrl(), entry)) {
+            entry.discard();
+            count++;
+         }
+      }
+      LOGGER.info(count + " cache entries purged.");
+      return count;
+   }
+
+   public boolean pin(String url, boolean pinned) {
+      CacheEntry entry = entries.get(url);
+      if (entry == null)
+         return false;
+
+      entry.setPinned(pinned);
+      if (entry.isComplete()) {
+         try {
+            entry.store();
+         } catch (IOException e) {
+            LOGGER.warn("Could not persist the pin of " + entry, e);
+         }
+      }
+      return true;
+   }
+
+   public long getSize() {
+      long size = 0;
+      for (CacheEntry entry : entries.values())
+         size += entry.getSize();
+
+      return size;
+   }
+
+   public long getMaxSize() {
+      return maxSize;
+   }
+
+   public Map<String, Long> getStatistics() {
+      long hits = this.hits.sum();
+      long misses = this.misses.sum();
+      long requests = hits + misses;
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("hits", hits);
+      statistics.put("misses", misses);
+      statistics.put("hitRatioPercent", requests == 0 ? 0 : hits * 100 / requests);
+      statistics.put("staleHits", staleHits.sum());
+      statistics.put("revalidations", revalidations.sum());
+      statistics.put("evictions", evictions.sum());
+      statistics.put("failedFills", failedFills.sum());
+      statistics.put("coalesced", coalesced.sum());
+      statistics.put("entries", (long) entries.size());
+      statistics.put("pinned", entries.values().stream().filter(CacheEntry::isPinned).count());
+      statistics.put("size", getSize());
+      statistics.put("maxSize", maxSize);
+      return statistics;
+   }
+
+   private static String hash(String url) {
+      MessageDigest digest;
+      try {
+         digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 not supported", e);
+      }
+      StringBuilder builder = new StringBuilder();
+      for (byte b : digest.digest(url.getBytes(StandardCharsets.UTF_8)))
+         builder.append(String.format("%02x", b));
+
+      return builder.toString();
+   }
+}
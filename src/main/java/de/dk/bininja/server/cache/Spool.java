@@ -0,0 +1,252 @@
+package de.dk.bininja.server.cache;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file, that is filled by one writer and can be read by any number of readers at the same time.
+ * Readers block at the end of the written data until more data is written,
+ * the spool is completed or the writer failed.
+ * The file is deleted as soon as the spool is discarded and all readers are closed.
+ * <p>
+ * Every reader reads through its own channel. An interrupted read closes the channel it was reading from,
+ * so a download, that is cancelled while it reads, must not close the channel of the writer or of the other readers.
+ * A read, that fails for any other reason, marks the spool as broken.
+ * <p>
+ * Readers copy with positional reads, not through memory mapped regions.
+ * A mapping has a fixed size, but the spool grows while it is filled, so it would have to be mapped again and again,
+ * and only the garbage collector unmaps a region, which keeps the file of a discarded spool alive.
+ */
+public class Spool {
+   private static final Logger LOGGER = LoggerFactory.getLogger(Spool.class);
+
+   private final Path file;
+   private final FileChannel channel;
+
+   private long available;
+   private boolean complete;
+   private IOException failure;
+   private int readers;
+   private boolean discarded;
+   private IOException broken;
+
+   private Spool(Path file, FileChannel channel, long available, boolean complete) {
+      this.file = file;
+      this.channel = channel;
+      this.available = available;
+      this.complete = complete;
+   }
+
+   public static Spool create(Path file) throws IOException {
+      return new Spool(file, FileChannel.open(file, CREATE_NEW, READ, WRITE), 0, false);
+   }
+
+   public static Spool open(Path file) throws IOException {
+      FileChannel channel = FileChannel.open(file, READ);
+      return new Spool(file, channel, channel.size(), true);
+   }
+
+   public void append(byte[] data, int offset, int length) throws IOException {
+      long position = getAvailable();
+      ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+      while (buffer.hasRemaining())
+         position += channel.write(buffer, position);
+
+      advance(position);
+   }
+
+   /**
+    * Writes the data at the given position without making it readable.
+    * The written data has to be made readable with {@link #advance(long)}.
+    */
+   public void write(long position, byte[] data, int offset, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+      while (buffer.hasRemaining())
+         position += channel.write(buffer, position);
+   }
+
+   public synchronized void advance(long available) {
+      if (available > this.available) {
+         this.available = available;
+         notifyAll();
+      }
+   }
+
+   public synchronized void complete() {
+      this.complete = true;
+      notifyAll();
+   }
+
+   public synchronized void fail(IOException failure) {
+      this.failure = failure;
+      notifyAll();
+   }
+
+   public synchronized long getAvailable() {
+      return available;
+   }
+
+   public synchronized boolean isComplete() {
+      return complete;
+   }
+
+   public synchronized boolean isFailed() {
+      return failure != null;
+   }
+
+   public synchronized int getReaders() {
+      return readers;
+   }
+
+   private synchronized long await(long position) throws IOException {
+      while (position >= available && !complete && failure == null) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data of " + file);
+         }
+      }
+      if (position >= available && failure != null)
+         throw new IOException("Filling " + file + " failed", failure);
+
+      return available;
+   }
+
+   public synchronized InputStream newInputStream(long position) throws IOException {
+      if (discarded)
+         throw new IOException("The spool " + file + " was discarded.");
+
+      FileChannel reader;
+      try {
+         reader = FileChannel.open(file, READ);
+      } catch (IOException e) {
+         broke(e);
+         throw e;
+      }
+      readers++;
+      return new SpoolInputStream(reader, position);
+   }
+
+   private synchronized void broke(IOException e) {
+      if (broken == null) {
+         LOGGER.warn("The spool " + file + " can not be read anymore.", e);
+         this.broken = e;
+      }
+   }
+
+   /**
+    * @return If a read of the spool failed for another reason than the reader being interrupted or closed.
+    * The data of a broken spool should not be served again.
+    */
+   public synchronized boolean isBroken() {
+      return broken != null;
+   }
+
+   private synchronized void release() {
+      if (--readers == 0 && discarded)
+         delete();
+   }
+
+   /**
+    * Deletes the file as soon as the last reader is closed.
+    */
+   public synchronized void discard() {
+      if (discarded)
+         return;
+
+      this.discarded = true;
+      if (readers == 0)
+         delete();
+   }
+
+   private void delete() {
+      try {
+         channel.close();
+         Files.deleteIfExists(file);
+      } catch (IOException e) {
+         LOGGER.warn("Could not delete spool file " + file, e);
+      }
+   }
+
+   public Path getFile() {
+      return file;
+   }
+
+   private class SpoolInputStream extends InputStream {
+      private final FileChannel reader;
+      private long position;
+      private volatile boolean closed;
+
+      public SpoolInputStream(FileChannel reader, long position) {
+         this.reader = reader;
+         this.position = position;
+      }
+
+      @Override
+      public int read() throws IOException {
+         byte[] b = new byte[1];
+         int n = read(b, 0, 1);
+         return n == -1 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (closed)
+            throw new IOException("Stream closed");
+         if (len == 0)
+            return 0;
+
+         long available = await(position);
+         if (position >= available)
+            return -1;
+
+         int length = (int) Math.min(len, available - position);
+         int n;
+         try {
+            n = reader.read(ByteBuffer.wrap(b, off, length), position);
+         } catch (ClosedChannelException e) {
+            // Only this reader was interrupted or closed
+            throw e;
+         } catch (IOException e) {
+            broke(e);
+            throw e;
+         }
+         if (n > 0)
+            position += n;
+
+         return n;
+      }
+
+      @Override
+      public int available() throws IOException {
+         return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getAvailable() - position));
+      }
+
+      @Override
+      public synchronized void close() {
+         if (!closed) {
+            closed = true;
+            try {
+               reader.close();
+            } catch (IOException e) {
+               LOGGER.debug("Could not close a reader of " + file, e);
+            }
+            release();
+         }
+      }
+   }
+}
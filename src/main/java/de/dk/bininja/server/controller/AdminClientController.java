@@ -1,9 +1,15 @@
 package de.dk.bininja.server.controller;
 
 import java.util.Collection;
+import java.util.Map;
 
 import de.dk.bininja.net.ConnectionMetadata;
 import de.dk.bininja.net.ConnectionType;
+import de.dk.bininja.server.net.Bandwidth;
+import de.dk.bininja.server.net.ChunkSizing;
+import de.dk.bininja.server.net.DownloadScheduler;
+import de.dk.bininja.server.net.packet.DownloadDetails;
+import de.dk.bininja.server.net.packet.StatisticsPacket.StatisticsType;
 
 /**
  * @author David Koettlitz
@@ -16,5 +22,15 @@ public interface AdminClientController {
    public Collection<ConnectionMetadata> getConnectionMetadataOf(ConnectionType type);
    public void setBufferSize(int bufferSize);
    public int readBufferSize();
+   public Map<String, Long> readStatistics(StatisticsType type);
+   public boolean purgeCache(String url);
+   public boolean pinCache(String url, boolean pinned);
+   public ChunkSizing readChunkSizing();
+   public void setChunkSizing(boolean enabled, int minChunkSize, int maxChunkSize) throws IllegalArgumentException;
+   public Bandwidth readBandwidthLimits();
+   public void setBandwidthLimits(long globalLimit, long addressLimit, long downloadLimit) throws IllegalArgumentException;
+   public DownloadScheduler getScheduler();
+   public Collection<DownloadDetails> getDownloadDetails();
+   public Map<String, Long> readMetrics(String prefix);
    public void shutdown();
 }
@@ -1,8 +1,11 @@
 package de.dk.bininja.server.controller;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,30 +14,49 @@ import de.dk.util.net.Connection;
 import de.dk.util.net.ConnectionListener;
 
 /**
+ * The registry of the connected clients of one type.
+ * Clients can be added and removed concurrently from any thread.
+ * Iterating over the clients is weakly consistent, it never fails
+ * but may or may not reflect concurrent changes.
+ *
  * @author David Koettlitz
  * <br>Erstellt am 07.08.2017
  */
 public class ClientManager<C extends ClientHandler> implements Iterable<C> {
    private static final Logger LOGGER = LoggerFactory.getLogger(ClientManager.class);
 
-   protected Collection<C> clients = new LinkedList<>();
+   protected final Set<C> clients = ConcurrentHashMap.newKeySet();
+   private final AtomicInteger count = new AtomicInteger();
 
    public ClientManager() {
 
    }
 
    public void add(C client) {
-      clients.add(client);
+      if (clients.add(client))
+         count.incrementAndGet();
+
       client.getConnection()
             .addListener(new ConnectionListenerAdapter(client));
    }
 
+   public boolean remove(C client) {
+      if (!clients.remove(client))
+         return false;
+
+      count.decrementAndGet();
+      return true;
+   }
+
    public int count() {
-      return clients.size();
+      return count.get();
    }
 
+   /**
+    * @return An unmodifiable, weakly consistent view of the clients
+    */
    public Collection<C> getClients() {
-      return clients;
+      return Collections.unmodifiableSet(clients);
    }
 
    @Override
@@ -51,8 +73,8 @@ public class ClientManager<C extends ClientHandler> implements Iterable<C> {
 
       @Override
       public void closed(Connection connection) {
-         clients.remove(client);
-         LOGGER.info("Client disconnected. " + clients.size() + " client connections remaining");
+         remove(client);
+         LOGGER.info("Client disconnected. " + count() + " client connections remaining");
       }
    }
 }
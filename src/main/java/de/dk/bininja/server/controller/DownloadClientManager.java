@@ -8,7 +8,7 @@ import de.dk.bininja.server.net.DownloadClientHandler;
  * <br>Erstellt am 07.08.2017
  */
 public class DownloadClientManager extends ClientManager<DownloadClientHandler> {
-   private int bufferSize = Base64Connection.DEFAULT_BUFFER_SIZE;
+   private volatile int bufferSize = Base64Connection.DEFAULT_BUFFER_SIZE;
 
    public DownloadClientManager(int bufferSize) {
       this.bufferSize = bufferSize;
@@ -21,8 +21,7 @@ public class DownloadClientManager extends ClientManager<DownloadClientHandler>
    @Override
    public void add(DownloadClientHandler client) {
       super.add(client);
-      client.getConnection()
-            .setBufferSize(bufferSize);
+      client.setBufferSize(bufferSize);
    }
 
    public int getBufferSize() {
@@ -31,9 +30,7 @@ public class DownloadClientManager extends ClientManager<DownloadClientHandler>
 
    public void setBufferSize(int bufferSize) {
       this.bufferSize = bufferSize;
-      for (DownloadClientHandler client : clients) {
-         client.getConnection()
-               .setBufferSize(bufferSize);
-      }
+      for (DownloadClientHandler client : clients)
+         client.setBufferSize(bufferSize);
    }
 }
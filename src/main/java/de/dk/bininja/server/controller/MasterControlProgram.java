@@ -1,8 +1,9 @@
 package de.dk.bininja.server.controller;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.daemon.Daemon;
@@ -12,26 +13,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.server.buffer.BufferPool;
+import de.dk.bininja.server.cache.ContentCache;
+import de.dk.bininja.server.metrics.Metrics;
+import de.dk.bininja.server.metrics.PrometheusExporter;
+import de.dk.bininja.server.net.Acceptor;
+import de.dk.bininja.server.net.AcceptorGroup;
+import de.dk.bininja.server.net.Bandwidth;
+import de.dk.bininja.server.net.ChunkSizing;
+import de.dk.bininja.server.net.DownloadContext;
+import de.dk.bininja.server.net.DownloadScheduler;
+import de.dk.bininja.server.net.ExecutionMode;
+import de.dk.bininja.server.net.SelectorAcceptor;
 import de.dk.bininja.server.net.Server;
 import de.dk.bininja.server.net.ServerController;
+import de.dk.bininja.server.net.SessionCache;
 import de.dk.bininja.server.opt.ParsedArguments;
+import de.dk.bininja.server.upstream.SingleFlight;
+import de.dk.bininja.server.upstream.UpstreamClient;
 import de.dk.opt.ex.ArgumentParseException;
 
 /**
  * @author David Koettlitz
  * <br>Erstellt am 07.08.2017
  */
-public class MasterControlProgram implements Daemon, ServerController, Runnable {
+public class MasterControlProgram implements Daemon, ServerController {
    private static final Logger LOGGER = LoggerFactory.getLogger(MasterControlProgram.class);
 
-   private static final int SERVERSOCKET_TIMEOUT = 1024;
-
-   private ServerSocket serverSocket;
-
+   private Acceptor acceptor;
    private boolean running;
-   private Thread thread;
 
    private Server server;
+   private PrometheusExporter exporter;
 
    public MasterControlProgram() {
 
@@ -50,46 +63,180 @@ public class MasterControlProgram implements Daemon, ServerController, Runnable
          throw new DaemonInitException("Error parsing command line arguments", e);
       }
       LOGGER.debug("Arguments successfully parsed.");
+
+      int upstreamConnections = args.isUpstreamConnectionsSet() ? args.getUpstreamConnections()
+                                                                : UpstreamClient.UNLIMITED;
+      int upstreamIdle = args.isUpstreamIdleSet() ? args.getUpstreamIdle()
+                                                  : UpstreamClient.DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST;
+      // Process-wide and read only once by the runtime, so it has to be set before anything opens a connection
+      try {
+         UpstreamClient.configureKeepAlive(upstreamIdle);
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid upstream configuration", e);
+      }
       int port = args.isPortSet() ? args.getPort() : Base64Connection.PORT;
 
-      LOGGER.info("Initialising server socket on port " + port + ".");
+      ExecutionMode mode = args.getExecutionMode();
+      int poolSize = args.isPoolSizeSet() ? args.getPoolSize() : ExecutionMode.DEFAULT_POOL_SIZE;
+      LOGGER.info("Executing handshakes and downloads in " + mode + " mode.");
+      ExecutorService handshakeExecutor;
+      ExecutorService downloadExecutor;
+      ExecutorService fetchExecutor;
+      ExecutorService writeExecutor;
       try {
-         this.serverSocket = new ServerSocket(port);
-         serverSocket.setSoTimeout(SERVERSOCKET_TIMEOUT);
-      } catch (IOException e) {
-         throw new DaemonInitException("Could not initiate the server", e);
+         handshakeExecutor = mode.createExecutor("bininja-handshake", poolSize);
+         downloadExecutor = mode.createExecutor("bininja-download", poolSize);
+         fetchExecutor = mode.createExecutor("bininja-fetch", poolSize);
+         // A writer task keeps its thread, while its connection has packets queued.
+         // In a bounded pool the writers of further busy connections would wait for a whole connection to drain.
+         ExecutionMode writeMode = mode == ExecutionMode.POOL ? ExecutionMode.THREAD : mode;
+         writeExecutor = writeMode.createExecutor("bininja-write", poolSize);
+      } catch (IllegalStateException | IllegalArgumentException e) {
+         throw new DaemonInitException("Could not create the executors for " + mode + " mode", e);
+      }
+
+      int bufferPoolSize = args.isBufferPoolSizeSet() ? args.getBufferPoolSize()
+                                                      : BufferPool.DEFAULT_MAX_BUFFERS_PER_SIZE;
+      BufferPool bufferPool = new BufferPool(bufferPoolSize);
+      DownloadContext downloadContext = new DownloadContext(downloadExecutor, fetchExecutor, bufferPool);
+      downloadContext.setWriteExecutor(writeExecutor);
+      Metrics metrics = downloadContext.getMetrics();
+
+      try {
+         downloadContext.setUpstream(new UpstreamClient(upstreamConnections, upstreamIdle, metrics));
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid upstream configuration", e);
+      }
+
+      downloadContext.setChunkSizing(new ChunkSizing(args.isAdaptiveChunks()));
+      try {
+         downloadContext.setBandwidth(new Bandwidth(args.isGlobalLimitSet() ? args.getGlobalLimit() : Bandwidth.UNLIMITED,
+                                                    args.isAddressLimitSet() ? args.getAddressLimit() : Bandwidth.UNLIMITED,
+                                                    args.isDownloadLimitSet() ? args.getDownloadLimit() : Bandwidth.UNLIMITED));
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid bandwidth limits", e);
+      }
+
+      try {
+         if (args.isMaxDownloadsSet())
+            downloadContext.setScheduler(new DownloadScheduler(args.getMaxDownloads()));
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid maximum number of downloads", e);
+      }
+
+      if (args.isCoalesce()) {
+         LOGGER.info("Coalescing concurrent downloads of the same url.");
+         downloadContext.setFlights(new SingleFlight());
+      }
+
+      if (args.getCacheDirectory() != null) {
+         long cacheSize = args.isCacheSizeSet() ? args.getCacheSize() : ContentCache.DEFAULT_MAX_SIZE;
+         LOGGER.info("Caching content in " + args.getCacheDirectory() + " up to " + cacheSize + " bytes.");
+         try {
+            downloadContext.setCache(new ContentCache(Paths.get(args.getCacheDirectory()), cacheSize, fetchExecutor));
+         } catch (IOException e) {
+            throw new DaemonInitException("Could not initiate the cache", e);
+         }
+      }
+
+      try {
+         if (args.isCompressionLevelSet())
+            downloadContext.setCompressionLevel(args.getCompressionLevel());
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid compression level", e);
+      }
+
+      try {
+         if (args.isWriteBatchSet())
+            downloadContext.setWriteBatchSize(args.getWriteBatch());
+         if (args.isFlushDelaySet())
+            downloadContext.setFlushDelay(args.getFlushDelay());
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid write coalescing configuration", e);
+      }
+
+      try {
+         if (args.isStallTimeoutSet())
+            downloadContext.setStallTimeout(args.getStallTimeout());
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid stall timeout", e);
+      }
+
+      try {
+         if (args.isSegmentsSet()) {
+            int segments = args.getSegments();
+            // More segments than connections to a host would wait for each other until the acquire timeout
+            if (upstreamConnections != UpstreamClient.UNLIMITED && segments > upstreamConnections) {
+               LOGGER.warn("Limiting the segments of a download to the " + upstreamConnections
+                           + " connections allowed per host.");
+               segments = upstreamConnections;
+            }
+            downloadContext.setSegments(segments);
+         }
+         if (args.isMinSegmentSizeSet())
+            downloadContext.setMinSegmentSize(args.getMinSegmentSize());
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid segment configuration", e);
+      }
+
+      if (args.isMetricsPortSet()) {
+         LOGGER.info("Exporting metrics on port " + args.getMetricsPort() + ".");
+         try {
+            this.exporter = new PrometheusExporter(metrics, args.getMetricsPort());
+         } catch (IOException | IllegalArgumentException e) {
+            throw new DaemonInitException("Could not initiate the metrics exporter", e);
+         }
+      }
+
+      KeyPair keys = args.getSecurityArgs() != null ? args.getSecurityArgs().getKeys() : null;
+      this.server = new Server(this, keys, handshakeExecutor, downloadContext);
+      try {
+         if (args.isHandshakeTimeoutSet())
+            server.setHandshakeTimeout(args.getHandshakeTimeout());
+         if (args.isIdleTimeoutSet())
+            server.setIdleTimeout(args.getIdleTimeout());
+      } catch (IllegalArgumentException e) {
+         throw new DaemonInitException("Invalid connection timeouts", e);
+      }
+      int sessionCache = args.isSessionCacheSet() ? args.getSessionCache() : SessionCache.DEFAULT_MAX_SESSIONS;
+      if (keys != null && sessionCache > 0) {
+         long sessionTtl = args.isSessionTtlSet() ? args.getSessionTtl() : SessionCache.DEFAULT_TTL_MILLIS;
+         try {
+            server.setSessionCache(new SessionCache(sessionCache, sessionTtl));
+         } catch (IllegalArgumentException e) {
+            throw new DaemonInitException("Invalid session cache configuration", e);
+         }
       }
-      LOGGER.debug("Serversocket initialized.");
-      if (args.getSecurityArgs() != null)
-         this.server = new Server(this, args.getSecurityArgs().getKeys());
-      else
-         this.server = new Server(this, null);
 
-      this.thread = new Thread(this);
+      int listeners = args.isListenersSet() ? args.getListeners() : 1;
+      if (args.isSelector() && !SelectorAcceptor.isSupported()) {
+         throw new DaemonInitException("The selector requires Java " + SelectorAcceptor.MIN_JAVA_VERSION
+                                       + " or newer, but this is Java " + System.getProperty("java.specification.version"));
+      }
+      try {
+         if (args.isSelector()) {
+            int eventLoops = args.isEventLoopsSet() ? args.getEventLoops()
+                                                    : Runtime.getRuntime().availableProcessors();
+            LOGGER.info("Initialising " + listeners + " server channels on port " + port
+                        + " with " + eventLoops + " event loops.");
+            this.acceptor = AcceptorGroup.open(port, listeners, true, eventLoops, server);
+         } else {
+            LOGGER.info("Initialising " + listeners + " server sockets on port " + port + ".");
+            this.acceptor = AcceptorGroup.open(port, listeners, false, 0, server);
+         }
+      } catch (IOException | IllegalArgumentException e) {
+         throw new DaemonInitException("Could not initiate the server", e);
+      }
       LOGGER.debug("BiNinjaServer initialized.");
    }
 
    @Override
    public void start() {
       LOGGER.debug("BiNinjaServer starting up...");
-      thread.start();
-   }
-
-   @Override
-   public void run() {
       running = true;
-      LOGGER.info("Waiting for downloadClients to connect...");
-      while (running) {
-         try {
-            server.newConnection(serverSocket.accept());
-         } catch (SocketTimeoutException e) {
-
-         } catch (IOException e) {
-            if (!serverSocket.isClosed())
-               LOGGER.error(e.getMessage(), e);
-         }
-      }
-      LOGGER.debug("Serversocket stopped.");
+      acceptor.start();
+      if (exporter != null)
+         exporter.start();
    }
 
    @Override
@@ -100,13 +247,12 @@ public class MasterControlProgram implements Daemon, ServerController, Runnable
    @Override
    public void stop() throws InterruptedException, TimeoutException {
       LOGGER.info("Stopping BiNinjaServer");
-      if (serverSocket == null || serverSocket.isClosed())
+      if (acceptor == null || !running)
          return;
 
-      LOGGER.debug("Stopping the server socket");
+      LOGGER.debug("Stopping the acceptor");
       running = false;
-      if (thread != null && thread != Thread.currentThread())
-         thread.join();
+      acceptor.stop(0);
 
       LOGGER.info("BiNinja server stopped.");
    }
@@ -125,18 +271,21 @@ public class MasterControlProgram implements Daemon, ServerController, Runnable
          server = null;
       }
 
-      if (thread != null && thread != Thread.currentThread()) {
+      if (exporter != null) {
+         exporter.stop();
+         exporter = null;
+      }
+
+      if (acceptor != null) {
          try {
-            thread.join();
+            acceptor.stop(0);
          } catch (InterruptedException e) {
             LOGGER.warn("An exception occured while terminating", e);
          }
-      }
-      if (serverSocket != null && !serverSocket.isClosed()) {
          try {
-            serverSocket.close();
+            acceptor.close();
          } catch (IOException e) {
-            LOGGER.warn("Error closing the server socket.");
+            LOGGER.warn("Error closing the acceptor.");
          }
       }
       LOGGER.debug("BiNinjaServer out.");
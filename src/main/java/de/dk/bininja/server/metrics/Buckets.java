@@ -0,0 +1,73 @@
+package de.dk.bininja.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped counters of values in buckets, whose upper bounds are the powers of two from 1 up to 2^32.
+ * The last bucket has no upper bound.
+ * Adding a value only increments three striped counters, so it is cheap enough for every chunk.
+ */
+class Buckets {
+   static final int COUNT = 33;
+
+   private final LongAdder[] buckets = new LongAdder[COUNT];
+   private final LongAdder count = new LongAdder();
+   private final LongAdder sum = new LongAdder();
+
+   Buckets() {
+      for (int i = 0; i < COUNT; i++)
+         buckets[i] = new LongAdder();
+   }
+
+   /**
+    * @param value The value, that determines the bucket
+    * @param amount The amount added to the sum, which may be in a finer unit than the value
+    */
+   void add(long value, long amount) {
+      int index = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+      buckets[Math.min(index, COUNT - 1)].increment();
+      count.increment();
+      sum.add(amount);
+   }
+
+   static long upperBound(int bucket) {
+      return 1L << bucket;
+   }
+
+   long get(int bucket) {
+      return buckets[bucket].sum();
+   }
+
+   long getCount() {
+      return count.sum();
+   }
+
+   long getSum() {
+      return sum.sum();
+   }
+
+   /**
+    * @param quantile The quantile between 0 and 1
+    *
+    * @return The upper bound of the bucket, that contains the quantile, or 0 if nothing was added yet
+    */
+   long quantile(double quantile) {
+      long[] counts = new long[COUNT];
+      long total = 0;
+      for (int i = 0; i < COUNT; i++) {
+         counts[i] = buckets[i].sum();
+         total += counts[i];
+      }
+      if (total == 0)
+         return 0;
+
+      long rank = (long) Math.ceil(quantile * total);
+      long seen = 0;
+      for (int i = 0; i < COUNT; i++) {
+         seen += counts[i];
+         if (seen >= rank)
+            return upperBound(i);
+      }
+      return upperBound(COUNT - 1);
+   }
+}
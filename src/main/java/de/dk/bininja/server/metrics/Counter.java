@@ -0,0 +1,26 @@
+package de.dk.bininja.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value, that only increases.
+ */
+public class Counter {
+   private final LongAdder value = new LongAdder();
+
+   Counter() {
+
+   }
+
+   public void increment() {
+      value.increment();
+   }
+
+   public void add(long amount) {
+      value.add(amount);
+   }
+
+   public long get() {
+      return value.sum();
+   }
+}
@@ -0,0 +1,64 @@
+package de.dk.bininja.server.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts durations in buckets, whose upper bounds are the powers of two in microseconds,
+ * from 1 microsecond up to about 70 minutes.
+ * Recording a duration only increments three striped counters, so it is cheap enough for every chunk.
+ * Sizes are counted by a {@link SizeHistogram}.
+ */
+public class Histogram {
+   private final Buckets buckets = new Buckets();
+
+   Histogram() {
+
+   }
+
+   /**
+    * @param nanos The duration in nanoseconds
+    */
+   public void record(long nanos) {
+      buckets.add(Math.max(0, nanos) / 1000, nanos);
+   }
+
+   /**
+    * Records the time passed since <code>startNanos</code>, which was taken from {@link System#nanoTime()}.
+    */
+   public void recordSince(long startNanos) {
+      record(System.nanoTime() - startNanos);
+   }
+
+   Buckets getBuckets() {
+      return buckets;
+   }
+
+   public long getCount() {
+      return buckets.getCount();
+   }
+
+   /**
+    * @return The sum of the recorded durations in nanoseconds
+    */
+   public long getSumNanos() {
+      return buckets.getSum();
+   }
+
+   /**
+    * @param quantile The quantile between 0 and 1
+    *
+    * @return The upper bound of the bucket, that contains the quantile, in microseconds
+    * or 0 if nothing was recorded yet
+    */
+   public long getQuantileMicros(double quantile) {
+      return buckets.quantile(quantile);
+   }
+
+   public long getMeanMicros() {
+      long count = getCount();
+      if (count == 0)
+         return 0;
+
+      return TimeUnit.NANOSECONDS.toMicros(getSumNanos() / count);
+   }
+}
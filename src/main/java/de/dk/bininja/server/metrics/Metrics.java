@@ -0,0 +1,177 @@
+package de.dk.bininja.server.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The registry of the metrics of the server.
+ * A metric is identified by its name and its labels, which are given as pairs of label name and value.
+ * Registering a metric twice returns the metric, that was registered first.
+ * The metrics can be read as a flat map or written in the text format of Prometheus.
+ */
+public class Metrics {
+   private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+   public Counter counter(String name, String help, String... labels) {
+      return (Counter) family(name, help, Type.COUNTER).metrics.computeIfAbsent(labels(labels), key -> new Counter());
+   }
+
+   public Histogram histogram(String name, String help, String... labels) {
+      Object histogram = family(name, help, Type.HISTOGRAM).metrics.computeIfAbsent(labels(labels), key -> new Histogram());
+      if (!(histogram instanceof Histogram))
+         throw new IllegalArgumentException("The histogram " + name + " counts sizes, not durations");
+
+      return (Histogram) histogram;
+   }
+
+   /**
+    * Registers a histogram, that counts sizes, e.g. bytes or packets, instead of durations.
+    */
+   public SizeHistogram sizeHistogram(String name, String help, String... labels) {
+      Object histogram = family(name, help, Type.HISTOGRAM).metrics.computeIfAbsent(labels(labels),
+                                                                                   key -> new SizeHistogram());
+      if (!(histogram instanceof SizeHistogram))
+         throw new IllegalArgumentException("The histogram " + name + " counts durations, not sizes");
+
+      return (SizeHistogram) histogram;
+   }
+
+   public void gauge(String name, String help, LongSupplier value, String... labels) {
+      family(name, help, Type.GAUGE).metrics.putIfAbsent(labels(labels), value);
+   }
+
+   private Family family(String name, String help, Type type) {
+      Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+      if (family.type != type)
+         throw new IllegalArgumentException("The metric " + name + " is a " + family.type + ", not a " + type);
+
+      return family;
+   }
+
+   private static String labels(String... labels) {
+      if (labels.length % 2 != 0)
+         throw new IllegalArgumentException("Labels have to be pairs of name and value");
+
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < labels.length; i += 2) {
+         builder.append(i == 0 ? "" : ",")
+                .append(labels[i])
+                .append("=\"")
+                .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+                .append('"');
+      }
+      return builder.toString();
+   }
+
+   /**
+    * Reads all metrics, whose name starts with the prefix.
+    * Histograms are summarized by their count, mean and the quantiles 0.5, 0.9 and 0.99 in microseconds,
+    * histograms of sizes in the unit of their sizes.
+    */
+   public Map<String, Long> snapshot(String prefix) {
+      Map<String, Long> snapshot = new TreeMap<>();
+      for (Map.Entry<String, Family> entry : families.entrySet()) {
+         String name = entry.getKey();
+         if (prefix != null && !name.startsWith(prefix))
+            continue;
+
+         for (Map.Entry<String, Object> metric : entry.getValue().metrics.entrySet()) {
+            String key = metric.getKey().isEmpty() ? name : name + "{" + metric.getKey() + "}";
+            Object value = metric.getValue();
+            if (value instanceof Counter) {
+               snapshot.put(key, ((Counter) value).get());
+            } else if (value instanceof LongSupplier) {
+               snapshot.put(key, ((LongSupplier) value).getAsLong());
+            } else if (value instanceof SizeHistogram) {
+               SizeHistogram histogram = (SizeHistogram) value;
+               snapshot.put(key + ".count", histogram.getCount());
+               snapshot.put(key + ".mean", histogram.getMean());
+               snapshot.put(key + ".p50", histogram.getQuantile(0.5));
+               snapshot.put(key + ".p90", histogram.getQuantile(0.9));
+               snapshot.put(key + ".p99", histogram.getQuantile(0.99));
+            } else {
+               Histogram histogram = (Histogram) value;
+               snapshot.put(key + ".count", histogram.getCount());
+               snapshot.put(key + ".meanMicros", histogram.getMeanMicros());
+               snapshot.put(key + ".p50Micros", histogram.getQuantileMicros(0.5));
+               snapshot.put(key + ".p90Micros", histogram.getQuantileMicros(0.9));
+               snapshot.put(key + ".p99Micros", histogram.getQuantileMicros(0.99));
+            }
+         }
+      }
+      return snapshot;
+   }
+
+   /**
+    * Writes all metrics in the text exposition format of Prometheus.
+    */
+   public void writePrometheus(Writer out) throws IOException {
+      for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+         String name = entry.getKey();
+         Family family = entry.getValue();
+         out.write("# HELP " + name + " " + family.help + "\n");
+         out.write("# TYPE " + name + " " + family.type.name().toLowerCase() + "\n");
+         for (Map.Entry<String, Object> metric : new TreeMap<>(family.metrics).entrySet()) {
+            String labels = metric.getKey();
+            Object value = metric.getValue();
+            if (value instanceof Counter)
+               out.write(sample(name, labels, null, ((Counter) value).get()));
+            else if (value instanceof LongSupplier)
+               out.write(sample(name, labels, null, ((LongSupplier) value).getAsLong()));
+            else if (value instanceof SizeHistogram)
+               writeHistogram(out, name, labels, ((SizeHistogram) value).getBuckets(), false);
+            else
+               writeHistogram(out, name, labels, ((Histogram) value).getBuckets(), true);
+         }
+      }
+   }
+
+   /**
+    * @param durations If the buckets count durations in microseconds, which are written in seconds
+    */
+   private static void writeHistogram(Writer out, String name, String labels, Buckets buckets, boolean durations) throws IOException {
+      long cumulative = 0;
+      for (int i = 0; i < Buckets.COUNT - 1; i++) {
+         cumulative += buckets.get(i);
+         long bound = Buckets.upperBound(i);
+         String le = "le=\"" + (durations ? Double.toString(bound / 1_000_000d) : Long.toString(bound)) + "\"";
+         out.write(sample(name + "_bucket", labels, le, cumulative));
+      }
+      out.write(sample(name + "_bucket", labels, "le=\"+Inf\"", buckets.getCount()));
+      if (durations)
+         out.write(sample(name + "_sum", labels, null, buckets.getSum() / 1_000_000_000d));
+      else
+         out.write(sample(name + "_sum", labels, null, buckets.getSum()));
+      out.write(sample(name + "_count", labels, null, buckets.getCount()));
+   }
+
+   private static String sample(String name, String labels, String extraLabel, Object value) {
+      String all = labels;
+      if (extraLabel != null)
+         all = labels.isEmpty() ? extraLabel : labels + "," + extraLabel;
+
+      return all.isEmpty() ? name + " " + value + "\n" : name + "{" + all + "} " + value + "\n";
+   }
+
+   private static enum Type {
+      COUNTER,
+      GAUGE,
+      HISTOGRAM;
+   }
+
+   private static class Family {
+      private final String help;
+      private final Type type;
+      private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+      public Family(String help, Type type) {
+         this.help = help;
+         this.type = type;
+      }
+   }
+}
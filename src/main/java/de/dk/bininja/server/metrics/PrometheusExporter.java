@@ -0,0 +1,69 @@
+package de.dk.bininja.server.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the metrics in the text format of Prometheus at <code>/metrics</code> on a local port.
+ */
+public class PrometheusExporter {
+   private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusExporter.class);
+
+   private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+   private final Metrics metrics;
+   private final HttpServer server;
+
+   /**
+    * @param metrics The metrics to serve
+    * @param port The port on the loopback address
+    */
+   public PrometheusExporter(Metrics metrics, int port) throws IOException {
+      this.metrics = metrics;
+      this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+      server.createContext("/metrics", this::handle);
+   }
+
+   public void start() {
+      server.start();
+      LOGGER.info("Exporting metrics at http://" + server.getAddress().getHostString()
+                  + ":" + server.getAddress().getPort() + "/metrics");
+   }
+
+   private void handle(HttpExchange exchange) throws IOException {
+      try {
+         if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+         }
+
+         ByteArrayOutputStream body = new ByteArrayOutputStream();
+         try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+            metrics.writePrometheus(writer);
+         }
+         exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+         exchange.sendResponseHeaders(200, body.size());
+         try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+         }
+      } finally {
+         exchange.close();
+      }
+   }
+
+   public void stop() {
+      server.stop(0);
+   }
+}
@@ -0,0 +1,44 @@
+package de.dk.bininja.server.metrics;
+
+/**
+ * Counts sizes, e.g. bytes or packets, in buckets, whose upper bounds are the powers of two
+ * from 1 up to about 4 billion.
+ * Recording a size only increments three striped counters, so it is cheap enough for every chunk.
+ */
+public class SizeHistogram {
+   private final Buckets buckets = new Buckets();
+
+   SizeHistogram() {
+
+   }
+
+   public void record(long size) {
+      buckets.add(size, size);
+   }
+
+   Buckets getBuckets() {
+      return buckets;
+   }
+
+   public long getCount() {
+      return buckets.getCount();
+   }
+
+   public long getSum() {
+      return buckets.getSum();
+   }
+
+   /**
+    * @param quantile The quantile between 0 and 1
+    *
+    * @return The upper bound of the bucket, that contains the quantile, or 0 if nothing was recorded yet
+    */
+   public long getQuantile(double quantile) {
+      return buckets.quantile(quantile);
+   }
+
+   public long getMean() {
+      long count = getCount();
+      return count == 0 ? 0 : getSum() / count;
+   }
+}
@@ -0,0 +1,12 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+
+/**
+ * Accepts new client connections on a listening socket and hands them to the {@link Server}.
+ */
+public interface Acceptor {
+   public void start();
+   public void stop(long timeout) throws InterruptedException;
+   public void close() throws IOException;
+}
@@ -0,0 +1,176 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Several listeners on the same port, each with its own acceptor.
+ * The listeners are bound with <code>SO_REUSEPORT</code>, so the kernel spreads the new connections over them.
+ * <code>SO_REUSEPORT</code> is only available since Java 9 and not on every platform.
+ * Where it is missing, only one listener is opened.
+ */
+public class AcceptorGroup implements Acceptor {
+   private static final Logger LOGGER = LoggerFactory.getLogger(AcceptorGroup.class);
+
+   private static final SocketOption<Boolean> SO_REUSEPORT = lookupReusePort();
+
+   private final List<Acceptor> acceptors;
+
+   private AcceptorGroup(List<Acceptor> acceptors) {
+      this.acceptors = Objects.requireNonNull(acceptors);
+   }
+
+   /**
+    * Opens the listeners and their acceptors.
+    *
+    * @param listeners The number of listeners
+    * @param selector If the acceptors are {@link SelectorAcceptor}s instead of {@link BlockingAcceptor}s
+    * @param eventLoops The number of event loops of all selector acceptors together
+    *
+    * @return A single acceptor, if only one listener is opened, otherwise the group of the acceptors
+    */
+   public static Acceptor open(int port,
+                               int listeners,
+                               boolean selector,
+                               int eventLoops,
+                               Server server) throws IOException, IllegalArgumentException {
+      if (listeners < 1)
+         throw new IllegalArgumentException("At least one listener required, but was " + listeners);
+
+      if (listeners > 1 && !isReusePortSupported()) {
+         LOGGER.warn("SO_REUSEPORT is not supported, opening only one listener instead of " + listeners + ".");
+         listeners = 1;
+      }
+
+      boolean reusePort = listeners > 1;
+      List<Acceptor> acceptors = new ArrayList<>(listeners);
+      try {
+         for (int i = 0; i < listeners; i++) {
+            if (selector) {
+               acceptors.add(new SelectorAcceptor(openChannel(port, reusePort),
+                                                  i,
+                                                  Math.max(1, eventLoops / listeners),
+                                                  server));
+            } else {
+               acceptors.add(new BlockingAcceptor(openServerSocket(port, reusePort), i, server));
+            }
+         }
+      } catch (IOException | RuntimeException e) {
+         for (Acceptor acceptor : acceptors)
+            closeQuietly(acceptor);
+
+         throw e;
+      }
+
+      return listeners == 1 ? acceptors.get(0) : new AcceptorGroup(acceptors);
+   }
+
+   @SuppressWarnings("unchecked")
+   private static SocketOption<Boolean> lookupReusePort() {
+      try {
+         return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT")
+                                                                   .get(null);
+      } catch (ReflectiveOperationException e) {
+         return null;
+      }
+   }
+
+   public static boolean isReusePortSupported() {
+      if (SO_REUSEPORT == null)
+         return false;
+
+      try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+         return channel.supportedOptions()
+                       .contains(SO_REUSEPORT);
+      } catch (IOException e) {
+         LOGGER.debug("Could not check the support of SO_REUSEPORT", e);
+         return false;
+      }
+   }
+
+   private static ServerSocketChannel openChannel(int port, boolean reusePort) throws IOException {
+      ServerSocketChannel channel = ServerSocketChannel.open();
+      try {
+         if (reusePort)
+            channel.setOption(SO_REUSEPORT, true);
+
+         channel.bind(new InetSocketAddress(port));
+      } catch (IOException | RuntimeException e) {
+         channel.close();
+         throw e;
+      }
+      return channel;
+   }
+
+   private static ServerSocket openServerSocket(int port, boolean reusePort) throws IOException {
+      if (!reusePort)
+         return new ServerSocket(port);
+
+      ServerSocket serverSocket = new ServerSocket();
+      try {
+         // ServerSocket.setOption is only available since Java 9
+         ServerSocket.class.getMethod("setOption", SocketOption.class, Object.class)
+                           .invoke(serverSocket, SO_REUSEPORT, true);
+
+         serverSocket.bind(new InetSocketAddress(port));
+      } catch (InvocationTargetException e) {
+         serverSocket.close();
+         throw new IOException("Could not set SO_REUSEPORT", e.getCause());
+      } catch (ReflectiveOperationException e) {
+         serverSocket.close();
+         throw new IOException("SO_REUSEPORT is not supported", e);
+      } catch (IOException | RuntimeException e) {
+         serverSocket.close();
+         throw e;
+      }
+      return serverSocket;
+   }
+
+   private static void closeQuietly(Acceptor acceptor) {
+      try {
+         acceptor.close();
+      } catch (IOException e) {
+         LOGGER.warn("Error closing an acceptor", e);
+      }
+   }
+
+   @Override
+   public void start() {
+      for (Acceptor acceptor : acceptors)
+         acceptor.start();
+   }
+
+   @Override
+   public void stop(long timeout) throws InterruptedException {
+      for (Acceptor acceptor : acceptors)
+         acceptor.stop(timeout);
+   }
+
+   @Override
+   public void close() throws IOException {
+      IOException e = null;
+      for (Acceptor acceptor : acceptors) {
+         try {
+            acceptor.close();
+         } catch (IOException ex) {
+            if (e == null)
+               e = ex;
+            else
+               e.addSuppressed(ex);
+         }
+      }
+      if (e != null)
+         throw e;
+   }
+}
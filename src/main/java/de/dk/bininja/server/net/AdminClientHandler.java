@@ -18,6 +18,16 @@ import de.dk.bininja.net.packet.admin.ReadBufferSizePacket;
 import de.dk.bininja.net.packet.admin.SetBufferSizePacket;
 import de.dk.bininja.server.controller.AdminClientController;
 import de.dk.bininja.server.controller.ClientHandler;
+import de.dk.bininja.server.net.packet.BandwidthLimitPacket;
+import de.dk.bininja.server.net.packet.BandwidthLimitPacket.BandwidthLimitOperation;
+import de.dk.bininja.server.net.packet.CachePacket;
+import de.dk.bininja.server.net.packet.ChunkSizingPacket;
+import de.dk.bininja.server.net.packet.ChunkSizingPacket.ChunkSizingOperation;
+import de.dk.bininja.server.net.packet.DownloadDetailsPacket;
+import de.dk.bininja.server.net.packet.DownloadQueuePacket;
+import de.dk.bininja.server.net.packet.MetricsPacket;
+import de.dk.bininja.server.net.packet.ServerAdminPacket;
+import de.dk.bininja.server.net.packet.StatisticsPacket;
 import de.dk.ch.Receiver;
 import de.dk.util.net.Connection;
 import de.dk.util.net.ConnectionListener;
@@ -51,6 +61,11 @@ public class AdminClientHandler implements ClientHandler, Receiver, ConnectionLi
    @Override
    public void receive(Object msg) throws IllegalArgumentException {
       LOGGER.debug("Message received: " + msg);
+      if (msg instanceof ServerAdminPacket) {
+         receive((ServerAdminPacket) msg);
+         return;
+      }
+
       if (!(msg instanceof AdminPacket))
          throw new IllegalArgumentException("The received message was no AdminPacket: " + msg);
 
@@ -74,6 +89,164 @@ public class AdminClientHandler implements ClientHandler, Receiver, ConnectionLi
       }
    }
 
+   private void receive(ServerAdminPacket packet) {
+      switch (packet.getType()) {
+      case STATISTICS:
+         readStatistics((StatisticsPacket) packet);
+         break;
+      case CACHE:
+         manageCache((CachePacket) packet);
+         break;
+      case CHUNK_SIZING:
+         chunkSizing((ChunkSizingPacket) packet);
+         break;
+      case DOWNLOAD_DETAILS:
+         getDownloadDetails((DownloadDetailsPacket) packet);
+         break;
+      case BANDWIDTH_LIMIT:
+         bandwidthLimit((BandwidthLimitPacket) packet);
+         break;
+      case DOWNLOAD_QUEUE:
+         manageQueue((DownloadQueuePacket) packet);
+         break;
+      case METRICS:
+         readMetrics((MetricsPacket) packet);
+         break;
+      }
+   }
+
+   private void manageQueue(DownloadQueuePacket packet) {
+      DownloadScheduler scheduler = controller.getScheduler();
+      boolean success = true;
+      switch (packet.getOperation()) {
+      case LIST:
+         break;
+      case MOVE:
+         LOGGER.info("Moving queued download " + packet.getId() + " to position " + packet.getPosition());
+         success = scheduler.move(packet.getId(), packet.getPosition());
+         break;
+      case SET_MAX_CONCURRENT:
+         LOGGER.info("Setting the maximum number of concurrent downloads to " + packet.getMaxConcurrent());
+         try {
+            scheduler.setMaxConcurrent(packet.getMaxConcurrent());
+         } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid maximum number of concurrent downloads received from " + connection.getAddress(), e);
+            success = false;
+         }
+         break;
+      }
+
+      packet.setMaxConcurrent(scheduler.getMaxConcurrent());
+      packet.setRunning(scheduler.getRunning());
+      packet.setQueue(scheduler.getQueue());
+      packet.setSuccess(success);
+      LOGGER.debug("Sending answer of the queue operation " + packet.getOperation() + " to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for manageQueue to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void bandwidthLimit(BandwidthLimitPacket packet) {
+      boolean success = true;
+      if (packet.getOperation() == BandwidthLimitOperation.SET) {
+         try {
+            controller.setBandwidthLimits(packet.getGlobalLimit(), packet.getAddressLimit(), packet.getDownloadLimit());
+         } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid bandwidth limits received from " + connection.getAddress() + ": " + packet, e);
+            success = false;
+         }
+      }
+
+      Bandwidth bandwidth = controller.readBandwidthLimits();
+      packet.setGlobalLimit(bandwidth.getGlobalLimit());
+      packet.setAddressLimit(bandwidth.getAddressLimit());
+      packet.setDownloadLimit(bandwidth.getDownloadLimit());
+      packet.setSuccess(success);
+      LOGGER.debug("Sending answer of the bandwidth limits to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for bandwidthLimit to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void chunkSizing(ChunkSizingPacket packet) {
+      boolean success = true;
+      if (packet.getOperation() == ChunkSizingOperation.SET) {
+         try {
+            controller.setChunkSizing(packet.isEnabled(), packet.getMinChunkSize(), packet.getMaxChunkSize());
+         } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid chunk sizing received from " + connection.getAddress() + ": " + packet, e);
+            success = false;
+         }
+      }
+
+      ChunkSizing sizing = controller.readChunkSizing();
+      packet.setEnabled(sizing.isEnabled());
+      packet.setMinChunkSize(sizing.getMinChunkSize());
+      packet.setMaxChunkSize(sizing.getMaxChunkSize());
+      packet.setSuccess(success);
+      LOGGER.debug("Sending answer of the chunk sizing to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for chunkSizing to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void readMetrics(MetricsPacket packet) {
+      packet.setMetrics(controller.readMetrics(packet.getPrefix()));
+      LOGGER.debug("Sending answer of the metrics to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for readMetrics to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void getDownloadDetails(DownloadDetailsPacket packet) {
+      packet.setDetails(controller.getDownloadDetails());
+      LOGGER.debug("Sending answer of the download details to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for getDownloadDetails to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void manageCache(CachePacket packet) {
+      switch (packet.getOperation()) {
+      case PURGE:
+         packet.setSuccess(controller.purgeCache(packet.getUrl()));
+         break;
+      case PIN:
+         packet.setSuccess(controller.pinCache(packet.getUrl(), true));
+         break;
+      case UNPIN:
+         packet.setSuccess(controller.pinCache(packet.getUrl(), false));
+         break;
+      }
+
+      LOGGER.debug("Sending answer of the cache operation " + packet.getOperation() + " to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for manageCache to admin client " + connection.getAddress(), e);
+      }
+   }
+
+   private void readStatistics(StatisticsPacket packet) {
+      packet.setStatistics(controller.readStatistics(packet.getStatisticsType()));
+      LOGGER.debug("Sending answer of the " + packet.getStatisticsType() + " statistics to " + connection.getAddress());
+      try {
+         connection.send(packet);
+      } catch (IOException e) {
+         LOGGER.error("Could not send answer for readStatistics to admin client " + connection.getAddress(), e);
+      }
+   }
+
    private void setBufferSize(SetBufferSizePacket packet) {
       controller.setBufferSize(packet.getBufferSize());
       LOGGER.debug("Sending answer that buffer size was set to " + connection.getAddress());
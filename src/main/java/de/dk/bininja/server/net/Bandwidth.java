@@ -0,0 +1,135 @@
+package de.dk.bininja.server.net;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the bandwidth of the downloads in three levels:
+ * all downloads of the server, all downloads to one remote address and every single download.
+ * A chunk is only sent, when all three levels have enough tokens for it.
+ * The limits can be changed at runtime and apply to running downloads immediately.
+ */
+public class Bandwidth {
+   public static final long UNLIMITED = 0;
+
+   private volatile long globalLimit;
+   private volatile long addressLimit;
+   private volatile long downloadLimit;
+
+   private final TokenBucket global = new TokenBucket(() -> globalLimit);
+   private final ConcurrentMap<InetAddress, AddressBucket> addresses = new ConcurrentHashMap<>();
+
+   private final LongAdder throttled = new LongAdder();
+   private final LongAdder throttledNanos = new LongAdder();
+
+   /**
+    * @param globalLimit The limit of all downloads in bytes per second
+    * @param addressLimit The limit of the downloads to one remote address in bytes per second
+    * @param downloadLimit The limit of a single download in bytes per second
+    */
+   public Bandwidth(long globalLimit, long addressLimit, long downloadLimit) {
+      setLimits(globalLimit, addressLimit, downloadLimit);
+   }
+
+   public Bandwidth() {
+      this(UNLIMITED, UNLIMITED, UNLIMITED);
+   }
+
+   public synchronized void setLimits(long globalLimit, long addressLimit, long downloadLimit) {
+      if (globalLimit < 0 || addressLimit < 0 || downloadLimit < 0)
+         throw new IllegalArgumentException("Negative bandwidth limit");
+
+      this.globalLimit = globalLimit;
+      this.addressLimit = addressLimit;
+      this.downloadLimit = downloadLimit;
+   }
+
+   /**
+    * Gets the bucket of the remote address. The bucket has to be released with {@link #release(AddressBucket)}.
+    */
+   public AddressBucket lease(InetAddress address) {
+      return addresses.compute(address, (key, bucket) -> {
+         if (bucket == null)
+            bucket = new AddressBucket(key);
+
+         bucket.users++;
+         return bucket;
+      });
+   }
+
+   public void release(AddressBucket bucket) {
+      addresses.computeIfPresent(bucket.address, (key, current) -> --current.users == 0 ? null : current);
+   }
+
+   /**
+    * @return A new throttle for a download to the address of the bucket
+    */
+   public Throttle newThrottle(AddressBucket address) {
+      return new Throttle(address);
+   }
+
+   public long getGlobalLimit() {
+      return globalLimit;
+   }
+
+   public long getAddressLimit() {
+      return addressLimit;
+   }
+
+   public long getDownloadLimit() {
+      return downloadLimit;
+   }
+
+   public Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("globalLimit", globalLimit);
+      statistics.put("addressLimit", addressLimit);
+      statistics.put("downloadLimit", downloadLimit);
+      statistics.put("addresses", (long) addresses.size());
+      statistics.put("throttled", throttled.sum());
+      statistics.put("throttledMillis", TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum()));
+      return statistics;
+   }
+
+   public class AddressBucket {
+      private final InetAddress address;
+      private final TokenBucket bucket = new TokenBucket(() -> addressLimit);
+      private int users;
+
+      private AddressBucket(InetAddress address) {
+         this.address = address;
+      }
+   }
+
+   /**
+    * Throttles a single download.
+    */
+   public class Throttle {
+      private final AddressBucket address;
+      private final TokenBucket download = new TokenBucket(() -> downloadLimit);
+
+      private Throttle(AddressBucket address) {
+         this.address = address;
+      }
+
+      /**
+       * Waits until the bytes may be sent.
+       *
+       * @throws InterruptedException If interrupted while waiting
+       */
+      public void acquire(int bytes) throws InterruptedException {
+         long delay = Math.max(global.take(bytes), Math.max(address.bucket.take(bytes), download.take(bytes)));
+         if (delay <= 0)
+            return;
+
+         throttled.increment();
+         throttledNanos.add(delay);
+         TimeUnit.NANOSECONDS.sleep(delay);
+      }
+   }
+}
@@ -0,0 +1,83 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accepts connections with a blocking <code>ServerSocket.accept()</code> loop in a single thread.
+ */
+public class BlockingAcceptor implements Acceptor, Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(BlockingAcceptor.class);
+
+   private static final int SERVERSOCKET_TIMEOUT = 1024;
+
+   private final ServerSocket serverSocket;
+   private final Server server;
+   private final String name;
+   private final AtomicLong accepted = new AtomicLong();
+
+   private volatile boolean running;
+   private Thread thread;
+
+   public BlockingAcceptor(int port, Server server) throws IOException {
+      this(new ServerSocket(port), 0, server);
+   }
+
+   /**
+    * @param serverSocket The bound server socket
+    * @param listener The index of the listener, if there are several listeners on the same port
+    */
+   public BlockingAcceptor(ServerSocket serverSocket, int listener, Server server) throws IOException {
+      this.server = Objects.requireNonNull(server);
+      this.serverSocket = Objects.requireNonNull(serverSocket);
+      this.name = "bininja-acceptor-" + listener;
+      serverSocket.setSoTimeout(SERVERSOCKET_TIMEOUT);
+      server.addListener(name, accepted::get);
+   }
+
+   @Override
+   public synchronized void start() {
+      running = true;
+      this.thread = new Thread(this, name);
+      thread.start();
+   }
+
+   @Override
+   public void run() {
+      LOGGER.info("Waiting for clients to connect...");
+      while (running) {
+         try {
+            Socket socket = serverSocket.accept();
+            accepted.incrementAndGet();
+            server.newConnection(socket);
+         } catch (SocketTimeoutException e) {
+
+         } catch (IOException e) {
+            if (!serverSocket.isClosed())
+               LOGGER.error(e.getMessage(), e);
+         }
+      }
+      LOGGER.debug("Serversocket stopped.");
+   }
+
+   @Override
+   public synchronized void stop(long timeout) throws InterruptedException {
+      running = false;
+      if (thread != null && thread != Thread.currentThread())
+         thread.join(timeout);
+   }
+
+   @Override
+   public void close() throws IOException {
+      running = false;
+      if (!serverSocket.isClosed())
+         serverSocket.close();
+   }
+}
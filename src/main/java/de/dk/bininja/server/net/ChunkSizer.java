@@ -0,0 +1,77 @@
+package de.dk.bininja.server.net;
+
+/**
+ * Tunes the chunk size of a download to the rate, at which it reads from its origin and writes to its client.
+ * The chunk size is chosen, so that a chunk takes about {@link #TARGET_CHUNK_NANOS} to pass the slower of both sides.
+ * A blocking write includes the backpressure of the socket, so the write rate reflects both
+ * the bandwidth and the round trip time to the client.
+ * Chunk sizes are powers of two, to keep the number of size classes in the buffer pool small.
+ */
+class ChunkSizer {
+   private static final long TARGET_CHUNK_NANOS = 20_000_000;
+   private static final double SMOOTHING = 0.25;
+
+   private final ChunkSizing sizing;
+
+   private volatile double readRate = -1;
+   private volatile double writeRate = -1;
+   private volatile int chunkSize;
+
+   public ChunkSizer(ChunkSizing sizing, int initialChunkSize) {
+      this.sizing = sizing;
+      this.chunkSize = initialChunkSize;
+   }
+
+   /**
+    * @param fixedSize The chunk size, if adaptive sizing is disabled
+    *
+    * @return The size of the next chunk
+    */
+   public int next(int fixedSize) {
+      if (!sizing.isEnabled())
+         return chunkSize = fixedSize;
+
+      int min = sizing.getMinChunkSize();
+      int max = sizing.getMaxChunkSize();
+      if (readRate < 0 || writeRate < 0)
+         return chunkSize = Math.max(min, Math.min(max, chunkSize));
+
+      double rate = Math.min(readRate, writeRate);
+      long target = (long) (rate * TARGET_CHUNK_NANOS / 1_000_000_000d);
+      int size = target >= Integer.MAX_VALUE ? Integer.highestOneBit(Integer.MAX_VALUE)
+                                             : Integer.highestOneBit((int) Math.max(1, target));
+
+      return chunkSize = Math.max(min, Math.min(max, size));
+   }
+
+   public void read(int bytes, long nanos) {
+      this.readRate = smooth(readRate, bytes, nanos);
+   }
+
+   public void written(int bytes, long nanos) {
+      this.writeRate = smooth(writeRate, bytes, nanos);
+   }
+
+   private static double smooth(double rate, int bytes, long nanos) {
+      double sample = bytes * 1_000_000_000d / Math.max(1, nanos);
+      return rate < 0 ? sample : rate + SMOOTHING * (sample - rate);
+   }
+
+   public int getChunkSize() {
+      return chunkSize;
+   }
+
+   /**
+    * @return The smoothed read rate in bytes per second or -1 if not measured yet
+    */
+   public long getReadRate() {
+      return (long) readRate;
+   }
+
+   /**
+    * @return The smoothed write rate in bytes per second or -1 if not measured yet
+    */
+   public long getWriteRate() {
+      return (long) writeRate;
+   }
+}
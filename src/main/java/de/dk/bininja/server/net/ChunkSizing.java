@@ -0,0 +1,44 @@
+package de.dk.bininja.server.net;
+
+/**
+ * The server wide settings of the adaptive chunk sizing.
+ * If enabled every download tunes its chunk size to its measured throughput,
+ * within the bounds of these settings.
+ * Otherwise the chunks of all downloads have the buffer size of their connection.
+ */
+public class ChunkSizing {
+   public static final int DEFAULT_MIN_CHUNK_SIZE = 4 * 1024;
+   public static final int DEFAULT_MAX_CHUNK_SIZE = 1024 * 1024;
+
+   private volatile boolean enabled;
+   private volatile int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+   private volatile int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+   public ChunkSizing(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   public int getMinChunkSize() {
+      return minChunkSize;
+   }
+
+   public int getMaxChunkSize() {
+      return maxChunkSize;
+   }
+
+   public synchronized void setBounds(int minChunkSize, int maxChunkSize) {
+      if (minChunkSize < 1 || maxChunkSize < minChunkSize)
+         throw new IllegalArgumentException("Invalid chunk size bounds: " + minChunkSize + " - " + maxChunkSize);
+
+      this.minChunkSize = minChunkSize;
+      this.maxChunkSize = maxChunkSize;
+   }
+}
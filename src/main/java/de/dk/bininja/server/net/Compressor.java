@@ -0,0 +1,166 @@
+package de.dk.bininja.server.net;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the chunks of one download into a single deflate stream.
+ * Every chunk is flushed, so the client can inflate each chunk as soon as it arrives,
+ * with one <code>Inflater</code> for the whole download.
+ * The compression is given up for the rest of the download, if the first chunks do not shrink enough.
+ * Once given up, it is never resumed, because the client has to see every byte of the stream.
+ * The deflater and its output buffer are reused for all chunks and, through the {@link Pool} of the connection,
+ * for the following downloads.
+ * Each compressed chunk is still copied into an array of its exact size,
+ * because a data packet sends its whole array and can not be handed a part of the output buffer.
+ */
+class Compressor {
+   static final int SAMPLE_SIZE = 256 * 1024;
+   static final double MAX_RATIO = 0.9;
+   static final int MAX_IDLE = 4;
+
+   private static final String[] COMPRESSED_TYPES = {"image/", "video/", "audio/", "font/woff"};
+   private static final String[] COMPRESSED_SUBTYPES = {"zip", "gzip", "x-gzip", "x-bzip2", "x-xz", "x-7z-compressed",
+                                                        "x-rar-compressed", "vnd.rar", "zstd", "x-compress",
+                                                        "java-archive", "vnd.android.package-archive"};
+
+   private final Deflater deflater;
+   private byte[] output;
+   private long sampledIn;
+   private long sampledOut;
+   private boolean enabled = true;
+
+   Compressor(int level, int chunkSize) {
+      this.deflater = new Deflater(level, true);
+      this.output = new byte[chunkSize + chunkSize / 16 + 64];
+   }
+
+   /**
+    * Prepares the compressor for a new download, that starts a new deflate stream.
+    */
+   private void reset(int level) {
+      deflater.reset();
+      deflater.setLevel(level);
+      sampledIn = 0;
+      sampledOut = 0;
+      enabled = true;
+   }
+
+   /**
+    * @return If content of this type may be worth compressing
+    */
+   static boolean isCompressible(String contentType) {
+      if (contentType == null)
+         return true;
+
+      String type = contentType.toLowerCase(Locale.ROOT);
+      int parameters = type.indexOf(';');
+      if (parameters != -1)
+         type = type.substring(0, parameters).trim();
+
+      for (String compressed : COMPRESSED_TYPES) {
+         if (type.startsWith(compressed))
+            return type.equals("image/svg+xml") || type.equals("image/bmp");
+      }
+      int slash = type.indexOf('/');
+      String subtype = slash == -1 ? type : type.substring(slash + 1);
+      for (String compressed : COMPRESSED_SUBTYPES) {
+         if (subtype.equals(compressed))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Compresses a chunk.
+    *
+    * @return The compressed chunk or <code>null</code> if the compression was given up and the chunk has to be sent as is
+    */
+   byte[] compress(byte[] data, int length) {
+      if (!enabled)
+         return null;
+
+      deflater.setInput(data, 0, length);
+      int compressed = 0;
+      while (true) {
+         compressed += deflater.deflate(output, compressed, output.length - compressed, Deflater.SYNC_FLUSH);
+         // A full buffer means, there may be more output
+         if (compressed < output.length)
+            break;
+
+         output = Arrays.copyOf(output, output.length * 2);
+      }
+
+      if (sampledIn < SAMPLE_SIZE) {
+         sampledIn += length;
+         sampledOut += compressed;
+         if (sampledIn >= SAMPLE_SIZE && sampledOut > sampledIn * MAX_RATIO) {
+            // This chunk is still sent compressed, the following ones are not
+            enabled = false;
+         }
+      }
+      return Arrays.copyOf(output, compressed);
+   }
+
+   boolean isEnabled() {
+      return enabled;
+   }
+
+   /**
+    * Frees the native memory of the deflater. The compressor can not be used anymore.
+    */
+   void close() {
+      enabled = false;
+      deflater.end();
+   }
+
+   /**
+    * Keeps the compressors of the finished downloads of one connection for its next downloads,
+    * so the native memory of a deflater is not allocated again for every download.
+    * Downloads, that run concurrently, each take their own compressor.
+    * At most {@link #MAX_IDLE} compressors are kept, they are closed together with the connection.
+    */
+   static class Pool {
+      private final Deque<Compressor> idle = new ArrayDeque<>();
+      private boolean closed;
+
+      /**
+       * @param level The compression level of the download
+       * @param chunkSize The size of the chunks, a new compressor sizes its output buffer for
+       */
+      synchronized Compressor acquire(int level, int chunkSize) {
+         Compressor compressor = idle.pollLast();
+         if (compressor == null)
+            return new Compressor(level, chunkSize);
+
+         compressor.reset(level);
+         return compressor;
+      }
+
+      void release(Compressor compressor) {
+         synchronized (this) {
+            if (!closed && idle.size() < MAX_IDLE) {
+               idle.addLast(compressor);
+               return;
+            }
+         }
+         compressor.close();
+      }
+
+      void close() {
+         List<Compressor> compressors;
+         synchronized (this) {
+            closed = true;
+            compressors = new ArrayList<>(idle);
+            idle.clear();
+         }
+         for (Compressor compressor : compressors)
+            compressor.close();
+      }
+   }
+}
@@ -3,6 +3,8 @@ package de.dk.bininja.server.net;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.SecretKey;
 
@@ -11,11 +13,23 @@ import org.slf4j.LoggerFactory;
 
 import de.dk.bininja.net.Base64Connection;
 import de.dk.bininja.net.packet.ConnectionRequestPacket;
+import de.dk.bininja.server.net.packet.ResumableConnectionRequestPacket;
+import de.dk.bininja.server.net.packet.ResumptionAnswerPacket;
+import de.dk.bininja.server.net.packet.SessionTicketPacket;
+import de.dk.bininja.server.timer.HashedWheelTimer;
 import de.dk.util.net.Coder;
 import de.dk.util.net.security.CipherCoderAdapter;
 import de.dk.util.net.security.SessionKeyArrangement;
 
 /**
+ * The handshake of a new connection.
+ * Extensions of this server are negotiated by subclasses of the core packets,
+ * e.g. a {@link ResumableConnectionRequestPacket}, which old clients never send.
+ * The framing of the connection can not be negotiated this way.
+ * Every packet, including the ones of the handshake, is read and written by the {@link Base64Connection},
+ * so a binary framing has to be provided by bininja-core as another connection class,
+ * that keeps the coder chain and the channel multiplexer.
+ *
  * @author David Koettlitz
  * <br>Erstellt am 07.08.2017
  */
@@ -25,16 +39,51 @@ public class ConnectionRequest implements Resource {
    private final ConnectionRequestHandler handler;
    private final Base64Connection connection;
    private boolean secure;
-   private final Thread thread;
+   private boolean resumed;
+   private final Execution execution;
+   private final long created = System.nanoTime();
+   private volatile HashedWheelTimer.Timeout deadline;
+   private volatile boolean expired;
 
    public ConnectionRequest(Base64Connection connection, ConnectionRequestHandler handler) throws IOException {
       this.connection = Objects.requireNonNull(connection);
       this.handler = handler;
-      this.thread = new Thread(this::run);
+      this.execution = new Execution(this::run);
    }
 
-   public void establish() {
-      thread.start();
+   /**
+    * @return The value of {@link System#nanoTime()}, when the request was created
+    */
+   public long getCreated() {
+      return created;
+   }
+
+   public void establish(Executor executor) {
+      execution.start(executor);
+   }
+
+   /**
+    * Closes the connection, if the handshake is not done within the timeout.
+    */
+   public void setDeadline(HashedWheelTimer timer, long timeoutMillis) {
+      this.deadline = timer.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+   }
+
+   private void expire() {
+      LOGGER.debug("The handshake with " + connection.getAddress() + " timed out.");
+      expired = true;
+      try {
+         // Closing the socket does not block and makes the handshake fail, wherever it waits for the client
+         connection.getSocket().close();
+      } catch (IOException e) {
+         LOGGER.warn("Could not close the connection to " + connection.getAddress(), e);
+      }
+   }
+
+   private void cancelDeadline() {
+      HashedWheelTimer.Timeout deadline = this.deadline;
+      if (deadline != null)
+         deadline.cancel();
    }
 
    private void run() {
@@ -52,12 +101,20 @@ public class ConnectionRequest implements Resource {
       this.secure = packet.isSecure();
       if (secure) {
          LOGGER.debug("Securing connection");
-         SessionKeyArrangement builder = new SessionKeyArrangement(connection, connection.getObjectOutput());
+         ResumableConnectionRequestPacket resumable = packet instanceof ResumableConnectionRequestPacket
+                                                      ? (ResumableConnectionRequestPacket) packet
+                                                      : null;
+         SessionCache sessions = handler.getSessionCache();
+         SecretKey sessionKey;
          Coder secureCoder;
-         LOGGER.debug("Arranging the session key.");
          try {
-            SecretKey sessionKey = handler.buildSecureCoder(builder);
-            secureCoder = new CipherCoderAdapter(sessionKey);
+            sessionKey = resumable != null && resumable.getTicket() != null ? resume(resumable, sessions) : null;
+            if (sessionKey == null) {
+               LOGGER.debug("Arranging the session key.");
+               SessionKeyArrangement builder = new SessionKeyArrangement(connection, connection.getObjectOutput());
+               sessionKey = handler.buildSecureCoder(builder);
+            }
+            secureCoder = createCoder(resumable == null ? null : resumable.getCoder(), sessionKey);
          } catch (IOException e) {
             handler.failed(this, e);
             return;
@@ -66,19 +123,33 @@ public class ConnectionRequest implements Resource {
             return;
          }
          connection.appendCoder(secureCoder);
-         LOGGER.debug("Session key arranged.");
+         LOGGER.debug(resumed ? "Session resumed." : "Session key arranged.");
 
          LOGGER.debug("Reading the type of the client.");
          try {
             packet = (ConnectionRequestPacket) connection.readObject();
          } catch (IOException e) {
             handler.failed(this, new IOException("Could not read connection type.", e));
+            return;
+         }
+
+         if (resumable != null && resumable.isTicketWanted() && sessions != null) {
+            LOGGER.debug("Issuing a session ticket.");
+            try {
+               connection.send(new SessionTicketPacket(sessions.issue(sessionKey), sessions.getTtlMillis()));
+            } catch (IOException e) {
+               handler.failed(this, new IOException("Could not send the session ticket.", e));
+               return;
+            }
          }
       }
 
       LOGGER.debug("Connection type received: " + packet.getConnectionType());
-      if (packet.getConnectionType() == null)
+      cancelDeadline();
+      if (packet.getConnectionType() == null) {
          handler.failed(this, new IOException("No connection type specified."));
+         return;
+      }
 
       switch (packet.getConnectionType()) {
       case ADMIN:
@@ -94,6 +165,34 @@ public class ConnectionRequest implements Resource {
 
    }
 
+   private static Coder createCoder(String name, SecretKey sessionKey) throws GeneralSecurityException {
+      if (name == null)
+         return new CipherCoderAdapter(sessionKey);
+      if (name.equals(GcmCoder.NAME))
+         return new GcmCoder(sessionKey, true);
+
+      throw new GeneralSecurityException("Unsupported coder: " + name);
+   }
+
+   /**
+    * Redeems the ticket of the client and tells the client, if the session can be resumed.
+    *
+    * @return The key of the resumed session or <code>null</code> if a new session key has to be arranged
+    */
+   private SecretKey resume(ResumableConnectionRequestPacket packet, SessionCache sessions) throws IOException {
+      SessionCache.Resumption resumption = sessions == null ? null
+                                                            : sessions.resume(packet.getTicket(), packet.getNonce());
+
+      connection.send(new ResumptionAnswerPacket(resumption == null ? null : resumption.getServerNonce()));
+      if (resumption == null) {
+         LOGGER.debug("The session could not be resumed.");
+         return null;
+      }
+
+      this.resumed = true;
+      return resumption.getKey();
+   }
+
    @Override
    public void close(long timeout) throws IOException, InterruptedException {
       LOGGER.debug("Closing ConnectionRequest from " + connection.getAddress());
@@ -103,43 +202,32 @@ public class ConnectionRequest implements Resource {
 
    @Override
    public void destroy(long timeout) throws IOException, InterruptedException {
+      cancelDeadline();
       if (!connection.isClosed())
          connection.close(0);
 
-      if (thread != null && thread != Thread.currentThread())
-         thread.join(timeout);
+      execution.join(timeout);
    }
 
    public Base64Connection getConnection() {
       return connection;
    }
 
-   public boolean isSecure() {
-      return secure;
+   /**
+    * @return If the handshake was aborted, because it did not complete within its deadline
+    */
+   public boolean isExpired() {
+      return expired;
    }
 
-   @Override
-   public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((this.connection == null) ? 0 : this.connection.getAddress().hashCode());
-      return result;
+   public boolean isSecure() {
+      return secure;
    }
 
-   @Override
-   public boolean equals(Object obj) {
-      if (this == obj)
-         return true;
-      if (obj == null)
-         return false;
-      if (getClass() != obj.getClass())
-         return false;
-      ConnectionRequest other = (ConnectionRequest) obj;
-      if (this.connection == null) {
-         if (other.connection != null)
-            return false;
-      } else if (!this.connection.getAddress().equals(other.connection.getAddress()))
-         return false;
-      return true;
+   /**
+    * @return If the session of a previous connection was resumed instead of arranging a new session key
+    */
+   public boolean isResumed() {
+      return resumed;
    }
 }
@@ -15,5 +15,9 @@ public interface ConnectionRequestHandler {
    void newAdminConnection(ConnectionRequest request, Base64Connection connection);
    void newDownloadConnection(ConnectionRequest request, Base64Connection connection);
    SecretKey buildSecureCoder(SessionKeyArrangement builder) throws IOException;
+   /**
+    * @return The cache of resumable sessions or <code>null</code> if sessions can not be resumed
+    */
+   SessionCache getSessionCache();
    void failed(ConnectionRequest request, IOException e);
 }
@@ -0,0 +1,62 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+
+/**
+ * The number of bytes a download may still send to its client.
+ * The credit is unlimited until the client grants credit for the first time.
+ */
+class Credit {
+   private boolean limited;
+   private long available;
+   private boolean closed;
+
+   public synchronized void grant(long bytes) {
+      if (bytes < 0)
+         throw new IllegalArgumentException("Negative credit: " + bytes);
+
+      this.limited = true;
+      long sum = available + bytes;
+      this.available = sum < 0 ? Long.MAX_VALUE : sum;
+      notifyAll();
+   }
+
+   /**
+    * Waits until there is credit.
+    *
+    * @return The number of bytes, that may be sent, but at most <code>max</code>
+    *
+    * @throws IOException If the credit was closed, because the client is gone
+    * @throws InterruptedException If interrupted while waiting
+    */
+   public synchronized int await(int max) throws IOException, InterruptedException {
+      while (limited && available <= 0 && !closed)
+         wait();
+
+      if (closed)
+         throw new IOException("The connection to the client is closed");
+
+      return limited ? (int) Math.min(max, available) : max;
+   }
+
+   public synchronized void consume(int bytes) {
+      if (limited)
+         available -= bytes;
+   }
+
+   /**
+    * Wakes up the download waiting for credit, because no more credit can arrive.
+    */
+   public synchronized void close() {
+      this.closed = true;
+      notifyAll();
+   }
+
+   public synchronized boolean isLimited() {
+      return limited;
+   }
+
+   public synchronized long getAvailable() {
+      return limited ? available : Long.MAX_VALUE;
+   }
+}
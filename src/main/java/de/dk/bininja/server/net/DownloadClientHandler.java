@@ -1,8 +1,12 @@
 package de.dk.bininja.server.net;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +14,9 @@ import org.slf4j.LoggerFactory;
 import de.dk.bininja.net.Base64Connection;
 import de.dk.bininja.net.ConnectionMetadata;
 import de.dk.bininja.net.ConnectionType;
-import de.dk.bininja.net.DownloadManager;
 import de.dk.bininja.net.packet.download.DownloadPacket;
 import de.dk.bininja.server.controller.ClientHandler;
+import de.dk.bininja.server.net.packet.DownloadDetails;
 import de.dk.ch.Channel;
 import de.dk.ch.ChannelDeclinedException;
 import de.dk.ch.ChannelHandler;
@@ -29,16 +33,27 @@ public class DownloadClientHandler implements ClientHandler,
    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadClientHandler.class);
 
    private final Base64Connection connection;
-   private DownloadManager<ServerDownload> downloads = new DownloadManager<>();
+   private final DownloadContext context;
+   private final Bandwidth.AddressBucket addressBucket;
+   private final WriteScheduler writes;
+   private final Compressor.Pool compressors = new Compressor.Pool();
+   private volatile int bufferSize = Base64Connection.DEFAULT_BUFFER_SIZE;
+   // Added by the thread of the connection, read by the idle timer and the admin
+   private final Set<ServerDownload> downloads = ConcurrentHashMap.newKeySet();
 
    private boolean secure;
    private final long timeStamp;
 
    public DownloadClientHandler(Base64Connection connection,
+                                DownloadContext context,
                                 boolean secure) throws IOException,
                                                        NullPointerException {
       this.connection = Objects.requireNonNull(connection);
+      this.context = Objects.requireNonNull(context);
       this.secure = secure;
+      this.writes = new WriteScheduler(context);
+      this.addressBucket = context.getBandwidth()
+                                  .lease(connection.getSocket().getInetAddress());
       connection.addListener(this);
       connection.attachMultiplexer(this);
       connection.start();
@@ -50,14 +65,29 @@ public class DownloadClientHandler implements ClientHandler,
                                    Optional<DownloadPacket> initialMsg) throws ChannelDeclinedException {
       LOGGER.debug("A new channel is requested by the client.");
       Channel<DownloadPacket> downloadChannel = (Channel<DownloadPacket>) channel;
-      ServerDownload download = new ServerDownload(downloadChannel);
-      downloadChannel.addListener(download);
+      ServerDownload download = new ServerDownload(downloadChannel,
+                                                   context,
+                                                   bufferSize,
+                                                   connection.getAddress().toString(),
+                                                   context.getBandwidth().newThrottle(addressBucket),
+                                                   writes,
+                                                   compressors);
+      download.setEndListener(downloads::remove);
       downloads.add(download);
+      downloadChannel.addListener(download);
    }
 
    @Override
    public void closed(Connection connection) {
       LOGGER.debug("Connection to download client " + connection.getAddress() + " closed.");
+      context.getBandwidth()
+             .release(addressBucket);
+
+      // No more credit or cancel packets can arrive, so nothing would end the waiting downloads
+      for (ServerDownload download : downloads)
+         download.abandon();
+
+      compressors.close();
    }
 
    @Override
@@ -80,6 +110,34 @@ public class DownloadClientHandler implements ClientHandler,
          connection.close(timeout);
    }
 
+   public int getBufferSize() {
+      return bufferSize;
+   }
+
+   public void setBufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      connection.setBufferSize(bufferSize);
+   }
+
+   /**
+    * @return If a download of this connection is still queued or running
+    */
+   public boolean isBusy() {
+      for (ServerDownload download : downloads) {
+         if (download.isActive())
+            return true;
+      }
+      return false;
+   }
+
+   public Collection<DownloadDetails> getDownloadDetails() {
+      Collection<DownloadDetails> details = new ArrayList<>();
+      for (ServerDownload download : downloads)
+         details.add(download.getDetails());
+
+      return details;
+   }
+
    @Override
    public Base64Connection getConnection() {
       return connection;
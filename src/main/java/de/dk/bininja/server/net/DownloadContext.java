@@ -0,0 +1,278 @@
+package de.dk.bininja.server.net;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.dk.bininja.server.buffer.BufferPool;
+import de.dk.bininja.server.cache.ContentCache;
+import de.dk.bininja.server.metrics.Metrics;
+import de.dk.bininja.server.timer.HashedWheelTimer;
+import de.dk.bininja.server.upstream.SingleFlight;
+import de.dk.bininja.server.upstream.UpstreamClient;
+
+/**
+ * The server wide resources shared by all downloads.
+ */
+public class DownloadContext {
+   public static final long DEFAULT_MIN_SEGMENT_SIZE = 4 * 1024 * 1024;
+   public static final int DEFAULT_SEGMENT_RETRIES = 3;
+   public static final int COMPRESSION_DISABLED = -1;
+   public static final int DEFAULT_WRITE_BATCH_SIZE = 16 * 1024;
+   public static final long DEFAULT_FLUSH_DELAY_MICROS = 1000;
+   public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+   private final ExecutorService executor;
+   private final ExecutorService fetchExecutor;
+   private final BufferPool bufferPool;
+   private ExecutorService writeExecutor;
+   private final HashedWheelTimer timer = new HashedWheelTimer("bininja-timer");
+   private Metrics metrics;
+   private DownloadMetrics downloadMetrics;
+   private UpstreamClient upstream = new UpstreamClient();
+   private ChunkSizing chunkSizing = new ChunkSizing(false);
+   private Bandwidth bandwidth = new Bandwidth();
+   private DownloadScheduler scheduler = new DownloadScheduler();
+   private ContentCache cache;
+   private SingleFlight flights;
+   private Path spoolDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+   private int segments = 1;
+   private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+   private int segmentRetries = DEFAULT_SEGMENT_RETRIES;
+   private volatile int compressionLevel = COMPRESSION_DISABLED;
+   private volatile int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+   private volatile long flushDelay = DEFAULT_FLUSH_DELAY_MICROS;
+   private volatile long stallTimeout = DEFAULT_STALL_TIMEOUT_MILLIS;
+
+   /**
+    * @param executor Runs the downloads
+    * @param fetchExecutor Runs the tasks, that fetch content from the origins on behalf of downloads
+    * @param bufferPool The pool of the chunk buffers
+    */
+   public DownloadContext(ExecutorService executor, ExecutorService fetchExecutor, BufferPool bufferPool) {
+      this.executor = Objects.requireNonNull(executor);
+      this.fetchExecutor = Objects.requireNonNull(fetchExecutor);
+      this.bufferPool = Objects.requireNonNull(bufferPool);
+      setMetrics(new Metrics());
+   }
+
+   public void close() {
+      executor.shutdown();
+      fetchExecutor.shutdownNow();
+      synchronized (this) {
+         if (writeExecutor != null)
+            writeExecutor.shutdown();
+      }
+      timer.stop();
+   }
+
+   public ExecutorService getExecutor() {
+      return executor;
+   }
+
+   public ExecutorService getFetchExecutor() {
+      return fetchExecutor;
+   }
+
+   /**
+    * @return Runs the writer tasks of the connections, that send the queued packets of the downloads.
+    * A cached thread pool is created on first use, if none was set.
+    */
+   public synchronized ExecutorService getWriteExecutor() {
+      if (writeExecutor == null)
+         this.writeExecutor = Executors.newCachedThreadPool();
+
+      return writeExecutor;
+   }
+
+   public synchronized void setWriteExecutor(ExecutorService writeExecutor) {
+      this.writeExecutor = Objects.requireNonNull(writeExecutor);
+   }
+
+   /**
+    * @return The timer of the handshake deadlines, idle connections and stalled downloads
+    */
+   public HashedWheelTimer getTimer() {
+      return timer;
+   }
+
+   public BufferPool getBufferPool() {
+      return bufferPool;
+   }
+
+   public Metrics getMetrics() {
+      return metrics;
+   }
+
+   public void setMetrics(Metrics metrics) {
+      this.metrics = Objects.requireNonNull(metrics);
+      this.downloadMetrics = new DownloadMetrics(metrics);
+   }
+
+   DownloadMetrics getDownloadMetrics() {
+      return downloadMetrics;
+   }
+
+   public ChunkSizing getChunkSizing() {
+      return chunkSizing;
+   }
+
+   public void setChunkSizing(ChunkSizing chunkSizing) {
+      this.chunkSizing = Objects.requireNonNull(chunkSizing);
+   }
+
+   public Bandwidth getBandwidth() {
+      return bandwidth;
+   }
+
+   public void setBandwidth(Bandwidth bandwidth) {
+      this.bandwidth = Objects.requireNonNull(bandwidth);
+   }
+
+   public DownloadScheduler getScheduler() {
+      return scheduler;
+   }
+
+   public void setScheduler(DownloadScheduler scheduler) {
+      this.scheduler = Objects.requireNonNull(scheduler);
+   }
+
+   /**
+    * @return The client, that opens the requests to the origins
+    */
+   public UpstreamClient getUpstream() {
+      return upstream;
+   }
+
+   public void setUpstream(UpstreamClient upstream) {
+      this.upstream = Objects.requireNonNull(upstream);
+   }
+
+   /**
+    * @return The content cache or <code>null</code> if caching is disabled
+    */
+   public ContentCache getCache() {
+      return cache;
+   }
+
+   public void setCache(ContentCache cache) {
+      this.cache = cache;
+   }
+
+   /**
+    * @return Coalesces concurrent downloads of the same url, that are not cached,
+    * or <code>null</code> if coalescing is disabled
+    */
+   public SingleFlight getFlights() {
+      return flights;
+   }
+
+   public void setFlights(SingleFlight flights) {
+      this.flights = flights;
+   }
+
+   /**
+    * @return The directory of temporary spool files
+    */
+   public Path getSpoolDirectory() {
+      return spoolDirectory;
+   }
+
+   public void setSpoolDirectory(Path spoolDirectory) {
+      this.spoolDirectory = Objects.requireNonNull(spoolDirectory);
+   }
+
+   /**
+    * @return The maximum number of segments a download is fetched in, 1 disables segmented fetching
+    */
+   public int getSegments() {
+      return segments;
+   }
+
+   public void setSegments(int segments) {
+      if (segments < 1)
+         throw new IllegalArgumentException("At least one segment required, but was " + segments);
+
+      this.segments = segments;
+   }
+
+   public long getMinSegmentSize() {
+      return minSegmentSize;
+   }
+
+   public void setMinSegmentSize(long minSegmentSize) {
+      if (minSegmentSize < 1)
+         throw new IllegalArgumentException("Invalid minimum segment size: " + minSegmentSize);
+
+      this.minSegmentSize = minSegmentSize;
+   }
+
+   public int getSegmentRetries() {
+      return segmentRetries;
+   }
+
+   public void setSegmentRetries(int segmentRetries) {
+      this.segmentRetries = segmentRetries;
+   }
+
+   /**
+    * @return The deflate level of the downloads, that ask for compression or {@link #COMPRESSION_DISABLED}
+    */
+   public int getCompressionLevel() {
+      return compressionLevel;
+   }
+
+   public void setCompressionLevel(int compressionLevel) {
+      if (compressionLevel != COMPRESSION_DISABLED && (compressionLevel < 1 || compressionLevel > 9))
+         throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+
+      this.compressionLevel = compressionLevel;
+   }
+
+   /**
+    * @return The size in bytes up to which small data packets of a download are coalesced, 0 disables coalescing
+    */
+   public int getWriteBatchSize() {
+      return writeBatchSize;
+   }
+
+   public void setWriteBatchSize(int writeBatchSize) {
+      if (writeBatchSize < 0)
+         throw new IllegalArgumentException("Invalid write batch size: " + writeBatchSize);
+
+      this.writeBatchSize = writeBatchSize;
+   }
+
+   /**
+    * @return The time in microseconds, a small data packet waits at most to be coalesced with the following ones
+    */
+   public long getFlushDelay() {
+      return flushDelay;
+   }
+
+   public void setFlushDelay(long flushDelay) {
+      if (flushDelay < 0)
+         throw new IllegalArgumentException("Invalid flush delay: " + flushDelay);
+
+      this.flushDelay = flushDelay;
+   }
+
+   /**
+    * @return The time in milliseconds, a running download may make no progress before it is cancelled,
+    * 0 if stalled downloads are not cancelled.
+    * Waiting for credit of the client does not count.
+    */
+   public long getStallTimeout() {
+      return stallTimeout;
+   }
+
+   public void setStallTimeout(long stallTimeout) {
+      if (stallTimeout < 0)
+         throw new IllegalArgumentException("Invalid stall timeout: " + stallTimeout);
+
+      this.stallTimeout = stallTimeout;
+   }
+}
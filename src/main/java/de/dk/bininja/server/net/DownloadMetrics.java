@@ -0,0 +1,44 @@
+package de.dk.bininja.server.net;
+
+import de.dk.bininja.server.metrics.Counter;
+import de.dk.bininja.server.metrics.Histogram;
+import de.dk.bininja.server.metrics.Metrics;
+import de.dk.bininja.server.metrics.SizeHistogram;
+
+/**
+ * The metrics recorded by the downloads, looked up once so recording them needs no lookup.
+ */
+class DownloadMetrics {
+   public static final String CAUSE_UPSTREAM = "upstream";
+   public static final String CAUSE_CLIENT = "client";
+   public static final String CAUSE_INTERRUPTED = "interrupted";
+   public static final String CAUSE_REJECTED = "rejected";
+   public static final String CAUSE_STALLED = "stalled";
+
+   final Histogram chunkSend;
+   final Counter bytesSent;
+   final Counter chunksSent;
+   final Counter completed;
+   final Counter compressionInput;
+   final Counter compressionOutput;
+   final SizeHistogram writeBatchBytes;
+   final SizeHistogram writeBatchPackets;
+   private final Metrics metrics;
+
+   public DownloadMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      this.chunkSend = metrics.histogram("bininja_chunk_send_seconds", "The time to send a chunk to the client");
+      this.bytesSent = metrics.counter("bininja_download_bytes_total", "The bytes sent to download clients");
+      this.chunksSent = metrics.counter("bininja_download_chunks_total", "The chunks sent to download clients");
+      this.completed = metrics.counter("bininja_downloads_completed_total", "The downloads, that completed");
+      this.compressionInput = metrics.counter("bininja_compression_input_bytes_total", "The bytes of the chunks, that were compressed");
+      this.compressionOutput = metrics.counter("bininja_compression_output_bytes_total", "The bytes of the compressed chunks");
+      this.writeBatchBytes = metrics.sizeHistogram("bininja_write_batch_bytes", "The bytes of the data packets sent to clients");
+      this.writeBatchPackets = metrics.sizeHistogram("bininja_write_batch_packets", "The chunks coalesced into one data packet");
+   }
+
+   public void failed(String cause) {
+      metrics.counter("bininja_download_failures_total", "The downloads, that failed, by cause", "cause", cause)
+             .increment();
+   }
+}
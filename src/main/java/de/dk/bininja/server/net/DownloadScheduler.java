@@ -0,0 +1,265 @@
+package de.dk.bininja.server.net;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.net.packet.QueueEntry;
+
+/**
+ * Admits downloads up to a maximum number of concurrent downloads.
+ * Downloads, that exceed the maximum, wait in a queue ordered by their priority.
+ * Downloads with the same priority are admitted in the order they arrived.
+ */
+public class DownloadScheduler {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadScheduler.class);
+
+   public static final int UNLIMITED = 0;
+
+   private static final double SMOOTHING = 0.1;
+
+   private final List<Ticket> queue = new ArrayList<>();
+   private int maxConcurrent;
+   private int running;
+   private long nextId;
+   private double averageMillis = -1;
+
+   private final LongAdder admitted = new LongAdder();
+   private final LongAdder queued = new LongAdder();
+
+   /**
+    * @param maxConcurrent The maximum number of concurrent downloads or {@link #UNLIMITED}
+    */
+   public DownloadScheduler(int maxConcurrent) {
+      setMaxConcurrent(maxConcurrent);
+   }
+
+   public DownloadScheduler() {
+      this(UNLIMITED);
+   }
+
+   /**
+    * Submits a download. If there is a free slot the returned ticket is admitted immediately.
+    * Otherwise the download waits in the queue and the listener is called once it is admitted.
+    * The ticket has to be released when the download ended.
+    */
+   public Ticket submit(String address, String url, int priority, Listener listener) {
+      Ticket ticket;
+      synchronized (this) {
+         ticket = new Ticket(nextId++, address, url, priority, listener);
+         if (queue.isEmpty() && hasFreeSlot()) {
+            admit(ticket);
+            ticket.immediate = true;
+            return ticket;
+         }
+
+         int index = 0;
+         while (index < queue.size() && queue.get(index).priority >= priority)
+            index++;
+
+         queue.add(index, ticket);
+         queued.increment();
+         LOGGER.debug("Download of " + url + " for " + address + " queued at position " + (index + 1));
+      }
+      notifyQueued();
+      return ticket;
+   }
+
+   private boolean hasFreeSlot() {
+      return maxConcurrent == UNLIMITED || running < maxConcurrent;
+   }
+
+   private void admit(Ticket ticket) {
+      ticket.admittedAt = System.currentTimeMillis();
+      running++;
+      admitted.increment();
+   }
+
+   private void dispatch() {
+      List<Ticket> admitted = new ArrayList<>();
+      synchronized (this) {
+         while (!queue.isEmpty() && hasFreeSlot()) {
+            Ticket ticket = queue.remove(0);
+            admit(ticket);
+            admitted.add(ticket);
+         }
+      }
+      for (Ticket ticket : admitted) {
+         LOGGER.debug("Admitting queued download of " + ticket.url + " for " + ticket.address);
+         ticket.listener.admitted();
+      }
+      if (!admitted.isEmpty())
+         notifyQueued();
+   }
+
+   private void release(Ticket ticket) {
+      synchronized (this) {
+         if (ticket.admittedAt == -1) {
+            queue.remove(ticket);
+         } else {
+            running--;
+            long duration = System.currentTimeMillis() - ticket.admittedAt;
+            averageMillis = averageMillis < 0 ? duration : averageMillis + SMOOTHING * (duration - averageMillis);
+         }
+      }
+      dispatch();
+   }
+
+   /**
+    * Tells every queued download its position and estimated waiting time.
+    */
+   private void notifyQueued() {
+      List<Ticket> tickets;
+      int slots;
+      double average;
+      synchronized (this) {
+         tickets = new ArrayList<>(queue);
+         slots = Math.max(1, maxConcurrent);
+         average = averageMillis;
+      }
+      for (int i = 0; i < tickets.size(); i++) {
+         long eta = average < 0 ? -1 : (long) ((i / slots + 1) * average);
+         tickets.get(i).listener.queued(i + 1, eta);
+      }
+   }
+
+   /**
+    * Moves the queued download with the id to the position, counted from 1.
+    *
+    * @return <code>true</code> if the download was queued
+    */
+   public boolean move(long id, int position) {
+      synchronized (this) {
+         Ticket ticket = find(id);
+         if (ticket == null)
+            return false;
+
+         queue.remove(ticket);
+         queue.add(Math.max(0, Math.min(queue.size(), position - 1)), ticket);
+      }
+      notifyQueued();
+      return true;
+   }
+
+   private Ticket find(long id) {
+      for (Ticket ticket : queue) {
+         if (ticket.id == id)
+            return ticket;
+      }
+      return null;
+   }
+
+   public synchronized Collection<QueueEntry> getQueue() {
+      long now = System.currentTimeMillis();
+      Collection<QueueEntry> entries = new ArrayList<>(queue.size());
+      for (int i = 0; i < queue.size(); i++) {
+         Ticket ticket = queue.get(i);
+         entries.add(new QueueEntry(ticket.id,
+                                    i + 1,
+                                    ticket.address,
+                                    ticket.url,
+                                    ticket.priority,
+                                    now - ticket.queuedAt));
+      }
+      return entries;
+   }
+
+   public void setMaxConcurrent(int maxConcurrent) {
+      if (maxConcurrent < 0)
+         throw new IllegalArgumentException("Invalid maximum number of concurrent downloads: " + maxConcurrent);
+
+      synchronized (this) {
+         this.maxConcurrent = maxConcurrent;
+      }
+      dispatch();
+   }
+
+   public synchronized int getMaxConcurrent() {
+      return maxConcurrent;
+   }
+
+   public synchronized int getRunning() {
+      return running;
+   }
+
+   public synchronized int getQueued() {
+      return queue.size();
+   }
+
+   public synchronized Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("maxConcurrent", (long) maxConcurrent);
+      statistics.put("running", (long) running);
+      statistics.put("queued", (long) queue.size());
+      statistics.put("admittedTotal", admitted.sum());
+      statistics.put("queuedTotal", queued.sum());
+      statistics.put("averageMillis", (long) averageMillis);
+      return statistics;
+   }
+
+   public static interface Listener {
+      /**
+       * Called when a queued download is admitted.
+       */
+      public void admitted();
+
+      /**
+       * Called when the position of a queued download may have changed.
+       *
+       * @param position The position in the queue, counted from 1
+       * @param etaMillis The estimated time until the download is admitted or -1 if unknown
+       */
+      public void queued(int position, long etaMillis);
+   }
+
+   public class Ticket {
+      private final long id;
+      private final String address;
+      private final String url;
+      private final int priority;
+      private final Listener listener;
+      private final long queuedAt = System.currentTimeMillis();
+      private long admittedAt = -1;
+      private boolean immediate;
+      private boolean released;
+
+      private Ticket(long id, String address, String url, int priority, Listener listener) {
+         this.id = id;
+         this.address = address;
+         this.url = url;
+         this.priority = priority;
+         this.listener = listener;
+      }
+
+      /**
+       * @return <code>true</code> if the download was admitted on submission.
+       * Otherwise the listener is called, once it is admitted.
+       */
+      public boolean isAdmittedImmediately() {
+         return immediate;
+      }
+
+      /**
+       * Frees the slot of the download or removes it from the queue. Only the first call has an effect.
+       */
+      public void release() {
+         synchronized (DownloadScheduler.this) {
+            if (released)
+               return;
+
+            released = true;
+         }
+         DownloadScheduler.this.release(this);
+      }
+
+      public long getId() {
+         return id;
+      }
+   }
+}
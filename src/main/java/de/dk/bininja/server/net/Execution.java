@@ -0,0 +1,81 @@
+package de.dk.bininja.server.net;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single run of a task on an {@link Executor}, that can be interrupted and joined like a thread.
+ */
+class Execution {
+   private final Runnable task;
+   private final CountDownLatch done = new CountDownLatch(1);
+   private final Object lock = new Object();
+
+   private volatile boolean submitted;
+   private boolean interrupted;
+   private volatile Thread worker;
+
+   public Execution(Runnable task) {
+      this.task = task;
+   }
+
+   public void start(Executor executor) throws IllegalStateException, RejectedExecutionException {
+      if (submitted)
+         throw new IllegalStateException("Execution already started.");
+
+      submitted = true;
+      try {
+         executor.execute(this::run);
+      } catch (RejectedExecutionException e) {
+         submitted = false;
+         throw e;
+      }
+   }
+
+   private void run() {
+      synchronized (lock) {
+         this.worker = Thread.currentThread();
+         if (interrupted)
+            worker.interrupt();
+      }
+      try {
+         task.run();
+      } finally {
+         // The worker may be reused by the executor, so the interrupt must not leak into the next task.
+         // Under the lock no interrupt can hit the worker after it was cleared.
+         synchronized (lock) {
+            this.worker = null;
+            Thread.interrupted();
+         }
+         done.countDown();
+      }
+   }
+
+   public void interrupt() {
+      synchronized (lock) {
+         interrupted = true;
+         if (worker != null)
+            worker.interrupt();
+      }
+   }
+
+   public boolean isCurrentThread() {
+      return worker == Thread.currentThread();
+   }
+
+   public boolean isAlive() {
+      return submitted && done.getCount() > 0;
+   }
+
+   public void join(long timeout) throws InterruptedException {
+      if (!submitted || isCurrentThread())
+         return;
+
+      if (timeout == 0)
+         done.await();
+      else
+         done.await(timeout, TimeUnit.MILLISECONDS);
+   }
+}
@@ -0,0 +1,63 @@
+package de.dk.bininja.server.net;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ways the server can execute handshakes and downloads.
+ */
+public enum ExecutionMode {
+   /** A platform thread per running task, the threads are reused for later tasks. */
+   THREAD,
+   /** A bounded pool of platform threads, tasks exceeding the pool size are queued. */
+   POOL,
+   /** A virtual thread per task. Requires a runtime with virtual threads (Java 21+). */
+   VIRTUAL;
+
+   public static final int DEFAULT_POOL_SIZE = 256;
+
+   public static ExecutionMode parse(String name) throws IllegalArgumentException {
+      return valueOf(name.trim().toUpperCase());
+   }
+
+   public ExecutorService createExecutor(String name, int poolSize) throws IllegalStateException {
+      switch (this) {
+      case THREAD:
+         return Executors.newCachedThreadPool(new NamedThreadFactory(name));
+      case POOL:
+         return Executors.newFixedThreadPool(poolSize, new NamedThreadFactory(name));
+      case VIRTUAL:
+         return newVirtualThreadPerTaskExecutor();
+      default:
+         throw new IllegalStateException("Unknown execution mode " + this);
+      }
+   }
+
+   private static ExecutorService newVirtualThreadPerTaskExecutor() throws IllegalStateException {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                 .invoke(null);
+      } catch (NoSuchMethodException e) {
+         throw new IllegalStateException("Virtual threads are not supported by this java runtime.", e);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+         throw new IllegalStateException("Could not create an executor of virtual threads.", e);
+      }
+   }
+
+   private static class NamedThreadFactory implements ThreadFactory {
+      private final String name;
+      private final AtomicInteger count = new AtomicInteger();
+
+      public NamedThreadFactory(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public Thread newThread(Runnable task) {
+         return new Thread(task, name + "-" + count.incrementAndGet());
+      }
+   }
+}
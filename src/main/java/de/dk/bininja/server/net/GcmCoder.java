@@ -0,0 +1,145 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import de.dk.util.net.Coder;
+
+/**
+ * Encrypts and authenticates the messages of a connection with AES-GCM.
+ * Each direction of the connection has its own cipher, that is initialised once and reused for every message.
+ * The nonce of a message consists of the direction and a counter.
+ * The counter is sent in front of each message, so the messages do not have to be written
+ * in the order they were encoded, which the connection does not guarantee with several sending threads.
+ * The decoding side keeps a window of the last {@link #REPLAY_WINDOW} counters,
+ * a replayed message or a message older than the window fails to decode.
+ * A message grows by the 8 bytes of the counter and the 16 bytes of the authentication tag.
+ * The JDK uses the AES instructions of the CPU for GCM, if the CPU has them.
+ */
+public class GcmCoder implements Coder {
+   public static final String NAME = "AES/GCM";
+   public static final int REPLAY_WINDOW = 64;
+
+   private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+   private static final int TAG_BITS = 128;
+   private static final int NONCE_LENGTH = 12;
+   private static final int COUNTER_LENGTH = 8;
+   private static final int SERVER = 0x53525652;
+   private static final int CLIENT = 0x434C4E54;
+
+   private final SecretKey key;
+   private final Direction encryption;
+   private final Direction decryption;
+
+   /**
+    * @param key The AES session key of the connection
+    * @param server If this is the server side of the connection
+    */
+   public GcmCoder(SecretKey key, boolean server) throws GeneralSecurityException {
+      if (!"AES".equalsIgnoreCase(key.getAlgorithm()))
+         throw new GeneralSecurityException("AES-GCM requires an AES key, not " + key.getAlgorithm());
+
+      this.key = key;
+      this.encryption = new Direction(Cipher.ENCRYPT_MODE, server ? SERVER : CLIENT);
+      this.decryption = new Direction(Cipher.DECRYPT_MODE, server ? CLIENT : SERVER);
+   }
+
+   @Override
+   public byte[] encode(byte[] data) throws IOException {
+      return encryption.encrypt(data);
+   }
+
+   @Override
+   public byte[] decode(byte[] data) throws IOException {
+      return decryption.decrypt(data);
+   }
+
+   private class Direction {
+      private final int mode;
+      private final Cipher cipher;
+      private final ByteBuffer nonce = ByteBuffer.allocate(NONCE_LENGTH);
+      /** The last counter encrypted or the highest counter decrypted */
+      private long counter = -1;
+      /** The counters decrypted below the highest one, bit n stands for the highest counter minus n */
+      private long window;
+
+      Direction(int mode, int direction) throws GeneralSecurityException {
+         this.mode = mode;
+         this.cipher = Cipher.getInstance(TRANSFORMATION);
+         nonce.putInt(0, direction);
+      }
+
+      synchronized byte[] encrypt(byte[] data) throws IOException {
+         long counter = ++this.counter;
+         try {
+            init(counter);
+            byte[] output = new byte[COUNTER_LENGTH + cipher.getOutputSize(data.length)];
+            ByteBuffer.wrap(output)
+                      .putLong(counter);
+            int length = cipher.doFinal(data, 0, data.length, output, COUNTER_LENGTH);
+            if (COUNTER_LENGTH + length != output.length)
+               throw new IOException("Unexpected length of the encrypted message: " + length
+                                     + " instead of " + (output.length - COUNTER_LENGTH));
+
+            return output;
+         } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt message " + counter, e);
+         }
+      }
+
+      synchronized byte[] decrypt(byte[] data) throws IOException {
+         if (data.length < COUNTER_LENGTH + TAG_BITS / 8)
+            throw new IOException("The message is too short: " + data.length + " bytes");
+
+         long counter = ByteBuffer.wrap(data)
+                                  .getLong();
+         if (isReplayed(counter))
+            throw new IOException("Message " + counter + " was replayed or is too old");
+
+         try {
+            init(counter);
+            byte[] output = new byte[cipher.getOutputSize(data.length - COUNTER_LENGTH)];
+            int length = cipher.doFinal(data, COUNTER_LENGTH, data.length - COUNTER_LENGTH, output, 0);
+            if (length != output.length)
+               throw new IOException("Unexpected length of the decrypted message: " + length + " instead of " + output.length);
+
+            // Only an authentic message moves the window
+            accept(counter);
+            return output;
+         } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt message " + counter, e);
+         }
+      }
+
+      private void init(long counter) throws GeneralSecurityException {
+         nonce.putLong(4, counter);
+         // GCM has to be initialised with a new nonce for every message anyways, the instance is reused
+         cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, nonce.array()));
+      }
+
+      private boolean isReplayed(long counter) {
+         if (counter < 0)
+            return true;
+         if (counter > this.counter)
+            return false;
+
+         long distance = this.counter - counter;
+         return distance >= REPLAY_WINDOW || (window & (1L << distance)) != 0;
+      }
+
+      private void accept(long counter) {
+         if (counter > this.counter) {
+            long shift = counter - this.counter;
+            window = shift >= REPLAY_WINDOW ? 1 : window << shift | 1;
+            this.counter = counter;
+         } else {
+            window |= 1L << (this.counter - counter);
+         }
+      }
+   }
+}
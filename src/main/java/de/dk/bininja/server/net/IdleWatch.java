@@ -0,0 +1,75 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.controller.ClientHandler;
+import de.dk.bininja.server.metrics.Counter;
+import de.dk.bininja.server.timer.HashedWheelTimer;
+import de.dk.util.net.Connection;
+
+/**
+ * Closes the connection of a client, that neither sent nor received anything for the idle timeout
+ * and is not busy. The connection is checked once per idle timeout,
+ * so an idle connection is closed after one to two idle timeouts.
+ */
+class IdleWatch {
+   private static final Logger LOGGER = LoggerFactory.getLogger(IdleWatch.class);
+
+   private final HashedWheelTimer timer;
+   private final ClientHandler client;
+   private final long timeoutMillis;
+   private final BooleanSupplier busy;
+   private final Counter evictions;
+   private long traffic = -1;
+
+   /**
+    * @param busy Tells if the client is busy, although there is no traffic, like a download waiting in the queue
+    */
+   public IdleWatch(HashedWheelTimer timer,
+                    ClientHandler client,
+                    long timeoutMillis,
+                    BooleanSupplier busy,
+                    Counter evictions) {
+      this.timer = timer;
+      this.client = client;
+      this.timeoutMillis = timeoutMillis;
+      this.busy = busy;
+      this.evictions = evictions;
+   }
+
+   public void start() {
+      try {
+         timer.schedule(this::check, timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (IllegalStateException e) {
+         LOGGER.debug("The timer is stopped, the connection is not watched anymore.");
+      }
+   }
+
+   private void check() {
+      Connection connection = client.getConnection();
+      if (connection.isClosed())
+         return;
+
+      long traffic = connection.getBytesSent() + connection.getBytesReceived();
+      if (traffic != this.traffic || busy.getAsBoolean()) {
+         this.traffic = traffic;
+         start();
+         return;
+      }
+
+      LOGGER.info("Closing the connection to " + connection.getAddress()
+                  + ", that was idle for " + timeoutMillis + " ms.");
+      evictions.increment();
+      try {
+         // Closing the socket does not block, the connection notices it and closes itself
+         connection.getSocket().close();
+      } catch (IOException e) {
+         LOGGER.warn("Could not close the idle connection to " + connection.getAddress(), e);
+      }
+   }
+}
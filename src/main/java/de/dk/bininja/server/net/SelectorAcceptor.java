@@ -0,0 +1,315 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.timer.HashedWheelTimer;
+
+/**
+ * Accepts connections with a non-blocking <code>ServerSocketChannel</code>.
+ * Accepted channels are spread round robin over a small pool of event loops,
+ * which wait for the first bytes of the handshake without occupying a thread per socket.
+ * As soon as a client starts its handshake the channel is switched back to blocking mode
+ * and handed to the handshake executor of the {@link Server}.
+ * The handshake timeout counts from the accept, so a client, that never sends anything, is closed as well.
+ * <p>
+ * The blocking streams of a channel backed socket are only full duplex since Java 13.
+ * On older runtimes the receiver and the writers of a connection would block each other,
+ * so this acceptor must not be used there, see {@link #isSupported()}.
+ */
+public class SelectorAcceptor implements Acceptor, Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(SelectorAcceptor.class);
+
+   private static final long SELECT_TIMEOUT = 1024;
+   public static final int MIN_JAVA_VERSION = 13;
+
+   private final ServerSocketChannel serverChannel;
+   private final Selector selector;
+   private final EventLoop[] eventLoops;
+   private final Server server;
+   private final String name;
+   private final AtomicLong accepted = new AtomicLong();
+
+   private volatile boolean running;
+   private Thread thread;
+   private int nextLoop;
+
+   public SelectorAcceptor(int port, int eventLoopCount, Server server) throws IOException {
+      this(bind(port), 0, eventLoopCount, server);
+   }
+
+   /**
+    * @param serverChannel The bound server channel
+    * @param listener The index of the listener, if there are several listeners on the same port
+    */
+   public SelectorAcceptor(ServerSocketChannel serverChannel,
+                           int listener,
+                           int eventLoopCount,
+                           Server server) throws IOException {
+      if (eventLoopCount < 1)
+         throw new IllegalArgumentException("At least one event loop required, but was " + eventLoopCount);
+
+      this.server = Objects.requireNonNull(server);
+      this.serverChannel = Objects.requireNonNull(serverChannel);
+      this.name = "bininja-acceptor-" + listener;
+      serverChannel.configureBlocking(false);
+      this.selector = Selector.open();
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+      this.eventLoops = new EventLoop[eventLoopCount];
+      for (int i = 0; i < eventLoopCount; i++)
+         eventLoops[i] = new EventLoop(listener, i);
+
+      server.addListener(name, accepted::get);
+   }
+
+   /**
+    * @return If the runtime is at least {@link #MIN_JAVA_VERSION}
+    */
+   public static boolean isSupported() {
+      return javaVersion(System.getProperty("java.specification.version")) >= MIN_JAVA_VERSION;
+   }
+
+   /**
+    * @param specification The specification version of a runtime, e.g. <code>1.8</code> or <code>17</code>
+    *
+    * @return The major version or 0 if unknown
+    */
+   static int javaVersion(String specification) {
+      if (specification == null)
+         return 0;
+
+      String major = specification.startsWith("1.") ? specification.substring(2) : specification;
+      int dot = major.indexOf('.');
+      try {
+         return Integer.parseInt(dot == -1 ? major : major.substring(0, dot));
+      } catch (NumberFormatException e) {
+         return 0;
+      }
+   }
+
+   private static ServerSocketChannel bind(int port) throws IOException {
+      ServerSocketChannel serverChannel = ServerSocketChannel.open();
+      try {
+         serverChannel.bind(new InetSocketAddress(port));
+      } catch (IOException e) {
+         serverChannel.close();
+         throw e;
+      }
+      return serverChannel;
+   }
+
+   @Override
+   public synchronized void start() {
+      running = true;
+      for (EventLoop loop : eventLoops)
+         loop.start();
+
+      this.thread = new Thread(this, name);
+      thread.start();
+   }
+
+   @Override
+   public void run() {
+      LOGGER.info("Waiting for clients to connect...");
+      while (running) {
+         try {
+            selector.select(SELECT_TIMEOUT);
+         } catch (IOException e) {
+            LOGGER.error("Error selecting the server channel", e);
+            continue;
+         }
+
+         Iterator<SelectionKey> keys = selector.selectedKeys()
+                                               .iterator();
+         while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid() && key.isAcceptable())
+               acceptAll();
+         }
+      }
+      LOGGER.debug("Server channel stopped.");
+   }
+
+   private void acceptAll() {
+      SocketChannel channel;
+      try {
+         while ((channel = serverChannel.accept()) != null) {
+            LOGGER.debug("Accepted connection from " + channel.getRemoteAddress());
+            accepted.incrementAndGet();
+            channel.configureBlocking(false);
+            eventLoops[nextLoop].register(new Pending(channel, System.nanoTime(), server.watchHandshake(channel)));
+            nextLoop = (nextLoop + 1) % eventLoops.length;
+         }
+      } catch (IOException e) {
+         if (serverChannel.isOpen())
+            LOGGER.error(e.getMessage(), e);
+      }
+   }
+
+   @Override
+   public synchronized void stop(long timeout) throws InterruptedException {
+      running = false;
+      selector.wakeup();
+      for (EventLoop loop : eventLoops)
+         loop.wakeup();
+
+      if (thread != null && thread != Thread.currentThread())
+         thread.join(timeout);
+
+      for (EventLoop loop : eventLoops)
+         loop.join(timeout);
+   }
+
+   @Override
+   public void close() throws IOException {
+      running = false;
+      for (EventLoop loop : eventLoops)
+         loop.close();
+
+      selector.close();
+      serverChannel.close();
+   }
+
+   private void handOver(Pending pending) {
+      // If the deadline expired, the channel is closed already
+      if (pending.deadline != null && !pending.deadline.cancel())
+         return;
+
+      SocketChannel channel = pending.channel;
+      try {
+         channel.configureBlocking(true);
+         server.handOver(channel.socket(), pending.accepted);
+      } catch (IOException | RejectedExecutionException e) {
+         LOGGER.error("Could not hand over the connection of " + channel.socket().getInetAddress(), e);
+         closeQuietly(channel);
+      }
+   }
+
+   private static void closeQuietly(SocketChannel channel) {
+      try {
+         channel.close();
+      } catch (IOException e) {
+         LOGGER.warn("Error closing channel", e);
+      }
+   }
+
+   private class EventLoop implements Runnable {
+      private final Selector selector;
+      private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+      private final String name;
+      private Thread thread;
+
+      public EventLoop(int listener, int index) throws IOException {
+         this.selector = Selector.open();
+         this.name = "bininja-event-loop-" + listener + "-" + index;
+      }
+
+      public void start() {
+         this.thread = new Thread(this, name);
+         thread.start();
+      }
+
+      public void register(Pending channel) {
+         pending.add(channel);
+         selector.wakeup();
+      }
+
+      @Override
+      public void run() {
+         while (running) {
+            try {
+               selector.select(SELECT_TIMEOUT);
+               registerPending();
+               List<Pending> ready = new LinkedList<>();
+               Iterator<SelectionKey> keys = selector.selectedKeys()
+                                                     .iterator();
+               while (keys.hasNext()) {
+                  SelectionKey key = keys.next();
+                  keys.remove();
+                  if (key.isValid() && key.isReadable()) {
+                     key.cancel();
+                     ready.add((Pending) key.attachment());
+                  }
+               }
+
+               if (!ready.isEmpty()) {
+                  // Flushes the cancelled keys, so the channels can be switched back to blocking mode
+                  selector.selectNow();
+                  for (Pending channel : ready)
+                     handOver(channel);
+               }
+            } catch (IOException e) {
+               if (selector.isOpen())
+                  LOGGER.error("Error in " + name, e);
+            }
+         }
+         LOGGER.debug(name + " stopped.");
+      }
+
+      private void registerPending() {
+         Pending channel;
+         while ((channel = pending.poll()) != null) {
+            try {
+               channel.channel.register(selector, SelectionKey.OP_READ, channel);
+            } catch (IOException e) {
+               LOGGER.warn("Could not register channel at " + name, e);
+               closeQuietly(channel.channel);
+            }
+         }
+      }
+
+      public void wakeup() {
+         selector.wakeup();
+      }
+
+      public void join(long timeout) throws InterruptedException {
+         if (thread != null && thread != Thread.currentThread())
+            thread.join(timeout);
+      }
+
+      public void close() throws IOException {
+         Pending channel;
+         while ((channel = pending.poll()) != null)
+            closeQuietly(channel.channel);
+
+         if (selector.isOpen()) {
+            for (SelectionKey key : selector.keys())
+               closeQuietly((SocketChannel) key.channel());
+
+            selector.close();
+         }
+      }
+   }
+
+   /**
+    * An accepted channel, whose client did not begin its handshake yet.
+    */
+   private static class Pending {
+      private final SocketChannel channel;
+      private final long accepted;
+      private final HashedWheelTimer.Timeout deadline;
+
+      Pending(SocketChannel channel, long accepted, HashedWheelTimer.Timeout deadline) {
+         this.channel = channel;
+         this.accepted = accepted;
+         this.deadline = deadline;
+      }
+   }
+}
@@ -1,12 +1,21 @@
 package de.dk.bininja.server.net;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.Socket;
 import java.security.KeyPair;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -19,10 +28,19 @@ import de.dk.bininja.net.Base64Connection;
 import de.dk.bininja.net.ConnectionMetadata;
 import de.dk.bininja.net.ConnectionType;
 import de.dk.bininja.net.packet.ConnectionAnswerPacket;
+import de.dk.bininja.server.buffer.BufferPool;
+import de.dk.bininja.server.cache.ContentCache;
 import de.dk.bininja.server.controller.AdminClientController;
 import de.dk.bininja.server.controller.ClientHandler;
 import de.dk.bininja.server.controller.ClientManager;
 import de.dk.bininja.server.controller.DownloadClientManager;
+import de.dk.bininja.server.metrics.Counter;
+import de.dk.bininja.server.metrics.Histogram;
+import de.dk.bininja.server.metrics.Metrics;
+import de.dk.bininja.server.net.packet.DownloadDetails;
+import de.dk.bininja.server.net.packet.StatisticsPacket.StatisticsType;
+import de.dk.bininja.server.timer.HashedWheelTimer;
+import de.dk.bininja.server.upstream.SingleFlight;
 import de.dk.util.net.security.SessionKeyArrangement;
 
 /**
@@ -32,23 +50,169 @@ import de.dk.util.net.security.SessionKeyArrangement;
 public class Server implements ConnectionRequestHandler, AdminClientController {
    private static final Logger LOGGER = LoggerFactory.getLogger(Server.class);
 
+   public static final long DEFAULT_HANDSHAKE_TIMEOUT_MILLIS = 30 * 1000;
+   public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 15 * 60 * 1000;
+
    private final ServerController controller;
    private final KeyPair keys;
+   private volatile SessionCache sessions;
 
    private final DownloadClientManager downloadClients = new DownloadClientManager();
    private final ClientManager<AdminClientHandler> adminClients = new ClientManager<>();
-   private final Set<ConnectionRequest> requests = new HashSet<>();
+   private final Set<ConnectionRequest> requests = ConcurrentHashMap.newKeySet();
+   private final Map<String, LongSupplier> listeners = new ConcurrentHashMap<>();
 
-   public Server(ServerController controller, KeyPair keys) {
+   private final ExecutorService handshakeExecutor;
+   private final DownloadContext downloadContext;
+   private final Histogram handshakes;
+   private final Counter failedHandshakes;
+   private final Counter handshakeTimeouts;
+   private final Counter idleEvictions;
+   private volatile long handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
+   private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+   public Server(ServerController controller,
+                 KeyPair keys,
+                 ExecutorService handshakeExecutor,
+                 DownloadContext downloadContext) {
       this.controller = Objects.requireNonNull(controller);
       this.keys = keys;
+      this.handshakeExecutor = Objects.requireNonNull(handshakeExecutor);
+      this.downloadContext = Objects.requireNonNull(downloadContext);
+      Metrics metrics = downloadContext.getMetrics();
+      this.handshakes = metrics.histogram("bininja_handshake_seconds", "The time to establish a client connection");
+      this.failedHandshakes = metrics.counter("bininja_handshake_failures_total", "The connections, that could not be established");
+      this.handshakeTimeouts = metrics.counter("bininja_timeouts_total", "The connections closed by a timeout", "kind", "handshake");
+      this.idleEvictions = metrics.counter("bininja_timeouts_total", "The connections closed by a timeout", "kind", "idle");
+      registerGauges(metrics);
+   }
+
+   public Server(ServerController controller, KeyPair keys) {
+      this(controller,
+           keys,
+           ExecutionMode.THREAD.createExecutor("bininja-handshake", 0),
+           new DownloadContext(ExecutionMode.THREAD.createExecutor("bininja-download", 0),
+                               ExecutionMode.THREAD.createExecutor("bininja-fetch", 0),
+                               new BufferPool()));
    }
 
-   public synchronized void newConnection(Socket socket) throws IOException {
+   private void registerGauges(Metrics metrics) {
+      metrics.gauge("bininja_connections", "The established connections", adminClients::count, "type", "admin");
+      metrics.gauge("bininja_connections", "The established connections", downloadClients::count, "type", "download");
+      metrics.gauge("bininja_downloads_running", "The running downloads",
+                    () -> downloadContext.getScheduler().getRunning());
+      metrics.gauge("bininja_downloads_queued", "The downloads waiting in the queue",
+                    () -> downloadContext.getScheduler().getQueued());
+
+      metrics.gauge("bininja_write_batch_size_bytes", "The size up to which small data packets are coalesced",
+                    downloadContext::getWriteBatchSize);
+      metrics.gauge("bininja_write_flush_delay_micros", "The time a small data packet waits at most to be coalesced",
+                    downloadContext::getFlushDelay);
+
+      HashedWheelTimer timer = downloadContext.getTimer();
+      metrics.gauge("bininja_timer_pending", "The timeouts, that neither expired nor were cancelled", timer::getPending);
+      metrics.gauge("bininja_timer_expired", "The timeouts, that expired", timer::getExpired);
+
+      BufferPool pool = downloadContext.getBufferPool();
+      metrics.gauge("bininja_buffer_pool_leased", "The buffers currently leased from the pool", pool::getLeased);
+      metrics.gauge("bininja_buffer_pool_pooled_bytes", "The bytes held by the pool", pool::getPooledBytes);
+      metrics.gauge("bininja_buffer_pool_hits", "The leases served from the pool", pool::getHits);
+      metrics.gauge("bininja_buffer_pool_misses", "The leases, that allocated a new buffer", pool::getMisses);
+   }
+
+   /**
+    * Registers a listening socket, that hands its connections to this server.
+    *
+    * @param accepted The number of connections accepted by the listener
+    */
+   public void addListener(String name, LongSupplier accepted) {
+      listeners.put(name, accepted);
+      downloadContext.getMetrics()
+                     .gauge("bininja_listener_accepted", "The connections accepted by a listener", accepted, "listener", name);
+   }
+
+   public void newConnection(Socket socket) throws IOException {
+      newConnection(socket, System.nanoTime());
+   }
+
+   /**
+    * @param accepted The value of {@link System#nanoTime()}, when the socket was accepted.
+    * The handshake timeout counts from then.
+    */
+   public void newConnection(Socket socket, long accepted) throws IOException {
       LOGGER.info("Establishing connection to client " + socket.getInetAddress());
       ConnectionRequest request = new ConnectionRequest(new Base64Connection(socket), this);
       requests.add(request);
-      request.establish();
+      long handshakeTimeout = this.handshakeTimeout;
+      if (handshakeTimeout > 0) {
+         long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - accepted);
+         request.setDeadline(downloadContext.getTimer(), Math.max(1, handshakeTimeout - elapsed));
+      }
+
+      try {
+         request.establish(handshakeExecutor);
+      } catch (RejectedExecutionException e) {
+         LOGGER.warn("Could not establish connection to client " + socket.getInetAddress()
+                     + ", because the handshake executor rejected it.");
+         requests.remove(request);
+         try {
+            request.destroy(0);
+         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * Establishes the connection on the handshake executor, so the caller never blocks on the client.
+    * The socket is closed, if the connection can not be established.
+    *
+    * @param accepted The value of {@link System#nanoTime()}, when the socket was accepted
+    *
+    * @throws RejectedExecutionException If the handshake executor is shut down
+    */
+   public void handOver(Socket socket, long accepted) throws RejectedExecutionException {
+      handshakeExecutor.execute(() -> {
+         try {
+            newConnection(socket, accepted);
+         } catch (IOException e) {
+            LOGGER.error("Could not establish connection to client " + socket.getInetAddress(), e);
+            try {
+               socket.close();
+            } catch (IOException ex) {
+               LOGGER.warn("Error closing the socket of " + socket.getInetAddress(), ex);
+            }
+         }
+      });
+   }
+
+   /**
+    * Closes an accepted socket, if its client does not complete the handshake within the handshake timeout.
+    * Used for sockets, that wait for the first bytes of their client, before there is a connection request.
+    *
+    * @return The deadline or <code>null</code> if there is no handshake timeout
+    */
+   public HashedWheelTimer.Timeout watchHandshake(Closeable socket) {
+      long handshakeTimeout = this.handshakeTimeout;
+      if (handshakeTimeout == 0)
+         return null;
+
+      try {
+         return downloadContext.getTimer()
+                               .schedule(() -> {
+            LOGGER.warn("The client of " + socket + " did not begin its handshake in time.");
+            failedHandshakes.increment();
+            handshakeTimeouts.increment();
+            try {
+               socket.close();
+            } catch (IOException e) {
+               LOGGER.warn("Could not close " + socket, e);
+            }
+         }, handshakeTimeout, TimeUnit.MILLISECONDS);
+      } catch (IllegalStateException e) {
+         LOGGER.debug("The timer is stopped, the handshake is not watched.");
+         return null;
+      }
    }
 
    @Override
@@ -59,7 +223,9 @@ public class Server implements ConnectionRequestHandler, AdminClientController {
       try {
          adminClient = new AdminClientHandler(connection, this, request.isSecure());
          adminClients.add(adminClient);
+         watchIdle(adminClient, () -> false);
          adminClient.getConnection().send(new ConnectionAnswerPacket(true));
+         handshakes.recordSince(request.getCreated());
          LOGGER.debug("New connection to admin client " + connection.getAddress() + " established.");
       } catch (IOException e) {
          failed(request, e);
@@ -72,17 +238,25 @@ public class Server implements ConnectionRequestHandler, AdminClientController {
       requests.remove(request);
 
       try {
-         DownloadClientHandler downloadClient = new DownloadClientHandler(connection, request.isSecure());
+         DownloadClientHandler downloadClient = new DownloadClientHandler(connection, downloadContext, request.isSecure());
          downloadClient.getConnection()
                        .send(new ConnectionAnswerPacket(true));
 
          downloadClients.add(downloadClient);
+         watchIdle(downloadClient, downloadClient::isBusy);
+         handshakes.recordSince(request.getCreated());
          LOGGER.debug("New connection to download client " + connection.getAddress() + " established.");
       } catch (IOException e) {
          failed(request, e);
       }
    }
 
+   private void watchIdle(ClientHandler client, BooleanSupplier busy) {
+      long idleTimeout = this.idleTimeout;
+      if (idleTimeout > 0)
+         new IdleWatch(downloadContext.getTimer(), client, idleTimeout, busy, idleEvictions).start();
+   }
+
    @Override
    public SecretKey buildSecureCoder(SessionKeyArrangement builder) throws IOException {
       if (keys == null)
@@ -94,18 +268,65 @@ public class Server implements ConnectionRequestHandler, AdminClientController {
                     .arrange();
    }
 
+   @Override
+   public SessionCache getSessionCache() {
+      return sessions;
+   }
+
+   /**
+    * @param sessions The cache of resumable sessions of secure connections or <code>null</code> to disable resumption
+    */
+   public void setSessionCache(SessionCache sessions) {
+      this.sessions = sessions;
+   }
+
+   /**
+    * @return The time in milliseconds, a client has to complete the handshake in, 0 if there is no deadline
+    */
+   public long getHandshakeTimeout() {
+      return handshakeTimeout;
+   }
+
+   public void setHandshakeTimeout(long handshakeTimeout) {
+      if (handshakeTimeout < 0)
+         throw new IllegalArgumentException("Invalid handshake timeout: " + handshakeTimeout);
+
+      this.handshakeTimeout = handshakeTimeout;
+   }
+
+   /**
+    * @return The time in milliseconds, after which an idle connection is closed, 0 if idle connections are kept.
+    * Applies to the connections established after it was set.
+    */
+   public long getIdleTimeout() {
+      return idleTimeout;
+   }
+
+   public void setIdleTimeout(long idleTimeout) {
+      if (idleTimeout < 0)
+         throw new IllegalArgumentException("Invalid idle timeout: " + idleTimeout);
+
+      this.idleTimeout = idleTimeout;
+   }
+
    @Override
    public void failed(ConnectionRequest request, IOException e) {
       String target = request.getConnection()
                              .getAddress()
                              .toString();
 
-      LOGGER.error("Could not establish connection to client " + target, e);
-      try {
-         request.getConnection()
-                .send(new ConnectionAnswerPacket(false, e.getMessage()));
-      } catch (IOException ex) {
-         LOGGER.warn("Could not send connection denial to " + target);
+      failedHandshakes.increment();
+      if (request.isExpired()) {
+         LOGGER.warn("The handshake with client " + target + " timed out.");
+         handshakeTimeouts.increment();
+      } else {
+         LOGGER.error("Could not establish connection to client " + target, e);
+         try {
+            request.getConnection()
+                   .send(new ConnectionAnswerPacket(false, e.getMessage()));
+         } catch (IOException ex) {
+            LOGGER.warn("Could not send connection denial to " + target);
+         }
       }
       LOGGER.debug("Destroying connection request from " + target);
       requests.remove(request);
@@ -129,6 +350,107 @@ public class Server implements ConnectionRequestHandler, AdminClientController {
       return downloadClients.getBufferSize();
    }
 
+   @Override
+   public Map<String, Long> readStatistics(StatisticsType type) {
+      switch (type) {
+      case BUFFER_POOL:
+         return downloadContext.getBufferPool()
+                               .getStatistics();
+      case CACHE:
+         ContentCache cache = downloadContext.getCache();
+         return cache == null ? Collections.emptyMap() : cache.getStatistics();
+      case UPSTREAM:
+         Map<String, Long> statistics = downloadContext.getUpstream()
+                                                       .getStatistics();
+         SingleFlight flights = downloadContext.getFlights();
+         if (flights != null)
+            flights.getStatistics().forEach((key, value) -> statistics.put("coalescing." + key, value));
+
+         return statistics;
+      case BANDWIDTH:
+         return downloadContext.getBandwidth()
+                               .getStatistics();
+      case SCHEDULER:
+         return downloadContext.getScheduler()
+                               .getStatistics();
+      case SESSIONS:
+         SessionCache sessions = this.sessions;
+         return sessions == null ? Collections.emptyMap() : sessions.getStatistics();
+      case LISTENERS:
+         Map<String, Long> accepted = new TreeMap<>();
+         listeners.forEach((name, count) -> accepted.put(name, count.getAsLong()));
+         return accepted;
+      }
+      return null;
+   }
+
+   @Override
+   public boolean purgeCache(String url) {
+      ContentCache cache = downloadContext.getCache();
+      if (cache == null)
+         return false;
+
+      if (url == null)
+         cache.purgeAll();
+      else
+         return cache.purge(url);
+
+      return true;
+   }
+
+   @Override
+   public boolean pinCache(String url, boolean pinned) {
+      ContentCache cache = downloadContext.getCache();
+      LOGGER.info((pinned ? "Pinning " : "Unpinning ") + url);
+      return cache != null && cache.pin(url, pinned);
+   }
+
+   @Override
+   public ChunkSizing readChunkSizing() {
+      return downloadContext.getChunkSizing();
+   }
+
+   @Override
+   public void setChunkSizing(boolean enabled, int minChunkSize, int maxChunkSize) throws IllegalArgumentException {
+      LOGGER.info((enabled ? "Enabling" : "Disabling") + " adaptive chunk sizing between "
+                  + minChunkSize + " and " + maxChunkSize + " bytes");
+      ChunkSizing sizing = downloadContext.getChunkSizing();
+      sizing.setBounds(minChunkSize, maxChunkSize);
+      sizing.setEnabled(enabled);
+   }
+
+   @Override
+   public Map<String, Long> readMetrics(String prefix) {
+      return downloadContext.getMetrics()
+                            .snapshot(prefix);
+   }
+
+   @Override
+   public Bandwidth readBandwidthLimits() {
+      return downloadContext.getBandwidth();
+   }
+
+   @Override
+   public void setBandwidthLimits(long globalLimit, long addressLimit, long downloadLimit) throws IllegalArgumentException {
+      LOGGER.info("Setting bandwidth limits to " + globalLimit + " bytes/s globally, "
+                  + addressLimit + " bytes/s per address and " + downloadLimit + " bytes/s per download");
+      downloadContext.getBandwidth()
+                     .setLimits(globalLimit, addressLimit, downloadLimit);
+   }
+
+   @Override
+   public DownloadScheduler getScheduler() {
+      return downloadContext.getScheduler();
+   }
+
+   @Override
+   public Collection<DownloadDetails> getDownloadDetails() {
+      return downloadClients.getClients()
+                            .stream()
+                            .flatMap(client -> client.getDownloadDetails().stream())
+                            .collect(Collectors.toList());
+   }
+
    @Override
    public int countAdminConnections() {
       return adminClients.count();
@@ -187,6 +509,10 @@ public class Server implements ConnectionRequestHandler, AdminClientController {
             resource.destroy(0);
       }
 
+      LOGGER.debug("Shutting down the executors");
+      handshakeExecutor.shutdown();
+      downloadContext.close();
+
       if (e != null)
          throw e;
    }
@@ -9,6 +9,10 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +27,23 @@ import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
 import de.dk.bininja.net.packet.download.DownloadPacket;
 import de.dk.bininja.net.packet.download.DownloadReadyPacket;
 import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.bininja.server.buffer.BufferPool;
+import de.dk.bininja.server.cache.CacheEntry;
+import de.dk.bininja.server.cache.ContentCache;
+import de.dk.bininja.server.net.packet.CompressedDataPacket;
+import de.dk.bininja.server.net.packet.DownloadCreditPacket;
+import de.dk.bininja.server.net.packet.DownloadDetails;
+import de.dk.bininja.server.net.packet.DownloadQueuedPacket;
+import de.dk.bininja.server.net.packet.ExtendedDownloadHeaderPacket;
+import de.dk.bininja.server.net.packet.ExtendedDownloadRequestPacket;
+import de.dk.bininja.server.timer.HashedWheelTimer;
+import de.dk.bininja.server.upstream.Content;
+import de.dk.bininja.server.upstream.Flight;
+import de.dk.bininja.server.upstream.SegmentedFetch;
+import de.dk.bininja.server.upstream.SingleFlight;
+import de.dk.bininja.server.upstream.StreamFetch;
+import de.dk.bininja.server.upstream.UpstreamRequest;
+import de.dk.bininja.server.upstream.UrlContent;
 import de.dk.ch.Channel;
 
 /**
@@ -33,98 +54,546 @@ public class ServerDownload extends Download {
    private static final Logger LOGGER = LoggerFactory.getLogger(ServerDownload.class);
 
    private final Channel<DownloadPacket> channel;
-   private URLConnection connection;
+   private final DownloadContext context;
+   private final BufferPool bufferPool;
+   private final DownloadMetrics metrics;
+   private final Execution execution;
+   private final Credit credit = new Credit();
+   private final ChunkSizer sizer;
+   private final Bandwidth.Throttle throttle;
+   private final WriteScheduler writes;
+   private volatile WriteScheduler.Flow flow;
+   private volatile long sent;
+   private final String address;
+   private volatile DownloadScheduler.Ticket ticket;
+   private boolean started;
+   private URL url;
+   private volatile Content content;
+   private int compressionLevel = DownloadContext.COMPRESSION_DISABLED;
+   private final Compressor.Pool compressors;
+   private Compressor compressor;
+   private int weight = 1;
+   private volatile Consumer<ServerDownload> endListener;
+   private volatile HashedWheelTimer.Timeout stallCheck;
+   private volatile boolean stalled;
+   private long progress = -1;
 
    private int bufferSize = Base64Connection.DEFAULT_BUFFER_SIZE;
 
-   public ServerDownload(Channel<DownloadPacket> channel) {
+   public ServerDownload(Channel<DownloadPacket> channel,
+                         DownloadContext context,
+                         int bufferSize,
+                         String address,
+                         Bandwidth.Throttle throttle,
+                         WriteScheduler writes,
+                         Compressor.Pool compressors) {
       this.channel = channel;
+      this.writes = writes;
+      this.compressors = compressors;
+      this.address = address;
+      this.throttle = throttle;
+      this.context = context;
+      this.bufferPool = context.getBufferPool();
+      this.metrics = context.getDownloadMetrics();
+      this.bufferSize = bufferSize;
+      this.sizer = new ChunkSizer(context.getChunkSizing(), bufferSize);
+      this.execution = new Execution(this);
+   }
+
+   @Override
+   public synchronized void start() {
+      execution.start(context.getExecutor());
+   }
+
+   @Override
+   public void interrupt() {
+      execution.interrupt();
    }
 
    @Override
    public void run() {
-      if (connection == null) {
+      if (content == null) {
          LOGGER.error("Could not begin to download because "
-                      + "the url-connection was not established.");
+                      + "the content was not requested.");
+         // The client did not wait for the header. Cancelling releases the ticket, which would be lost otherwise
+         metrics.failed(DownloadMetrics.CAUSE_CLIENT);
+         cancel("The download was started before its header was sent");
          return;
       }
 
+      try {
+         transfer();
+      } finally {
+         HashedWheelTimer.Timeout stallCheck = this.stallCheck;
+         if (stallCheck != null)
+            stallCheck.cancel();
+         if (flow != null)
+            flow.close();
+         if (compressor != null)
+            compressors.release(compressor);
+
+         content.close();
+         ticket.release();
+      }
+   }
+
+   private void transfer() {
       InputStream in;
       try {
-         in = connection.getInputStream();
+         in = content.getInputStream();
       } catch (IOException e) {
-         LOGGER.error("Could not get an inputstream from URLConnection " + connection.getURL(), e);
+         LOGGER.error("Could not get an inputstream of " + url, e);
+         metrics.failed(DownloadMetrics.CAUSE_UPSTREAM);
          cancel(e.getMessage());
          return;
       }
 
+      if (compressionLevel != DownloadContext.COMPRESSION_DISABLED)
+         this.compressor = compressors.acquire(compressionLevel, bufferSize);
+
+      this.flow = writes.newFlow(weight, this::send);
       setState(RUNNING);
-      LOGGER.debug("Starting the Download from " + connection.getURL());
-      byte[] buffer = new byte[bufferSize];
+      LOGGER.debug("Starting the Download from " + url);
+      watchStall();
       while (getDownloadState() == RUNNING) {
+         int chunkSize = sizer.next(bufferSize);
+         int limit;
+         try {
+            limit = credit.await(chunkSize);
+         } catch (IOException e) {
+            LOGGER.debug("Stopping the download of " + url + ": " + e.getMessage());
+            return;
+         } catch (InterruptedException e) {
+            if (getDownloadState() == RUNNING && !cancelStalled()) {
+               metrics.failed(DownloadMetrics.CAUSE_INTERRUPTED);
+               cancel("Interrupted while waiting for credit");
+            }
+
+            return;
+         }
+
+         // The buffer is leased until the packet has been written to the connection
+         byte[] buffer = bufferPool.lease(chunkSize);
+         boolean queued = false;
+         boolean sending = false;
          try {
-            int readBytes = in.read(buffer);
+            long begin = System.nanoTime();
+            int readBytes = fill(in, buffer, limit);
             if (readBytes == -1) {
                finished();
                continue;
             }
 
+            long read = System.nanoTime();
+            sizer.read(readBytes, read - begin);
             received(readBytes);
-            DownloadDataPacket packet = new DownloadDataPacket(Arrays.copyOf(buffer, readBytes));
-            channel.send(packet);
-            written(readBytes);
+            DownloadDataPacket packet = packetOf(buffer, readBytes);
+            int packetBytes = packet.getData().length;
+            credit.consume(readBytes);
+            throttle.acquire(packetBytes);
+            sending = true;
+            byte[] leased = buffer;
+            queued = true;
+            // Waits while the previous packets of this download are still queued.
+            // Only the writer task counts the bytes, when they actually reached the connection.
+            flow.send(packet, packetSent -> {
+               bufferPool.release(leased);
+               if (packetSent) {
+                  sent += readBytes;
+                  written(readBytes);
+               }
+            });
+            sizer.written(readBytes, System.nanoTime() - read);
          } catch (IOException e) {
-            if (getDownloadState() == RUNNING || getDownloadState() == DownloadState.LOADING_FINISHED) {
-               LOGGER.error("Error while sending data to client", e);
+            if ((getDownloadState() == RUNNING || getDownloadState() == DownloadState.LOADING_FINISHED)
+                && !cancelStalled()) {
+               LOGGER.error("Error while " + (sending ? "sending data to client" : "reading data from " + url), e);
+               metrics.failed(sending ? DownloadMetrics.CAUSE_CLIENT : DownloadMetrics.CAUSE_UPSTREAM);
                cancel(e.getMessage());
             }
+         } catch (InterruptedException e) {
+            if (getDownloadState() == RUNNING && !cancelStalled()) {
+               metrics.failed(DownloadMetrics.CAUSE_INTERRUPTED);
+               cancel(sending ? "Interrupted while waiting to send" : "Interrupted while throttled");
+            }
+         } finally {
+            if (!queued)
+               bufferPool.release(buffer);
          }
       }
    }
 
+   /**
+    * Sends a data packet, that may contain several coalesced chunks. Called by the writer task of the connection.
+    */
+   private void send(DownloadDataPacket packet) throws IOException {
+      long begin = System.nanoTime();
+      channel.send(packet);
+      metrics.chunkSend.record(System.nanoTime() - begin);
+      metrics.chunksSent.increment();
+      metrics.bytesSent.add(packet.getData().length);
+   }
+
+   /**
+    * Checks the progress of the download after the stall timeout.
+    */
+   private void watchStall() {
+      long timeout = context.getStallTimeout();
+      if (timeout == 0)
+         return;
+
+      try {
+         this.stallCheck = context.getTimer()
+                                  .schedule(this::checkStall, timeout, TimeUnit.MILLISECONDS);
+      } catch (IllegalStateException e) {
+         LOGGER.debug("The timer is stopped, the download is not watched anymore.");
+      }
+   }
+
+   /**
+    * Aborts the download, if it sent nothing since the last check and does not wait for credit.
+    * Called by the timer.
+    */
+   private void checkStall() {
+      if (getDownloadState() != RUNNING)
+         return;
+
+      long sent = this.sent;
+      if (sent != progress || credit.getAvailable() <= 0) {
+         this.progress = sent;
+         watchStall();
+         return;
+      }
+
+      LOGGER.warn("The download of " + url + " made no progress for " + context.getStallTimeout() + " ms.");
+      this.stalled = true;
+      try {
+         // Closing the content may block, so it is not done on the thread of the timer
+         context.getExecutor()
+                .execute(this::abort);
+      } catch (RejectedExecutionException e) {
+         LOGGER.debug("Could not abort the stalled download of " + url, e);
+      }
+   }
+
+   /**
+    * Wakes the download up, wherever it waits, so it notices that it stalled.
+    */
+   private void abort() {
+      interrupt();
+      Content content = this.content;
+      if (content != null)
+         content.close();
+   }
+
+   /**
+    * Cancels the download, if it was aborted because it stalled.
+    *
+    * @return If the download stalled
+    */
+   private boolean cancelStalled() {
+      if (!stalled)
+         return false;
+
+      metrics.failed(DownloadMetrics.CAUSE_STALLED);
+      cancel("The download made no progress for " + context.getStallTimeout() + " ms");
+      return true;
+   }
+
+   private DownloadDataPacket packetOf(byte[] buffer, int readBytes) {
+      byte[] compressed = compressor == null ? null : compressor.compress(buffer, readBytes);
+      if (compressed != null) {
+         metrics.compressionInput.add(readBytes);
+         metrics.compressionOutput.add(compressed.length);
+         return new CompressedDataPacket(compressed, readBytes);
+      }
+
+      byte[] data = readBytes == buffer.length ? buffer : Arrays.copyOf(buffer, readBytes);
+      return new DownloadDataPacket(data);
+   }
+
+   /**
+    * Reads into the buffer until the limit is reached or no more bytes are available without blocking,
+    * so full chunks can be sent without copying them.
+    *
+    * @return The number of bytes read or -1 if the end of the stream was reached
+    */
+   private static int fill(InputStream in, byte[] buffer, int limit) throws IOException {
+      int readBytes = in.read(buffer, 0, limit);
+      if (readBytes == -1)
+         return -1;
+
+      while (readBytes < limit && in.available() > 0) {
+         int n = in.read(buffer, readBytes, limit - readBytes);
+         if (n == -1)
+            break;
+
+         readBytes += n;
+      }
+      return readBytes;
+   }
+
    private void finished() {
       LOGGER.info("Download complete");
+      try {
+         flow.flush();
+      } catch (IOException e) {
+         if (cancelStalled())
+            return;
+
+         LOGGER.error("Error while sending data to client", e);
+         metrics.failed(DownloadMetrics.CAUSE_CLIENT);
+         cancel(e.getMessage());
+         return;
+      } catch (InterruptedException e) {
+         if (getDownloadState() == RUNNING && !cancelStalled()) {
+            metrics.failed(DownloadMetrics.CAUSE_INTERRUPTED);
+            cancel("Interrupted while waiting to send");
+         }
+         return;
+      }
+
       try {
          channel.send(new DownloadCompletePacket());
       } catch (IOException e) {
          LOGGER.warn("Could not send finish packet.", e);
       }
-      setState(COMPLETE);
+      metrics.completed.increment();
+      end(COMPLETE);
    }
 
    @Override
    protected void request(DownloadRequestPacket packet) {
       LOGGER.debug("DownloadRequest received " + packet);
-      URL url = packet.getUrl();
+      this.url = packet.getUrl();
+      int priority = 0;
+      boolean queueUpdates = false;
+      if (packet instanceof ExtendedDownloadRequestPacket) {
+         priority = ((ExtendedDownloadRequestPacket) packet).getPriority();
+         queueUpdates = ((ExtendedDownloadRequestPacket) packet).isQueueUpdates();
+         weight = ((ExtendedDownloadRequestPacket) packet).getWeight();
+      }
+
+      this.ticket = context.getScheduler()
+                           .submit(address, url.toString(), priority, new QueueListener(packet, queueUpdates));
+
+      if (ticket.isAdmittedImmediately())
+         admit(packet);
+      else
+         LOGGER.debug("The download of " + url + " has to wait in the queue.");
+   }
+
+   /**
+    * Prepares the admitted download on the executor,
+    * so the receiver thread of the connection never waits for the origin.
+    */
+   private void admit(DownloadRequestPacket packet) {
+      try {
+         context.getExecutor()
+                .execute(() -> prepare(packet));
+      } catch (RejectedExecutionException e) {
+         LOGGER.warn("Could not prepare the admitted download of " + url, e);
+         metrics.failed(DownloadMetrics.CAUSE_REJECTED);
+         cancel("The server is shutting down");
+      }
+   }
+
+   /**
+    * Opens the requested content and sends the header to the client.
+    */
+   private void prepare(DownloadRequestPacket packet) {
+      long offset = 0;
+      String validator = null;
+      if (packet instanceof ExtendedDownloadRequestPacket) {
+         offset = ((ExtendedDownloadRequestPacket) packet).getOffset();
+         validator = ((ExtendedDownloadRequestPacket) packet).getValidator();
+      }
+
       LOGGER.debug("Trying to get a connection to " + url);
       try {
-         this.connection = url.openConnection();
-         connection.connect();
-         LOGGER.debug("URL-Connection to " + url + " successfully established");
+         this.content = open(url, offset, validator);
+         LOGGER.debug("Content of " + url + " successfully opened: " + content);
       } catch (IOException e) {
+         if (getDownloadState() == CANCELLED)
+            return;
+
          LOGGER.debug("Could not establish connection to " + url, e);
+         metrics.failed(DownloadMetrics.CAUSE_UPSTREAM);
          cancel(e.getMessage());
          return;
       }
+      // The download may have been cancelled while the content was opened.
+      // Either this check or the cancelling thread sees the content and closes it.
+      if (getDownloadState() == CANCELLED) {
+         LOGGER.debug("The download of " + url + " was cancelled while it was prepared.");
+         content.close();
+         return;
+      }
+
       LOGGER.debug("Requesting meta information about the download");
-      this.length = connection.getContentLengthLong();
+      this.length = content.getLength();
 
-      String filename = null;
-      try {
-         filename = getFilename(connection);
-      } catch (NoSuchFieldException e) {
-         LOGGER.debug("Could not read filename from url", e);
-      }
       LOGGER.debug("Meta information about the download received. Length of the download: " + getLength() + " bytes");
       LOGGER.debug("Telling the client the download metadata by sending a DownloadHeaderPacket");
+      if (offset > 0)
+         LOGGER.debug("Resuming the download of " + url + " at " + content.getPosition() + " instead of " + offset);
+
+      DownloadHeaderPacket header;
+      if (packet instanceof ExtendedDownloadRequestPacket) {
+         ExtendedDownloadHeaderPacket extendedHeader = new ExtendedDownloadHeaderPacket(getLength(),
+                                                                                        content.getFilename(),
+                                                                                        content.getPosition(),
+                                                                                        content.getValidator());
+         int level = context.getCompressionLevel();
+         if (((ExtendedDownloadRequestPacket) packet).isCompression()
+             && level != DownloadContext.COMPRESSION_DISABLED
+             && Compressor.isCompressible(content.getContentType())) {
+            this.compressionLevel = level;
+            extendedHeader.setCompressed(true);
+         }
+         header = extendedHeader;
+      } else {
+         header = new DownloadHeaderPacket(getLength(), content.getFilename());
+      }
+
       try {
-         channel.send(new DownloadHeaderPacket(getLength(), filename));
+         channel.send(header);
       } catch (IOException e) {
          LOGGER.warn("Could not send Downloadheader to client", e);
+         metrics.failed(DownloadMetrics.CAUSE_CLIENT);
          terminate();
       }
    }
 
+   /**
+    * Opens the content of the url.
+    * The content starts at the offset, if the offset is available and the content matches the validator.
+    * Otherwise it starts at 0.
+    */
+   private Content open(URL url, long offset, String validator) throws IOException {
+      ContentCache cache = context.getCache();
+      CacheEntry cached = null;
+      long start = 0;
+      if (cache != null && cache.accepts(url)) {
+         cached = cache.lookup(url);
+         if (cached != null && (validator == null || cached.matches(validator)))
+            start = offset;
+
+         if (cached != null && !cached.isComplete()) {
+            LOGGER.debug("Joining the cache entry of " + url + ", that is still being filled.");
+            return cache.join(cached, start);
+         }
+         if (cached != null && cached.isFresh()) {
+            LOGGER.debug("The cache entry of " + url + " is fresh, it is served without revalidation.");
+            return cache.hit(cached, Math.min(start, cached.getLength()));
+         }
+      } else {
+         cache = null;
+      }
+
+      SingleFlight flights = context.getFlights();
+      if (cache == null && flights != null) {
+         Content content = flights.open(url, offset, validator, offset == 0 ? () -> launch(url) : null);
+         if (content != null)
+            return content;
+      }
+
+      UpstreamRequest request = context.getUpstream().open(url);
+      URLConnection connection = request.getConnection();
+      if (cached != null)
+         cache.prepareRevalidation(cached, connection);
+      else if (offset > 0)
+         UrlContent.requestRange(connection, offset, validator);
+
+      try {
+         request.connect();
+         if (cached != null && CacheEntry.isNotModified(connection)) {
+            LOGGER.debug("The cache entry of " + url + " is up to date.");
+            // The headers of the confirmation renew the freshness, so they are read before the request is closed
+            try {
+               return cache.revalidated(cached, connection, Math.min(start, cached.getLength()));
+            } finally {
+               request.close();
+            }
+         }
+      } catch (IOException e) {
+         request.close();
+         if (cached == null)
+            throw e;
+
+         LOGGER.warn("Could not revalidate the cache entry of " + url + ". Serving the stale entry.", e);
+         return cache.stale(cached, Math.min(start, cached.getLength()));
+      }
+
+      try {
+         String filename = readFilename(connection);
+         if (cache != null && cache.isCacheable(connection))
+            return cache.store(url, request, filename);
+
+         if (offset == 0 && SegmentedFetch.isSupported(connection, context.getSegments(), context.getMinSegmentSize()))
+            return fly(request, filename);
+
+         return new UrlContent(request, filename);
+      } catch (IOException | RuntimeException e) {
+         request.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Launches a new flight of the url, that other downloads of the url can join.
+    */
+   private Flight.Subscription launch(URL url) throws IOException {
+      UpstreamRequest request = context.getUpstream().open(url);
+      try {
+         request.connect();
+         return fly(request, readFilename(request.getConnection()));
+      } catch (IOException | RuntimeException e) {
+         request.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Starts to fetch the response of the request into a flight.
+    *
+    * @return The subscription of this download
+    */
+   private Flight.Subscription fly(UpstreamRequest request, String filename) throws IOException {
+      URLConnection connection = request.getConnection();
+      Flight flight = new Flight(connection,
+                                 filename,
+                                 context.getSpoolDirectory().resolve("bininja-" + UUID.randomUUID() + ".part"));
+
+      Flight.Subscription subscription = flight.subscribe(0);
+      try {
+         if (SegmentedFetch.isSupported(connection, context.getSegments(), context.getMinSegmentSize())) {
+            SegmentedFetch.start(request,
+                                 flight,
+                                 context.getSegments(),
+                                 context.getMinSegmentSize(),
+                                 context.getSegmentRetries(),
+                                 context.getUpstream(),
+                                 context.getFetchExecutor());
+         } else {
+            StreamFetch.start(request, flight, context.getFetchExecutor());
+         }
+      } catch (IOException | RuntimeException e) {
+         subscription.close();
+         throw e;
+      }
+      return subscription;
+   }
+
+   private String readFilename(URLConnection connection) {
+      try {
+         return getFilename(connection);
+      } catch (NoSuchFieldException e) {
+         LOGGER.debug("Could not read filename from url", e);
+         return null;
+      }
+   }
+
    @Override
    protected void cancel(DownloadCancelPacket packet) {
       String msg = packet.getMsg() != null ? packet.getMsg() : "";
@@ -140,6 +609,15 @@ public class ServerDownload extends Download {
    @Override
    protected void ready(DownloadReadyPacket packet) {
       LOGGER.debug("Client is ready: " + packet);
+      if (packet instanceof DownloadCreditPacket)
+         credit.grant(((DownloadCreditPacket) packet).getCredit());
+
+      synchronized (this) {
+         if (started)
+            return;
+
+         started = true;
+      }
       LOGGER.debug("Initialising the download.");
       start();
    }
@@ -155,6 +633,13 @@ public class ServerDownload extends Download {
    }
 
    public void cancel(String msg, long timeout) throws InterruptedException {
+      // Set first, so the transfer loop takes the closed flow for the cancellation and not for a failure of the client
+      end(CANCELLED);
+      // The queued data must not follow the cancel packet
+      WriteScheduler.Flow flow = this.flow;
+      if (flow != null)
+         flow.close();
+
       try {
          channel.send(new DownloadCancelPacket(msg));
       } catch (IOException e) {
@@ -180,14 +665,119 @@ public class ServerDownload extends Download {
    }
 
    public void terminate(long timeout) throws InterruptedException {
-      setState(CANCELLED);
+      end(CANCELLED);
+      interrupt();
+      execution.join(timeout);
+      if (content != null)
+         content.close();
+      if (ticket != null)
+         ticket.release();
+   }
+
+   /**
+    * Terminates the download without waiting for it, because the connection to the client is closed.
+    * A started download releases its content and ticket itself, when it notices.
+    */
+   void abandon() {
+      if (isActive())
+         metrics.failed(DownloadMetrics.CAUSE_CLIENT);
+
+      boolean started;
+      synchronized (this) {
+         started = this.started;
+         this.started = true;
+      }
+      end(CANCELLED);
+      credit.close();
       interrupt();
-      if (Thread.currentThread() != this)
-         join(timeout);
+      if (started)
+         return;
+
+      DownloadScheduler.Ticket ticket = this.ticket;
+      if (ticket != null)
+         ticket.release();
+
+      try {
+         // Closing the content may block, so it is not done on the thread of the connection
+         context.getExecutor()
+                .execute(this::closeContent);
+      } catch (RejectedExecutionException e) {
+         closeContent();
+      }
+   }
+
+   private void closeContent() {
+      Content content = this.content;
+      if (content != null)
+         content.close();
+   }
+
+   private void end(DownloadState state) {
+      setState(state);
+      Consumer<ServerDownload> listener = endListener;
+      if (listener != null)
+         listener.accept(this);
+   }
+
+   /**
+    * @param endListener Is notified, when the download completes or is cancelled. May be notified more than once.
+    */
+   void setEndListener(Consumer<ServerDownload> endListener) {
+      this.endListener = endListener;
+   }
+
+   /**
+    * @return If the download was requested and is still queued or running
+    */
+   boolean isActive() {
+      DownloadState state = getDownloadState();
+      if (state == COMPLETE || state == CANCELLED || state == DownloadState.ERROR)
+         return false;
+
+      return ticket != null;
+   }
+
+   public DownloadDetails getDetails() {
+      DownloadState state = getDownloadState();
+      return new DownloadDetails(address,
+                                 url == null ? null : url.toString(),
+                                 state == null ? null : state.name(),
+                                 getLength(),
+                                 sent,
+                                 sizer.getChunkSize(),
+                                 sizer.getReadRate(),
+                                 sizer.getWriteRate());
    }
 
    @Override
    public String toString() {
-      return "{ServerDownload from " + connection.getURL() + "}";
+      return "{ServerDownload from " + url + "}";
+   }
+
+   private class QueueListener implements DownloadScheduler.Listener {
+      private final DownloadRequestPacket request;
+      private final boolean updates;
+
+      public QueueListener(DownloadRequestPacket request, boolean updates) {
+         this.request = request;
+         this.updates = updates;
+      }
+
+      @Override
+      public void admitted() {
+         admit(request);
+      }
+
+      @Override
+      public void queued(int position, long etaMillis) {
+         if (!updates)
+            return;
+
+         try {
+            channel.send(new DownloadQueuedPacket(position, etaMillis));
+         } catch (IOException e) {
+            LOGGER.warn("Could not send the queue position of " + url + " to the client", e);
+         }
+      }
    }
 }
@@ -0,0 +1,184 @@
+package de.dk.bininja.server.net;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The session keys of secure connections, that clients can resume on their next connection
+ * without arranging a new session key with the keys of the server.
+ * A client gets a random ticket for its session, that can be redeemed only once within the lifetime of the session.
+ * The key of the resumed session is derived from the previous key with a nonce of the client and one of the server,
+ * so a replayed handshake never results in a key, that was used before.
+ * If the cache is full, the oldest sessions are evicted.
+ */
+public class SessionCache {
+   public static final int DEFAULT_MAX_SESSIONS = 10_000;
+   public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+   public static final int TICKET_LENGTH = 32;
+   public static final int NONCE_LENGTH = 16;
+
+   private static final String DERIVATION_ALGORITHM = "HmacSHA256";
+   private static final byte[] DERIVATION_LABEL = "bininja session resumption".getBytes(StandardCharsets.US_ASCII);
+
+   private final SecureRandom random = new SecureRandom();
+   private final int maxSessions;
+   private final long ttlMillis;
+   // Tickets are redeemed only once, so the insertion order is the order of the last use
+   private final Map<String, Session> sessions = new LinkedHashMap<>();
+
+   private long issued;
+   private long resumed;
+   private long expired;
+   private long unknown;
+   private long evicted;
+
+   public SessionCache(int maxSessions, long ttlMillis) throws IllegalArgumentException {
+      if (maxSessions <= 0)
+         throw new IllegalArgumentException("Invalid maximum number of sessions: " + maxSessions);
+      if (ttlMillis <= 0)
+         throw new IllegalArgumentException("Invalid lifetime of the sessions: " + ttlMillis);
+
+      this.maxSessions = maxSessions;
+      this.ttlMillis = ttlMillis;
+   }
+
+   public SessionCache() {
+      this(DEFAULT_MAX_SESSIONS, DEFAULT_TTL_MILLIS);
+   }
+
+   /**
+    * Stores the session key of a connection, so the client can resume the session.
+    *
+    * @return The ticket to resume the session
+    */
+   public byte[] issue(SecretKey key) {
+      byte[] ticket = new byte[TICKET_LENGTH];
+      random.nextBytes(ticket);
+      Session session = new Session(key, System.currentTimeMillis() + ttlMillis);
+
+      synchronized (this) {
+         sessions.put(encode(ticket), session);
+         issued++;
+         Iterator<Session> iterator = sessions.values().iterator();
+         while (sessions.size() > maxSessions) {
+            iterator.next();
+            iterator.remove();
+            evicted++;
+         }
+      }
+      return ticket;
+   }
+
+   /**
+    * Redeems a ticket. The ticket is invalid afterwards, no matter if the session could be resumed.
+    *
+    * @param ticket The ticket of the session, the client wants to resume
+    * @param clientNonce The random nonce of the client
+    *
+    * @return The resumed session or <code>null</code> if the ticket is unknown or expired
+    */
+   public Resumption resume(byte[] ticket, byte[] clientNonce) {
+      if (ticket == null || ticket.length != TICKET_LENGTH || clientNonce == null || clientNonce.length != NONCE_LENGTH)
+         return null;
+
+      Session session;
+      synchronized (this) {
+         session = sessions.remove(encode(ticket));
+         if (session == null) {
+            unknown++;
+            return null;
+         }
+         if (session.expires < System.currentTimeMillis()) {
+            expired++;
+            return null;
+         }
+         resumed++;
+      }
+
+      byte[] serverNonce = new byte[NONCE_LENGTH];
+      random.nextBytes(serverNonce);
+      SecretKey key;
+      try {
+         key = derive(session.key, clientNonce, serverNonce);
+      } catch (GeneralSecurityException e) {
+         return null;
+      }
+      return new Resumption(key, serverNonce);
+   }
+
+   /**
+    * Derives the key of a resumed session from the key of the previous session.
+    * The client derives the same key from the nonce of the server.
+    */
+   public static SecretKey derive(SecretKey key, byte[] clientNonce, byte[] serverNonce) throws GeneralSecurityException {
+      byte[] encoded = key.getEncoded();
+      Mac mac = Mac.getInstance(DERIVATION_ALGORITHM);
+      if (encoded == null || encoded.length > mac.getMacLength())
+         throw new GeneralSecurityException("Can not derive a key from " + key.getAlgorithm() + " keys");
+
+      mac.init(new SecretKeySpec(encoded, DERIVATION_ALGORITHM));
+      mac.update(DERIVATION_LABEL);
+      mac.update(clientNonce);
+      mac.update(serverNonce);
+      return new SecretKeySpec(Arrays.copyOf(mac.doFinal(), encoded.length), key.getAlgorithm());
+   }
+
+   private static String encode(byte[] ticket) {
+      return Base64.getEncoder().encodeToString(ticket);
+   }
+
+   public long getTtlMillis() {
+      return ttlMillis;
+   }
+
+   public synchronized Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("sessions", (long) sessions.size());
+      statistics.put("maxSessions", (long) maxSessions);
+      statistics.put("issued", issued);
+      statistics.put("resumed", resumed);
+      statistics.put("expired", expired);
+      statistics.put("unknown", unknown);
+      statistics.put("evicted", evicted);
+      return statistics;
+   }
+
+   private static class Session {
+      private final SecretKey key;
+      private final long expires;
+
+      Session(SecretKey key, long expires) {
+         this.key = key;
+         this.expires = expires;
+      }
+   }
+
+   public static class Resumption {
+      private final SecretKey key;
+      private final byte[] serverNonce;
+
+      Resumption(SecretKey key, byte[] serverNonce) {
+         this.key = key;
+         this.serverNonce = serverNonce;
+      }
+
+      public SecretKey getKey() {
+         return key;
+      }
+
+      public byte[] getServerNonce() {
+         return serverNonce;
+      }
+   }
+}
@@ -0,0 +1,48 @@
+package de.dk.bininja.server.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket, that limits the rate of bytes to the value of a changeable limit.
+ * The bucket holds the time, at which it would be empty, instead of a number of tokens,
+ * so taking tokens is a single compare and set without locks or timers.
+ * A full bucket is empty since {@link #BURST_NANOS} ago.
+ * Tokens are taken even if the bucket runs dry, the caller has to wait the returned time before using them.
+ */
+class TokenBucket {
+   /** The bucket holds up to this many nanoseconds worth of bytes */
+   private static final long BURST_NANOS = 100_000_000;
+
+   private final LongSupplier limit;
+   private final AtomicLong emptyAt = new AtomicLong(System.nanoTime());
+
+   /**
+    * @param limit Supplies the limit in bytes per second, {@link Bandwidth#UNLIMITED} for no limit
+    */
+   public TokenBucket(LongSupplier limit) {
+      this.limit = limit;
+   }
+
+   /**
+    * Takes the tokens for the given number of bytes.
+    *
+    * @return The time in nanoseconds to wait, before the bytes may be sent
+    */
+   public long take(int bytes) {
+      long rate = limit.getAsLong();
+      if (rate <= Bandwidth.UNLIMITED)
+         return 0;
+
+      long cost = bytes * 1_000_000_000L / rate;
+      long now = System.nanoTime();
+      long current;
+      long next;
+      do {
+         current = emptyAt.get();
+         next = Math.max(current, now - BURST_NANOS) + cost;
+      } while (!emptyAt.compareAndSet(current, next));
+
+      return Math.max(0, next - now);
+   }
+}
@@ -0,0 +1,384 @@
+package de.dk.bininja.server.net;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.server.net.packet.CompressedDataPacket;
+
+/**
+ * Interleaves the data packets of the downloads, that share one connection, with deficit round robin.
+ * The downloads queue their packets in their flow and a single writer task sends them,
+ * while the downloads already read their next chunks.
+ * In each round a flow may send up to its quantum, that is {@link #QUANTUM} bytes times its weight,
+ * before the next flow gets its turn, so a large download can not hold back the small ones on the same connection.
+ * Each flow queues at most {@link #LOOKAHEAD} packets or batches, a download waits when its flow is full.
+ * The writer task only runs while packets are queued.
+ * <p>
+ * Small packets are coalesced: A flow queues more small packets until they reach the batch size
+ * and the writer sends them as one packet.
+ * A small packet waits at most the flush delay for more packets of its flow.
+ */
+class WriteScheduler {
+   private static final Logger LOGGER = LoggerFactory.getLogger(WriteScheduler.class);
+
+   static final int QUANTUM = 16 * 1024;
+   static final int LOOKAHEAD = 2;
+   static final int MAX_WEIGHT = 64;
+   static final int MAX_BATCH_PACKETS = 64;
+
+   private final Executor executor;
+   private final DownloadMetrics metrics;
+   private final int batchSize;
+   private final long flushDelayNanos;
+   private final Deque<Flow> active = new ArrayDeque<>();
+   private boolean writing;
+
+   public WriteScheduler(DownloadContext context) {
+      this.executor = context.getWriteExecutor();
+      this.metrics = context.getDownloadMetrics();
+      this.batchSize = context.getWriteBatchSize();
+      this.flushDelayNanos = TimeUnit.MICROSECONDS.toNanos(context.getFlushDelay());
+   }
+
+   /**
+    * @param weight The share of the connection relative to the other flows, between 1 and {@link #MAX_WEIGHT}
+    * @param sender Sends the packets of the flow, called by the writer task
+    */
+   public Flow newFlow(int weight, Sender sender) {
+      return new Flow(Math.max(1, Math.min(MAX_WEIGHT, weight)), sender);
+   }
+
+   private void write() {
+      List<Frame> batch = new ArrayList<>();
+      while (true) {
+         Flow flow;
+         synchronized (this) {
+            try {
+               while ((flow = next(batch)) == null) {
+                  long delay = nextDue() - System.nanoTime();
+                  if (active.isEmpty() || delay == Long.MAX_VALUE) {
+                     writing = false;
+                     return;
+                  }
+                  TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, delay));
+               }
+            } catch (InterruptedException e) {
+               LOGGER.warn("The writer was interrupted.", e);
+               for (Flow waiting : active) {
+                  if (waiting.failure == null)
+                     waiting.failure = new IOException("The writer was interrupted");
+               }
+               writing = false;
+               notifyAll();
+               Thread.currentThread().interrupt();
+               return;
+            }
+            flow.inFlight = true;
+            // The flow may queue the next packets while this batch is sent
+            notifyAll();
+         }
+
+         IOException failure = null;
+         try {
+            flow.sender.send(merge(batch));
+         } catch (IOException e) {
+            failure = e;
+         } catch (RuntimeException e) {
+            failure = new IOException("Could not send a packet", e);
+         } finally {
+            for (Frame frame : batch)
+               frame.callback.written(failure == null);
+         }
+
+         synchronized (this) {
+            flow.inFlight = false;
+            if (failure != null && flow.failure == null)
+               flow.failure = failure;
+
+            notifyAll();
+         }
+         batch.clear();
+      }
+   }
+
+   /**
+    * Finds the flow, whose frames are sent next and takes its next batch of frames.
+    * Every flow gets its quantum once per visit. A flow without enough deficit for its frame waits for the next round,
+    * a flow without frames loses its deficit and leaves the round.
+    * Flows, whose small frames may still wait to be coalesced, are skipped.
+    *
+    * @return The flow or <code>null</code> if no flow is due
+    */
+   private Flow next(List<Frame> batch) {
+      long now = System.nanoTime();
+      int skipped = 0;
+      while (skipped < active.size()) {
+         Flow flow = active.peekFirst();
+         Frame frame = flow.frames.peekFirst();
+         if (frame == null) {
+            active.pollFirst();
+            flow.active = false;
+            flow.visited = false;
+            flow.deficit = 0;
+            continue;
+         }
+
+         if (!flow.isDue(now)) {
+            active.pollFirst();
+            active.addLast(flow);
+            skipped++;
+            continue;
+         }
+
+         if (!flow.visited) {
+            flow.deficit += (long) QUANTUM * flow.weight;
+            flow.visited = true;
+         }
+         if (flow.deficit >= frame.bytes) {
+            take(flow, batch);
+            return flow;
+         }
+
+         active.pollFirst();
+         flow.visited = false;
+         active.addLast(flow);
+         skipped = 0;
+      }
+      return null;
+   }
+
+   /**
+    * Takes the first frame of the flow and the following frames of the same kind,
+    * as long as they fit into the batch size and the deficit of the flow.
+    */
+   private void take(Flow flow, List<Frame> batch) {
+      Frame first = flow.frames.pollFirst();
+      batch.add(first);
+      long bytes = first.bytes;
+      while (!flow.frames.isEmpty()) {
+         Frame frame = flow.frames.peekFirst();
+         if (frame.packet.getClass() != first.packet.getClass()
+             || bytes + frame.bytes > batchSize
+             || bytes + frame.bytes > flow.deficit)
+            break;
+
+         batch.add(flow.frames.pollFirst());
+         bytes += frame.bytes;
+      }
+      flow.deficit -= bytes;
+      flow.queuedBytes -= bytes;
+   }
+
+   /**
+    * @return The time, the first small frame of the active flows is due or {@link Long#MAX_VALUE}
+    * if no flow has frames
+    */
+   private long nextDue() {
+      long due = Long.MAX_VALUE;
+      for (Flow flow : active) {
+         Frame frame = flow.frames.peekFirst();
+         if (frame != null)
+            due = Math.min(due, frame.queued + flushDelayNanos);
+      }
+      return due;
+   }
+
+   private DownloadDataPacket merge(List<Frame> batch) {
+      DownloadDataPacket first = batch.get(0).packet;
+      int bytes = 0;
+      int uncompressed = 0;
+      for (Frame frame : batch) {
+         bytes += frame.bytes;
+         if (frame.packet instanceof CompressedDataPacket)
+            uncompressed += ((CompressedDataPacket) frame.packet).getUncompressedLength();
+      }
+      metrics.writeBatchPackets.record(batch.size());
+      metrics.writeBatchBytes.record(bytes);
+      if (batch.size() == 1)
+         return first;
+
+      byte[] data = new byte[bytes];
+      int position = 0;
+      for (Frame frame : batch) {
+         System.arraycopy(frame.packet.getData(), 0, data, position, frame.bytes);
+         position += frame.bytes;
+      }
+      // The compressor flushes after every chunk, so the compressed chunks can simply be concatenated
+      if (first instanceof CompressedDataPacket)
+         return new CompressedDataPacket(data, uncompressed);
+
+      return new DownloadDataPacket(data);
+   }
+
+   /**
+    * The data packets of one download.
+    */
+   public class Flow {
+      private final int weight;
+      private final Sender sender;
+      private final Deque<Frame> frames = new ArrayDeque<>();
+      private long queuedBytes;
+      private long deficit;
+      private boolean active;
+      private boolean visited;
+      private boolean inFlight;
+      private boolean flushing;
+      private boolean closed;
+      private IOException failure;
+
+      private Flow(int weight, Sender sender) {
+         this.weight = weight;
+         this.sender = sender;
+      }
+
+      /**
+       * Queues a packet. Waits while the flow is full.
+       *
+       * @param packet The packet
+       * @param callback Called by the writer task after the packet was sent or failed to send,
+       * or when the packet is dropped, because the flow is closed
+       *
+       * @throws IOException If a previous packet of this flow could not be sent
+       * @throws InterruptedException If interrupted while waiting
+       */
+      public void send(DownloadDataPacket packet, Callback callback) throws IOException, InterruptedException {
+         synchronized (WriteScheduler.this) {
+            while (isFull() && failure == null && !closed)
+               WriteScheduler.this.wait();
+
+            if (failure != null)
+               throw failure;
+            if (closed)
+               throw new IOException("The flow is closed");
+
+            Frame frame = new Frame(packet, callback);
+            frames.addLast(frame);
+            queuedBytes += frame.bytes;
+            if (!active) {
+               active = true;
+               WriteScheduler.this.active.addLast(this);
+            }
+            if (writing) {
+               WriteScheduler.this.notifyAll();
+               return;
+            }
+
+            writing = true;
+         }
+
+         try {
+            executor.execute(WriteScheduler.this::write);
+         } catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not start the writer, writing on the thread of the download.", e);
+            write();
+         }
+      }
+
+      /**
+       * Sends the queued packets without waiting for more packets to coalesce them with,
+       * and waits until they are sent.
+       *
+       * @throws IOException If a packet of this flow could not be sent
+       */
+      public void flush() throws IOException, InterruptedException {
+         synchronized (WriteScheduler.this) {
+            flushing = true;
+            WriteScheduler.this.notifyAll();
+            while ((!frames.isEmpty() || inFlight) && failure == null)
+               WriteScheduler.this.wait();
+
+            if (failure != null)
+               throw failure;
+         }
+      }
+
+      /**
+       * Drops the queued packets and waits until the packet, that is being sent, is sent,
+       * so nothing of this flow is written to the connection after this method returns.
+       */
+      public void close() {
+         Frame[] dropped;
+         boolean interrupted = false;
+         synchronized (WriteScheduler.this) {
+            if (!closed) {
+               closed = true;
+               dropped = frames.toArray(new Frame[frames.size()]);
+               frames.clear();
+               queuedBytes = 0;
+               WriteScheduler.this.notifyAll();
+            } else {
+               dropped = new Frame[0];
+            }
+            while (inFlight) {
+               try {
+                  WriteScheduler.this.wait();
+               } catch (InterruptedException e) {
+                  interrupted = true;
+               }
+            }
+         }
+         if (interrupted)
+            Thread.currentThread().interrupt();
+
+         for (Frame frame : dropped)
+            frame.callback.written(false);
+      }
+
+      private boolean isFull() {
+         if (frames.size() >= MAX_BATCH_PACKETS)
+            return true;
+
+         return frames.size() >= LOOKAHEAD && queuedBytes >= (long) LOOKAHEAD * batchSize;
+      }
+
+      /**
+       * @return If the frames of this flow may be sent or if they should still wait to be coalesced
+       */
+      private boolean isDue(long now) {
+         return flushing
+                || queuedBytes >= batchSize
+                || frames.size() >= MAX_BATCH_PACKETS
+                || now - frames.peekFirst().queued >= flushDelayNanos;
+      }
+
+      public int getWeight() {
+         return weight;
+      }
+   }
+
+   private static class Frame {
+      private final DownloadDataPacket packet;
+      private final int bytes;
+      private final Callback callback;
+      private final long queued = System.nanoTime();
+
+      Frame(DownloadDataPacket packet, Callback callback) {
+         this.packet = packet;
+         this.bytes = packet.getData().length;
+         this.callback = callback;
+      }
+   }
+
+   @FunctionalInterface
+   public static interface Callback {
+      /**
+       * @param sent If the packet was sent, otherwise it failed to send or was dropped
+       */
+      void written(boolean sent);
+   }
+
+   @FunctionalInterface
+   public static interface Sender {
+      void send(DownloadDataPacket packet) throws IOException;
+   }
+}
@@ -0,0 +1,89 @@
+package de.dk.bininja.server.net.packet;
+
+/**
+ * Reads or sets the bandwidth limits of the downloads in bytes per second.
+ * A limit of 0 means unlimited.
+ * The server answers with the same packet, with the current limits and the success flag set.
+ */
+public class BandwidthLimitPacket extends ServerAdminPacket {
+   private static final long serialVersionUID = 2369401885724151720L;
+
+   private final BandwidthLimitOperation operation;
+   private long globalLimit;
+   private long addressLimit;
+   private long downloadLimit;
+   private boolean success;
+
+   /**
+    * Reads the current limits.
+    */
+   public BandwidthLimitPacket() {
+      super(ServerAdminPacketType.BANDWIDTH_LIMIT);
+      this.operation = BandwidthLimitOperation.READ;
+   }
+
+   /**
+    * Sets the limits.
+    *
+    * @param globalLimit The limit of all downloads together
+    * @param addressLimit The limit of all downloads to one remote address
+    * @param downloadLimit The limit of a single download
+    */
+   public BandwidthLimitPacket(long globalLimit, long addressLimit, long downloadLimit) {
+      super(ServerAdminPacketType.BANDWIDTH_LIMIT);
+      this.operation = BandwidthLimitOperation.SET;
+      this.globalLimit = globalLimit;
+      this.addressLimit = addressLimit;
+      this.downloadLimit = downloadLimit;
+   }
+
+   public BandwidthLimitOperation getOperation() {
+      return operation;
+   }
+
+   public long getGlobalLimit() {
+      return globalLimit;
+   }
+
+   public void setGlobalLimit(long globalLimit) {
+      this.globalLimit = globalLimit;
+   }
+
+   public long getAddressLimit() {
+      return addressLimit;
+   }
+
+   public void setAddressLimit(long addressLimit) {
+      this.addressLimit = addressLimit;
+   }
+
+   public long getDownloadLimit() {
+      return downloadLimit;
+   }
+
+   public void setDownloadLimit(long downloadLimit) {
+      this.downloadLimit = downloadLimit;
+   }
+
+   public boolean isSuccess() {
+      return success;
+   }
+
+   public void setSuccess(boolean success) {
+      this.success = success;
+   }
+
+   @Override
+   public String toString() {
+      return "BandwidthLimitPacket { operation=" + operation
+             + ", globalLimit=" + globalLimit
+             + ", addressLimit=" + addressLimit
+             + ", downloadLimit=" + downloadLimit
+             + ", success=" + success + " }";
+   }
+
+   public static enum BandwidthLimitOperation {
+      READ,
+      SET;
+   }
+}
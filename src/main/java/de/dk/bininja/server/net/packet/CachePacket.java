@@ -0,0 +1,52 @@
+package de.dk.bininja.server.net.packet;
+
+import java.util.Objects;
+
+/**
+ * Manages the content cache of the server.
+ * The server answers with the same packet, with the success flag set.
+ */
+public class CachePacket extends ServerAdminPacket {
+   private static final long serialVersionUID = 6203748210964487135L;
+
+   private final CacheOperation operation;
+   private final String url;
+   private boolean success;
+
+   /**
+    * @param operation The operation to perform
+    * @param url The URL of the entry or <code>null</code> to purge all entries, that are not pinned
+    */
+   public CachePacket(CacheOperation operation, String url) {
+      super(ServerAdminPacketType.CACHE);
+      this.operation = Objects.requireNonNull(operation);
+      this.url = url;
+   }
+
+   public CacheOperation getOperation() {
+      return operation;
+   }
+
+   public String getUrl() {
+      return url;
+   }
+
+   public boolean isSuccess() {
+      return success;
+   }
+
+   public void setSuccess(boolean success) {
+      this.success = success;
+   }
+
+   @Override
+   public String toString() {
+      return "CachePacket { operation=" + operation + ", url=" + url + ", success=" + success + " }";
+   }
+
+   public static enum CacheOperation {
+      PURGE,
+      PIN,
+      UNPIN;
+   }
+}
@@ -0,0 +1,88 @@
+package de.dk.bininja.server.net.packet;
+
+/**
+ * Reads or sets the adaptive chunk sizing of the downloads.
+ * The server answers with the same packet, with the current settings and the success flag set.
+ */
+public class ChunkSizingPacket extends ServerAdminPacket {
+   private static final long serialVersionUID = -1208453296625730945L;
+
+   private final ChunkSizingOperation operation;
+   private boolean enabled;
+   private int minChunkSize;
+   private int maxChunkSize;
+   private boolean success;
+
+   /**
+    * Reads the current settings.
+    */
+   public ChunkSizingPacket() {
+      super(ServerAdminPacketType.CHUNK_SIZING);
+      this.operation = ChunkSizingOperation.READ;
+   }
+
+   /**
+    * Sets the adaptive chunk sizing.
+    *
+    * @param enabled If the downloads should tune their chunk size
+    * @param minChunkSize The minimum chunk size in bytes
+    * @param maxChunkSize The maximum chunk size in bytes
+    */
+   public ChunkSizingPacket(boolean enabled, int minChunkSize, int maxChunkSize) {
+      super(ServerAdminPacketType.CHUNK_SIZING);
+      this.operation = ChunkSizingOperation.SET;
+      this.enabled = enabled;
+      this.minChunkSize = minChunkSize;
+      this.maxChunkSize = maxChunkSize;
+   }
+
+   public ChunkSizingOperation getOperation() {
+      return operation;
+   }
+
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+   }
+
+   public int getMinChunkSize() {
+      return minChunkSize;
+   }
+
+   public void setMinChunkSize(int minChunkSize) {
+      this.minChunkSize = minChunkSize;
+   }
+
+   public int getMaxChunkSize() {
+      return maxChunkSize;
+   }
+
+   public void setMaxChunkSize(int maxChunkSize) {
+      this.maxChunkSize = maxChunkSize;
+   }
+
+   public boolean isSuccess() {
+      return success;
+   }
+
+   public void setSuccess(boolean success) {
+      this.success = success;
+   }
+
+   @Override
+   public String toString() {
+      return "ChunkSizingPacket { operation=" + operation
+             + ", enabled=" + enabled
+             + ", minChunkSize=" + minChunkSize
+             + ", maxChunkSize=" + maxChunkSize
+             + ", success=" + success + " }";
+   }
+
+   public static enum ChunkSizingOperation {
+      READ,
+      SET;
+   }
+}
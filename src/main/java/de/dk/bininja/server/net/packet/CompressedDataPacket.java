@@ -0,0 +1,29 @@
+package de.dk.bininja.server.net.packet;
+
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+
+/**
+ * A chunk of a download, that is compressed.
+ * All compressed chunks of a download form a single raw deflate stream,
+ * each chunk ends with a sync flush, so it can be inflated completely on arrival.
+ * Compressed chunks are only sent to clients, that asked for compression in their {@link ExtendedDownloadRequestPacket}
+ * and got an {@link ExtendedDownloadHeaderPacket} with the compressed flag set.
+ * Plain data packets may follow, if the content turns out to be incompressible.
+ */
+public class CompressedDataPacket extends DownloadDataPacket {
+   private static final long serialVersionUID = -4403957318000326218L;
+
+   private final int uncompressedLength;
+
+   public CompressedDataPacket(byte[] data, int uncompressedLength) {
+      super(data);
+      this.uncompressedLength = uncompressedLength;
+   }
+
+   /**
+    * @return The length of the chunk after it is inflated
+    */
+   public int getUncompressedLength() {
+      return uncompressedLength;
+   }
+}
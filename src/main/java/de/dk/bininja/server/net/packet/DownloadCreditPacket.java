@@ -0,0 +1,35 @@
+package de.dk.bininja.server.net.packet;
+
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+
+/**
+ * Grants the server credit to send more bytes of a download.
+ * A client enables flow control by sending this packet instead of a plain <code>DownloadReadyPacket</code>.
+ * The server then only reads from the origin and sends data while it holds credit.
+ * Every further packet adds its credit to the remaining credit of the download.
+ * Clients, that send a plain <code>DownloadReadyPacket</code>, get the data as fast as it arrives.
+ */
+public class DownloadCreditPacket extends DownloadReadyPacket {
+   private static final long serialVersionUID = 4172553384106215447L;
+
+   private final long credit;
+
+   /**
+    * @param credit The number of bytes the server may send additionally
+    */
+   public DownloadCreditPacket(long credit) {
+      if (credit < 0)
+         throw new IllegalArgumentException("Negative credit: " + credit);
+
+      this.credit = credit;
+   }
+
+   public long getCredit() {
+      return credit;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadCreditPacket { credit=" + credit + " }";
+   }
+}
@@ -0,0 +1,99 @@
+package de.dk.bininja.server.net.packet;
+
+import java.io.Serializable;
+
+/**
+ * The details of a running download.
+ */
+public class DownloadDetails implements Serializable {
+   private static final long serialVersionUID = -3349188216547207120L;
+
+   private final String address;
+   private final String url;
+   private final String state;
+   private final long length;
+   private final long sent;
+   private final int chunkSize;
+   private final long readRate;
+   private final long writeRate;
+
+   public DownloadDetails(String address,
+                          String url,
+                          String state,
+                          long length,
+                          long sent,
+                          int chunkSize,
+                          long readRate,
+                          long writeRate) {
+      this.address = address;
+      this.url = url;
+      this.state = state;
+      this.length = length;
+      this.sent = sent;
+      this.chunkSize = chunkSize;
+      this.readRate = readRate;
+      this.writeRate = writeRate;
+   }
+
+   /**
+    * @return The address of the client
+    */
+   public String getAddress() {
+      return address;
+   }
+
+   public String getUrl() {
+      return url;
+   }
+
+   public String getState() {
+      return state;
+   }
+
+   /**
+    * @return The length of the content or -1 if unknown
+    */
+   public long getLength() {
+      return length;
+   }
+
+   /**
+    * @return The number of bytes sent to the client
+    */
+   public long getSent() {
+      return sent;
+   }
+
+   /**
+    * @return The current chunk size in bytes
+    */
+   public int getChunkSize() {
+      return chunkSize;
+   }
+
+   /**
+    * @return The rate in bytes per second, at which the download reads from its origin, or -1 if not measured yet
+    */
+   public long getReadRate() {
+      return readRate;
+   }
+
+   /**
+    * @return The rate in bytes per second, at which the download writes to its client, or -1 if not measured yet
+    */
+   public long getWriteRate() {
+      return writeRate;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadDetails { address=" + address
+             + ", url=" + url
+             + ", state=" + state
+             + ", length=" + length
+             + ", sent=" + sent
+             + ", chunkSize=" + chunkSize
+             + ", readRate=" + readRate
+             + ", writeRate=" + writeRate + " }";
+   }
+}
@@ -0,0 +1,30 @@
+package de.dk.bininja.server.net.packet;
+
+import java.util.Collection;
+
+/**
+ * Requests the details of all running downloads.
+ * The server answers with the same packet, with the details set.
+ */
+public class DownloadDetailsPacket extends ServerAdminPacket {
+   private static final long serialVersionUID = 7715092347764031838L;
+
+   private Collection<DownloadDetails> details;
+
+   public DownloadDetailsPacket() {
+      super(ServerAdminPacketType.DOWNLOAD_DETAILS);
+   }
+
+   public Collection<DownloadDetails> getDetails() {
+      return details;
+   }
+
+   public void setDetails(Collection<DownloadDetails> details) {
+      this.details = details;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadDetailsPacket { details=" + details + " }";
+   }
+}
@@ -0,0 +1,112 @@
+package de.dk.bininja.server.net.packet;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Inspects or changes the download queue of the server.
+ * The server answers with the same packet, with the queue, the limits and the success flag set.
+ */
+public class DownloadQueuePacket extends ServerAdminPacket {
+   private static final long serialVersionUID = 1879422093660437105L;
+
+   private final QueueOperation operation;
+   private long id;
+   private int position;
+   private int maxConcurrent;
+   private int running;
+   private Collection<QueueEntry> queue;
+   private boolean success;
+
+   private DownloadQueuePacket(QueueOperation operation) {
+      super(ServerAdminPacketType.DOWNLOAD_QUEUE);
+      this.operation = Objects.requireNonNull(operation);
+   }
+
+   /**
+    * Lists the queue.
+    */
+   public static DownloadQueuePacket list() {
+      return new DownloadQueuePacket(QueueOperation.LIST);
+   }
+
+   /**
+    * Moves the queued download with the id to the position, counted from 1.
+    */
+   public static DownloadQueuePacket move(long id, int position) {
+      DownloadQueuePacket packet = new DownloadQueuePacket(QueueOperation.MOVE);
+      packet.id = id;
+      packet.position = position;
+      return packet;
+   }
+
+   /**
+    * Sets the maximum number of concurrent downloads, 0 for unlimited.
+    */
+   public static DownloadQueuePacket limit(int maxConcurrent) {
+      DownloadQueuePacket packet = new DownloadQueuePacket(QueueOperation.SET_MAX_CONCURRENT);
+      packet.maxConcurrent = maxConcurrent;
+      return packet;
+   }
+
+   public QueueOperation getOperation() {
+      return operation;
+   }
+
+   public long getId() {
+      return id;
+   }
+
+   public int getPosition() {
+      return position;
+   }
+
+   public int getMaxConcurrent() {
+      return maxConcurrent;
+   }
+
+   public void setMaxConcurrent(int maxConcurrent) {
+      this.maxConcurrent = maxConcurrent;
+   }
+
+   public int getRunning() {
+      return running;
+   }
+
+   public void setRunning(int running) {
+      this.running = running;
+   }
+
+   public Collection<QueueEntry> getQueue() {
+      return queue;
+   }
+
+   public void setQueue(Collection<QueueEntry> queue) {
+      this.queue = queue;
+   }
+
+   public boolean isSuccess() {
+      return success;
+   }
+
+   public void setSuccess(boolean success) {
+      this.success = success;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadQueuePacket { operation=" + operation
+             + ", id=" + id
+             + ", position=" + position
+             + ", maxConcurrent=" + maxConcurrent
+             + ", running=" + running
+             + ", queue=" + queue
+             + ", success=" + success + " }";
+   }
+
+   public static enum QueueOperation {
+      LIST,
+      MOVE,
+      SET_MAX_CONCURRENT;
+   }
+}
@@ -0,0 +1,41 @@
+package de.dk.bininja.server.net.packet;
+
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+
+/**
+ * Sent instead of the header, while a download waits in the queue of the server.
+ * It is sent again whenever the position of the download may have changed.
+ * The real header follows, once the download is admitted.
+ * Only clients, that asked for queue updates in their {@link ExtendedDownloadRequestPacket}, get this packet.
+ */
+public class DownloadQueuedPacket extends DownloadHeaderPacket {
+   private static final long serialVersionUID = -6112046738530902874L;
+
+   private final int position;
+   private final long etaMillis;
+
+   public DownloadQueuedPacket(int position, long etaMillis) {
+      super(-1, null);
+      this.position = position;
+      this.etaMillis = etaMillis;
+   }
+
+   /**
+    * @return The position in the queue, counted from 1
+    */
+   public int getPosition() {
+      return position;
+   }
+
+   /**
+    * @return The estimated time until the download starts or -1 if unknown
+    */
+   public long getEtaMillis() {
+      return etaMillis;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadQueuedPacket { position=" + position + ", etaMillis=" + etaMillis + " }";
+   }
+}
@@ -0,0 +1,58 @@
+package de.dk.bininja.server.net.packet;
+
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+
+/**
+ * The answer to an {@link ExtendedDownloadRequestPacket}.
+ */
+public class ExtendedDownloadHeaderPacket extends DownloadHeaderPacket {
+   private static final long serialVersionUID = 1467092835519372610L;
+
+   private final long position;
+   private final String validator;
+   private boolean compressed;
+
+   /**
+    * @param length The total length of the content
+    * @param filename The filename of the content
+    * @param position The position, the transferred data starts at
+    * @param validator The validator, to resume the download with later
+    */
+   public ExtendedDownloadHeaderPacket(long length, String filename, long position, String validator) {
+      super(length, filename);
+      this.position = position;
+      this.validator = validator;
+   }
+
+   /**
+    * @return The position, the transferred data starts at.
+    * If it is 0 although an offset was requested, the download could not be resumed.
+    */
+   public long getPosition() {
+      return position;
+   }
+
+   public String getValidator() {
+      return validator;
+   }
+
+   /**
+    * @return If the data of the download is sent in {@link CompressedDataPacket}s
+    */
+   public boolean isCompressed() {
+      return compressed;
+   }
+
+   public void setCompressed(boolean compressed) {
+      this.compressed = compressed;
+   }
+
+   @Override
+   public String toString() {
+      return "ExtendedDownloadHeaderPacket { length=" + getLength()
+             + ", filename=" + getFilename()
+             + ", position=" + position
+             + ", validator=" + validator
+             + ", compressed=" + compressed + " }";
+   }
+}
@@ -0,0 +1,105 @@
+package de.dk.bininja.server.net.packet;
+
+import java.net.URL;
+
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+
+/**
+ * A download request with options, that are specific to this server.
+ * The server answers it with an {@link ExtendedDownloadHeaderPacket}.
+ * Clients, that send a plain <code>DownloadRequestPacket</code>, get a plain header.
+ */
+public class ExtendedDownloadRequestPacket extends DownloadRequestPacket {
+   private static final long serialVersionUID = -5536017921183740042L;
+
+   private long offset;
+   private String validator;
+   private int priority;
+   private boolean queueUpdates;
+   private boolean compression;
+   private int weight = 1;
+
+   public ExtendedDownloadRequestPacket(URL url) {
+      super(url);
+   }
+
+   /**
+    * @return The position in bytes, the download should resume at
+    */
+   public long getOffset() {
+      return offset;
+   }
+
+   public void setOffset(long offset) {
+      this.offset = offset;
+   }
+
+   /**
+    * @return The validator of the content, the client already has parts of.
+    * The download is only resumed if the content still has this validator.
+    */
+   public String getValidator() {
+      return validator;
+   }
+
+   public void setValidator(String validator) {
+      this.validator = validator;
+   }
+
+   /**
+    * @return The priority of the download, if it has to wait in the queue of the server.
+    * Downloads with a higher priority are started first. Defaults to 0.
+    */
+   public int getPriority() {
+      return priority;
+   }
+
+   public void setPriority(int priority) {
+      this.priority = priority;
+   }
+
+   /**
+    * @return If the client wants to get {@link DownloadQueuedPacket}s while the download waits in the queue
+    */
+   public boolean isQueueUpdates() {
+      return queueUpdates;
+   }
+
+   public void setQueueUpdates(boolean queueUpdates) {
+      this.queueUpdates = queueUpdates;
+   }
+
+   /**
+    * @return If the client accepts {@link CompressedDataPacket}s
+    */
+   public boolean isCompression() {
+      return compression;
+   }
+
+   public void setCompression(boolean compression) {
+      this.compression = compression;
+   }
+
+   /**
+    * @return The share of the connection, this download gets relative to the other downloads of the connection.
+    * Defaults to 1.
+    */
+   public int getWeight() {
+      return weight;
+   }
+
+   public void setWeight(int weight) {
+      this.weight = weight;
+   }
+
+   @Override
+   public String toString() {
+      return "ExtendedDownloadRequestPacket { url=" + getUrl()
+             + ", offset=" + offset
+             + ", validator=" + validator
+             + ", priority=" + priority
+             + ", queueUpdates=" + queueUpdates
+             + ", compression=" + compression
+             + ", weight=" + weight + " }";
+   }
+}
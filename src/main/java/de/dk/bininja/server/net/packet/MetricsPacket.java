@@ -0,0 +1,46 @@
+package de.dk.bininja.server.net.packet;
+
+import java.util.Map;
+
+/**
+ * Reads a snapshot of the metrics of the server.
+ * The server answers with the same packet, with the metrics set.
+ */
+public class MetricsPacket extends ServerAdminPacket {
+   private static final long serialVersionUID = -3581120933215847209L;
+
+   private final String prefix;
+   private Map<String, Long> metrics;
+
+   /**
+    * Reads all metrics.
+    */
+   public MetricsPacket() {
+      this(null);
+   }
+
+   /**
+    * @param prefix Only the metrics, whose names start with this prefix are read
+    */
+   public MetricsPacket(String prefix) {
+      super(ServerAdminPacketType.METRICS);
+      this.prefix = prefix;
+   }
+
+   public String getPrefix() {
+      return prefix;
+   }
+
+   public Map<String, Long> getMetrics() {
+      return metrics;
+   }
+
+   public void setMetrics(Map<String, Long> metrics) {
+      this.metrics = metrics;
+   }
+
+   @Override
+   public String toString() {
+      return "MetricsPacket { prefix=" + prefix + ", metrics=" + metrics + " }";
+   }
+}
@@ -0,0 +1,66 @@
+package de.dk.bininja.server.net.packet;
+
+import java.io.Serializable;
+
+/**
+ * A download waiting in the queue of the server.
+ */
+public class QueueEntry implements Serializable {
+   private static final long serialVersionUID = 5630992170431872647L;
+
+   private final long id;
+   private final int position;
+   private final String address;
+   private final String url;
+   private final int priority;
+   private final long waitingMillis;
+
+   public QueueEntry(long id, int position, String address, String url, int priority, long waitingMillis) {
+      this.id = id;
+      this.position = position;
+      this.address = address;
+      this.url = url;
+      this.priority = priority;
+      this.waitingMillis = waitingMillis;
+   }
+
+   /**
+    * @return The id to move the entry with
+    */
+   public long getId() {
+      return id;
+   }
+
+   /**
+    * @return The position in the queue, counted from 1
+    */
+   public int getPosition() {
+      return position;
+   }
+
+   public String getAddress() {
+      return address;
+   }
+
+   public String getUrl() {
+      return url;
+   }
+
+   public int getPriority() {
+      return priority;
+   }
+
+   public long getWaitingMillis() {
+      return waitingMillis;
+   }
+
+   @Override
+   public String toString() {
+      return "QueueEntry { id=" + id
+             + ", position=" + position
+             + ", address=" + address
+             + ", url=" + url
+             + ", priority=" + priority
+             + ", waitingMillis=" + waitingMillis + " }";
+   }
+}
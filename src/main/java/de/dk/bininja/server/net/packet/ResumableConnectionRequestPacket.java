@@ -0,0 +1,77 @@
+package de.dk.bininja.server.net.packet;
+
+import de.dk.bininja.net.ConnectionType;
+import de.dk.bininja.net.packet.ConnectionRequestPacket;
+
+/**
+ * The initial request of a secure connection with the extensions of this server.
+ * <p>
+ * With a ticket the client asks to resume a previous session, the server answers with a {@link ResumptionAnswerPacket}.
+ * If the ticket is accepted, both sides derive the session key from the previous one,
+ * otherwise the session key is arranged as usual.
+ * If a new ticket is wanted, the server sends a {@link SessionTicketPacket} after the session is secured,
+ * right before the answer to the connection request.
+ * <p>
+ * The client can choose the coder of the session, e.g. {@link de.dk.bininja.server.net.GcmCoder#NAME}.
+ * If the server does not support the coder, the connection is refused.
+ */
+public class ResumableConnectionRequestPacket extends ConnectionRequestPacket {
+   private static final long serialVersionUID = 2755204167830951047L;
+
+   private byte[] ticket;
+   private byte[] nonce;
+   private boolean ticketWanted = true;
+   private String coder;
+
+   public ResumableConnectionRequestPacket(ConnectionType type) {
+      super(type, true);
+   }
+
+   /**
+    * @param ticket The ticket of the session to resume
+    * @param nonce A random nonce of {@link de.dk.bininja.server.net.SessionCache#NONCE_LENGTH} bytes
+    */
+   public ResumableConnectionRequestPacket(ConnectionType type, byte[] ticket, byte[] nonce) {
+      this(type);
+      this.ticket = ticket;
+      this.nonce = nonce;
+   }
+
+   public byte[] getTicket() {
+      return ticket;
+   }
+
+   public byte[] getNonce() {
+      return nonce;
+   }
+
+   /**
+    * @return If the server should issue a ticket for the new session. Defaults to true.
+    */
+   public boolean isTicketWanted() {
+      return ticketWanted;
+   }
+
+   public void setTicketWanted(boolean ticketWanted) {
+      this.ticketWanted = ticketWanted;
+   }
+
+   /**
+    * @return The name of the coder, the session should be secured with
+    * or <code>null</code> for the default coder
+    */
+   public String getCoder() {
+      return coder;
+   }
+
+   public void setCoder(String coder) {
+      this.coder = coder;
+   }
+
+   @Override
+   public String toString() {
+      return "ResumableConnectionRequestPacket { resume=" + (ticket != null)
+             + ", ticketWanted=" + ticketWanted
+             + ", coder=" + coder + " }";
+   }
+}
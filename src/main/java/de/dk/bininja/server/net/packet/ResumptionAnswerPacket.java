@@ -0,0 +1,34 @@
+package de.dk.bininja.server.net.packet;
+
+import java.io.Serializable;
+
+/**
+ * The answer to a {@link ResumableConnectionRequestPacket} with a ticket.
+ * It is sent before the session is secured.
+ */
+public class ResumptionAnswerPacket implements Serializable {
+   private static final long serialVersionUID = -7060316318530255218L;
+
+   private final byte[] nonce;
+
+   /**
+    * @param nonce The nonce of the server, the key is derived with or <code>null</code>,
+    * if the session can not be resumed
+    */
+   public ResumptionAnswerPacket(byte[] nonce) {
+      this.nonce = nonce;
+   }
+
+   public boolean isResumed() {
+      return nonce != null;
+   }
+
+   public byte[] getNonce() {
+      return nonce;
+   }
+
+   @Override
+   public String toString() {
+      return "ResumptionAnswerPacket { resumed=" + isResumed() + " }";
+   }
+}
@@ -0,0 +1,32 @@
+package de.dk.bininja.server.net.packet;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Base class of the admin packets, that are specific to this server.
+ * They are part of the server artifact, so admin clients depending on it can use them.
+ */
+public abstract class ServerAdminPacket implements Serializable {
+   private static final long serialVersionUID = 4391263052813920861L;
+
+   private final ServerAdminPacketType type;
+
+   protected ServerAdminPacket(ServerAdminPacketType type) {
+      this.type = Objects.requireNonNull(type);
+   }
+
+   public ServerAdminPacketType getType() {
+      return type;
+   }
+
+   public static enum ServerAdminPacketType {
+      STATISTICS,
+      CACHE,
+      CHUNK_SIZING,
+      DOWNLOAD_DETAILS,
+      BANDWIDTH_LIMIT,
+      DOWNLOAD_QUEUE,
+      METRICS;
+   }
+}
@@ -0,0 +1,35 @@
+package de.dk.bininja.server.net.packet;
+
+import java.io.Serializable;
+
+/**
+ * A ticket to resume the session of a secure connection on the next connection.
+ * It is only sent over the secured connection.
+ */
+public class SessionTicketPacket implements Serializable {
+   private static final long serialVersionUID = 4620977254197802431L;
+
+   private final byte[] ticket;
+   private final long ttlMillis;
+
+   public SessionTicketPacket(byte[] ticket, long ttlMillis) {
+      this.ticket = ticket;
+      this.ttlMillis = ttlMillis;
+   }
+
+   public byte[] getTicket() {
+      return ticket;
+   }
+
+   /**
+    * @return The time in milliseconds, the ticket is valid for
+    */
+   public long getTtlMillis() {
+      return ttlMillis;
+   }
+
+   @Override
+   public String toString() {
+      return "SessionTicketPacket { ttlMillis=" + ttlMillis + " }";
+   }
+}
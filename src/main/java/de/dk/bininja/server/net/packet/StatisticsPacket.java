@@ -0,0 +1,47 @@
+package de.dk.bininja.server.net.packet;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Requests the statistics of a subsystem of the server.
+ * The server answers with the same packet, with the statistics set.
+ */
+public class StatisticsPacket extends ServerAdminPacket {
+   private static final long serialVersionUID = -2817410265337349021L;
+
+   private final StatisticsType statisticsType;
+   private Map<String, Long> statistics;
+
+   public StatisticsPacket(StatisticsType statisticsType) {
+      super(ServerAdminPacketType.STATISTICS);
+      this.statisticsType = Objects.requireNonNull(statisticsType);
+   }
+
+   public StatisticsType getStatisticsType() {
+      return statisticsType;
+   }
+
+   public Map<String, Long> getStatistics() {
+      return statistics;
+   }
+
+   public void setStatistics(Map<String, Long> statistics) {
+      this.statistics = statistics;
+   }
+
+   @Override
+   public String toString() {
+      return "StatisticsPacket { statisticsType=" + statisticsType + ", statistics=" + statistics + " }";
+   }
+
+   public static enum StatisticsType {
+      BUFFER_POOL,
+      CACHE,
+      UPSTREAM,
+      BANDWIDTH,
+      SCHEDULER,
+      SESSIONS,
+      LISTENERS;
+   }
+}
@@ -7,7 +7,55 @@ import de.dk.opt.ExpectedOption;
 import de.dk.opt.OptionBuilder;
 
 public enum Option {
-   PORT('p', "port", "The port to look for connections.", true, false);
+   PORT('p', "port", "The port to look for connections.", true, false),
+   SELECTOR('s', "selector", "Accept connections with a non-blocking selector instead of a blocking accept loop."),
+   EVENT_LOOPS('e', "event-loops", "The number of event loop threads of the selector. "
+                                   + "Defaults to the number of available processors.", true),
+   EXECUTION('x', "execution", "How handshakes and downloads are executed: "
+                               + "thread (a thread per task), pool (a bounded thread pool) "
+                               + "or virtual (a virtual thread per task). Defaults to thread.", true),
+   POOL_SIZE('t', "pool-size", "The maximum number of threads of each pool in pool mode. "
+                               + "The writers of the connections are not pooled.", true),
+   BUFFER_POOL_SIZE('b', "buffer-pool-size", "The maximum number of pooled buffers per buffer size.", true),
+   CACHE('c', "cache-dir", "Caches downloaded content in the given directory.", true),
+   CACHE_SIZE('l', "cache-limit", "The maximum size of the cache in megabytes. Defaults to 1024.", true),
+   SEGMENTS('g', "segments", "Fetches downloads from origins, that support range requests, "
+                             + "in up to this many parallel segments, but not more than the upstream connections. "
+                             + "Defaults to 1.", true),
+   MIN_SEGMENT_SIZE('m', "min-segment-size", "The minimum size of a segment in kilobytes. Defaults to 4096.", true),
+   UPSTREAM_CONNECTIONS('u', "upstream-connections", "The maximum number of concurrent requests per origin host. "
+                                                     + "Unlimited by default.", true),
+   UPSTREAM_IDLE('i', "upstream-idle", "The maximum number of idle keep-alive connections per origin host. "
+                                       + "Applies to the whole process. Defaults to 5.", true),
+   COALESCE('k', "coalesce", "Shares one origin fetch between concurrent downloads of the same url, "
+                             + "that are not served by the cache. The content is spooled to a temporary file."),
+   ADAPTIVE_CHUNKS('a', "adaptive-chunks", "Tunes the chunk size of every download to its measured throughput "
+                                           + "instead of using the buffer size for all downloads."),
+   GLOBAL_LIMIT('r', "global-limit", "Limits the bandwidth of all downloads together to this many kilobytes per second.", true),
+   ADDRESS_LIMIT('n', "address-limit", "Limits the bandwidth of all downloads to one remote address "
+                                       + "to this many kilobytes per second.", true),
+   DOWNLOAD_LIMIT('d', "download-limit", "Limits the bandwidth of every download to this many kilobytes per second.", true),
+   MAX_DOWNLOADS('q', "max-downloads", "The maximum number of concurrent downloads. "
+                                       + "Further downloads wait in a queue. Unlimited by default.", true),
+   METRICS_PORT('o', "metrics-port", "Exports the metrics in the Prometheus text format "
+                                     + "at http://localhost:<port>/metrics.", true),
+   SESSION_CACHE('j', "session-cache", "The maximum number of secure sessions, that clients can resume "
+                                       + "without a new key arrangement. 0 disables resumption. Defaults to 10000.", true),
+   SESSION_TTL('y', "session-ttl", "The time in seconds, a secure session can be resumed. Defaults to 3600.", true),
+   COMPRESSION('z', "compression", "Compresses the downloads of clients, that ask for it, with this deflate level (1-9). "
+                                   + "Content, that is already compressed, is sent as is.", true),
+   WRITE_BATCH('w', "write-batch", "Coalesces small data packets of a download up to this many bytes. "
+                                   + "0 disables coalescing. Defaults to 16384.", true),
+   FLUSH_DELAY('f', "flush-delay", "The time in microseconds, a small data packet waits at most to be coalesced "
+                                   + "with the following ones. Defaults to 1000.", true),
+   HANDSHAKE_TIMEOUT('H', "handshake-timeout", "The time in seconds, a client has to establish its connection in. "
+                                               + "0 disables the deadline. Defaults to 30.", true),
+   IDLE_TIMEOUT('I', "idle-timeout", "Closes connections, that were idle for this many seconds. "
+                                     + "0 keeps idle connections. Defaults to 900.", true),
+   STALL_TIMEOUT('S', "stall-timeout", "Cancels downloads, that made no progress for this many seconds, "
+                                       + "unless they wait for the client. 0 disables it. Defaults to 120.", true),
+   LISTENERS('L', "listeners", "Opens this many listeners on the port with SO_REUSEPORT, each with its own acceptor, "
+                               + "so the kernel spreads new connections over them. Defaults to 1.", true);
 
    private final char key;
    private final String longKey;
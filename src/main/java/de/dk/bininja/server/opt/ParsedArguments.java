@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import de.dk.bininja.InvalidArgumentException;
 import de.dk.bininja.opt.ParsedSecurityArguments;
+import de.dk.bininja.server.net.ExecutionMode;
 import de.dk.opt.ArgumentModel;
 import de.dk.opt.ArgumentParser;
 import de.dk.opt.ArgumentParserBuilder;
@@ -12,6 +13,33 @@ import de.dk.opt.ex.ArgumentParseException;
 public class ParsedArguments {
    private ParsedSecurityArguments securityArgs;
    private int port = -1;
+   private boolean selector;
+   private int eventLoops = -1;
+   private ExecutionMode executionMode = ExecutionMode.THREAD;
+   private int poolSize = -1;
+   private int bufferPoolSize = -1;
+   private String cacheDirectory;
+   private long cacheSize = -1;
+   private int segments = -1;
+   private long minSegmentSize = -1;
+   private int upstreamConnections = -1;
+   private int upstreamIdle = -1;
+   private boolean coalesce;
+   private boolean adaptiveChunks;
+   private long globalLimit = -1;
+   private long addressLimit = -1;
+   private long downloadLimit = -1;
+   private int maxDownloads = -1;
+   private int metricsPort = -1;
+   private int sessionCache = -1;
+   private long sessionTtl = -1;
+   private int compressionLevel = -1;
+   private int writeBatch = -1;
+   private long flushDelay = -1;
+   private long handshakeTimeout = -1;
+   private long idleTimeout = -1;
+   private long stallTimeout = -1;
+   private int listeners = -1;
 
    public ParsedArguments() {
 
@@ -20,6 +48,33 @@ public class ParsedArguments {
    public static ParsedArguments parse(String... args) throws ArgumentParseException {
       ArgumentParserBuilder builder = ArgumentParserBuilder.begin();
       Option.PORT.build(builder);
+      Option.SELECTOR.build(builder);
+      Option.EVENT_LOOPS.build(builder);
+      Option.EXECUTION.build(builder);
+      Option.POOL_SIZE.build(builder);
+      Option.BUFFER_POOL_SIZE.build(builder);
+      Option.CACHE.build(builder);
+      Option.CACHE_SIZE.build(builder);
+      Option.SEGMENTS.build(builder);
+      Option.MIN_SEGMENT_SIZE.build(builder);
+      Option.UPSTREAM_CONNECTIONS.build(builder);
+      Option.UPSTREAM_IDLE.build(builder);
+      Option.COALESCE.build(builder);
+      Option.ADAPTIVE_CHUNKS.build(builder);
+      Option.GLOBAL_LIMIT.build(builder);
+      Option.ADDRESS_LIMIT.build(builder);
+      Option.DOWNLOAD_LIMIT.build(builder);
+      Option.MAX_DOWNLOADS.build(builder);
+      Option.METRICS_PORT.build(builder);
+      Option.SESSION_CACHE.build(builder);
+      Option.SESSION_TTL.build(builder);
+      Option.COMPRESSION.build(builder);
+      Option.WRITE_BATCH.build(builder);
+      Option.FLUSH_DELAY.build(builder);
+      Option.HANDSHAKE_TIMEOUT.build(builder);
+      Option.IDLE_TIMEOUT.build(builder);
+      Option.STALL_TIMEOUT.build(builder);
+      Option.LISTENERS.build(builder);
       ParsedSecurityArguments.build(builder);
 
       ArgumentParser parser = builder.buildAndGet();
@@ -41,6 +96,88 @@ public class ParsedArguments {
          parsedArgs.setPort(port);
       }
 
+      parsedArgs.setSelector(result.isOptionPresent(Option.SELECTOR.getKey()));
+      if (result.isOptionPresent(Option.EVENT_LOOPS.getKey()))
+         parsedArgs.setEventLoops(parseInt(result, Option.EVENT_LOOPS, "number of event loops"));
+
+      if (result.isOptionPresent(Option.EXECUTION.getKey())) {
+         String modeString = result.getOptionValue(Option.EXECUTION.getKey());
+         try {
+            parsedArgs.setExecutionMode(ExecutionMode.parse(modeString));
+         } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException("Invalid execution mode: " + modeString, e);
+         }
+      }
+
+      if (result.isOptionPresent(Option.POOL_SIZE.getKey()))
+         parsedArgs.setPoolSize(parseInt(result, Option.POOL_SIZE, "pool size"));
+
+      if (result.isOptionPresent(Option.BUFFER_POOL_SIZE.getKey()))
+         parsedArgs.setBufferPoolSize(parseInt(result, Option.BUFFER_POOL_SIZE, "buffer pool size"));
+
+      if (result.isOptionPresent(Option.CACHE.getKey()))
+         parsedArgs.setCacheDirectory(result.getOptionValue(Option.CACHE.getKey()));
+
+      if (result.isOptionPresent(Option.CACHE_SIZE.getKey()))
+         parsedArgs.setCacheSize(parseInt(result, Option.CACHE_SIZE, "cache limit") * 1024L * 1024L);
+
+      if (result.isOptionPresent(Option.SEGMENTS.getKey()))
+         parsedArgs.setSegments(parseInt(result, Option.SEGMENTS, "number of segments"));
+
+      if (result.isOptionPresent(Option.MIN_SEGMENT_SIZE.getKey()))
+         parsedArgs.setMinSegmentSize(parseInt(result, Option.MIN_SEGMENT_SIZE, "minimum segment size") * 1024L);
+
+      if (result.isOptionPresent(Option.UPSTREAM_CONNECTIONS.getKey()))
+         parsedArgs.setUpstreamConnections(parseInt(result, Option.UPSTREAM_CONNECTIONS, "number of upstream connections"));
+
+      if (result.isOptionPresent(Option.UPSTREAM_IDLE.getKey()))
+         parsedArgs.setUpstreamIdle(parseInt(result, Option.UPSTREAM_IDLE, "number of idle upstream connections"));
+
+      parsedArgs.setCoalesce(result.isOptionPresent(Option.COALESCE.getKey()));
+      parsedArgs.setAdaptiveChunks(result.isOptionPresent(Option.ADAPTIVE_CHUNKS.getKey()));
+
+      if (result.isOptionPresent(Option.GLOBAL_LIMIT.getKey()))
+         parsedArgs.setGlobalLimit(parseInt(result, Option.GLOBAL_LIMIT, "global limit") * 1024L);
+
+      if (result.isOptionPresent(Option.ADDRESS_LIMIT.getKey()))
+         parsedArgs.setAddressLimit(parseInt(result, Option.ADDRESS_LIMIT, "address limit") * 1024L);
+
+      if (result.isOptionPresent(Option.DOWNLOAD_LIMIT.getKey()))
+         parsedArgs.setDownloadLimit(parseInt(result, Option.DOWNLOAD_LIMIT, "download limit") * 1024L);
+
+      if (result.isOptionPresent(Option.MAX_DOWNLOADS.getKey()))
+         parsedArgs.setMaxDownloads(parseInt(result, Option.MAX_DOWNLOADS, "maximum number of downloads"));
+
+      if (result.isOptionPresent(Option.METRICS_PORT.getKey()))
+         parsedArgs.setMetricsPort(parseInt(result, Option.METRICS_PORT, "metrics port"));
+
+      if (result.isOptionPresent(Option.SESSION_CACHE.getKey()))
+         parsedArgs.setSessionCache(parseInt(result, Option.SESSION_CACHE, "session cache size"));
+
+      if (result.isOptionPresent(Option.SESSION_TTL.getKey()))
+         parsedArgs.setSessionTtl(parseInt(result, Option.SESSION_TTL, "session lifetime") * 1000L);
+
+      if (result.isOptionPresent(Option.COMPRESSION.getKey()))
+         parsedArgs.setCompressionLevel(parseInt(result, Option.COMPRESSION, "compression level"));
+
+      if (result.isOptionPresent(Option.WRITE_BATCH.getKey()))
+         parsedArgs.setWriteBatch(parseInt(result, Option.WRITE_BATCH, "write batch size"));
+
+      if (result.isOptionPresent(Option.FLUSH_DELAY.getKey()))
+         parsedArgs.setFlushDelay(parseInt(result, Option.FLUSH_DELAY, "flush delay"));
+
+      if (result.isOptionPresent(Option.HANDSHAKE_TIMEOUT.getKey()))
+         parsedArgs.setHandshakeTimeout(parseInt(result, Option.HANDSHAKE_TIMEOUT, "handshake timeout") * 1000L);
+
+      if (result.isOptionPresent(Option.IDLE_TIMEOUT.getKey()))
+         parsedArgs.setIdleTimeout(parseInt(result, Option.IDLE_TIMEOUT, "idle timeout") * 1000L);
+
+      if (result.isOptionPresent(Option.STALL_TIMEOUT.getKey()))
+         parsedArgs.setStallTimeout(parseInt(result, Option.STALL_TIMEOUT, "stall timeout") * 1000L);
+
+      if (result.isOptionPresent(Option.LISTENERS.getKey()))
+         parsedArgs.setListeners(parseInt(result, Option.LISTENERS, "number of listeners"));
+
       if (result.isCommandPresent(ParsedSecurityArguments.NAME)) {
          ArgumentModel securityResult = result.getCommandValue(ParsedSecurityArguments.NAME);
          try {
@@ -53,6 +190,15 @@ public class ParsedArguments {
       return parsedArgs;
    }
 
+   private static int parseInt(ArgumentModel result, Option option, String name) throws InvalidArgumentException {
+      String value = result.getOptionValue(option.getKey());
+      try {
+         return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+         throw new InvalidArgumentException("Invalid " + name + ": " + value, e);
+      }
+   }
+
    public ParsedSecurityArguments getSecurityArgs() {
       return securityArgs;
    }
@@ -73,4 +219,347 @@ public class ParsedArguments {
       this.port = port;
    }
 
+   public boolean isSelector() {
+      return selector;
+   }
+
+   public void setSelector(boolean selector) {
+      this.selector = selector;
+   }
+
+   public boolean isEventLoopsSet() {
+      return eventLoops != -1;
+   }
+
+   public int getEventLoops() {
+      return eventLoops;
+   }
+
+   public void setEventLoops(int eventLoops) {
+      this.eventLoops = eventLoops;
+   }
+
+   public ExecutionMode getExecutionMode() {
+      return executionMode;
+   }
+
+   public void setExecutionMode(ExecutionMode executionMode) {
+      this.executionMode = executionMode;
+   }
+
+   public boolean isPoolSizeSet() {
+      return poolSize != -1;
+   }
+
+   public int getPoolSize() {
+      return poolSize;
+   }
+
+   public void setPoolSize(int poolSize) {
+      this.poolSize = poolSize;
+   }
+
+   public boolean isBufferPoolSizeSet() {
+      return bufferPoolSize != -1;
+   }
+
+   public int getBufferPoolSize() {
+      return bufferPoolSize;
+   }
+
+   public void setBufferPoolSize(int bufferPoolSize) {
+      this.bufferPoolSize = bufferPoolSize;
+   }
+
+   public String getCacheDirectory() {
+      return cacheDirectory;
+   }
+
+   public void setCacheDirectory(String cacheDirectory) {
+      this.cacheDirectory = cacheDirectory;
+   }
+
+   public boolean isCacheSizeSet() {
+      return cacheSize != -1;
+   }
+
+   /**
+    * @return The maximum size of the cache in bytes
+    */
+   public long getCacheSize() {
+      return cacheSize;
+   }
+
+   public void setCacheSize(long cacheSize) {
+      this.cacheSize = cacheSize;
+   }
+
+   public boolean isSegmentsSet() {
+      return segments != -1;
+   }
+
+   public int getSegments() {
+      return segments;
+   }
+
+   public void setSegments(int segments) {
+      this.segments = segments;
+   }
+
+   public boolean isMinSegmentSizeSet() {
+      return minSegmentSize != -1;
+   }
+
+   /**
+    * @return The minimum segment size in bytes
+    */
+   public long getMinSegmentSize() {
+      return minSegmentSize;
+   }
+
+   public void setMinSegmentSize(long minSegmentSize) {
+      this.minSegmentSize = minSegmentSize;
+   }
+
+   public boolean isUpstreamConnectionsSet() {
+      return upstreamConnections != -1;
+   }
+
+   /**
+    * @return The maximum number of concurrent requests per origin host
+    */
+   public int getUpstreamConnections() {
+      return upstreamConnections;
+   }
+
+   public void setUpstreamConnections(int upstreamConnections) {
+      this.upstreamConnections = upstreamConnections;
+   }
+
+   public boolean isUpstreamIdleSet() {
+      return upstreamIdle != -1;
+   }
+
+   /**
+    * @return The maximum number of idle keep-alive connections per origin host
+    */
+   public int getUpstreamIdle() {
+      return upstreamIdle;
+   }
+
+   public void setUpstreamIdle(int upstreamIdle) {
+      this.upstreamIdle = upstreamIdle;
+   }
+
+   public boolean isCoalesce() {
+      return coalesce;
+   }
+
+   public void setCoalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+   }
+
+   public boolean isAdaptiveChunks() {
+      return adaptiveChunks;
+   }
+
+   public void setAdaptiveChunks(boolean adaptiveChunks) {
+      this.adaptiveChunks = adaptiveChunks;
+   }
+
+   public boolean isGlobalLimitSet() {
+      return globalLimit != -1;
+   }
+
+   /**
+    * @return The bandwidth limit of all downloads in bytes per second
+    */
+   public long getGlobalLimit() {
+      return globalLimit;
+   }
+
+   public void setGlobalLimit(long globalLimit) {
+      this.globalLimit = globalLimit;
+   }
+
+   public boolean isAddressLimitSet() {
+      return addressLimit != -1;
+   }
+
+   /**
+    * @return The bandwidth limit of the downloads to one remote address in bytes per second
+    */
+   public long getAddressLimit() {
+      return addressLimit;
+   }
+
+   public void setAddressLimit(long addressLimit) {
+      this.addressLimit = addressLimit;
+   }
+
+   public boolean isDownloadLimitSet() {
+      return downloadLimit != -1;
+   }
+
+   /**
+    * @return The bandwidth limit of a single download in bytes per second
+    */
+   public long getDownloadLimit() {
+      return downloadLimit;
+   }
+
+   public void setDownloadLimit(long downloadLimit) {
+      this.downloadLimit = downloadLimit;
+   }
+
+   public boolean isMaxDownloadsSet() {
+      return maxDownloads != -1;
+   }
+
+   public int getMaxDownloads() {
+      return maxDownloads;
+   }
+
+   public void setMaxDownloads(int maxDownloads) {
+      this.maxDownloads = maxDownloads;
+   }
+
+   public boolean isMetricsPortSet() {
+      return metricsPort != -1;
+   }
+
+   public int getMetricsPort() {
+      return metricsPort;
+   }
+
+   public void setMetricsPort(int metricsPort) {
+      this.metricsPort = metricsPort;
+   }
+
+   public boolean isSessionCacheSet() {
+      return sessionCache != -1;
+   }
+
+   /**
+    * @return The maximum number of resumable sessions
+    */
+   public int getSessionCache() {
+      return sessionCache;
+   }
+
+   public void setSessionCache(int sessionCache) {
+      this.sessionCache = sessionCache;
+   }
+
+   public boolean isSessionTtlSet() {
+      return sessionTtl != -1;
+   }
+
+   /**
+    * @return The lifetime of resumable sessions in milliseconds
+    */
+   public long getSessionTtl() {
+      return sessionTtl;
+   }
+
+   public void setSessionTtl(long sessionTtl) {
+      this.sessionTtl = sessionTtl;
+   }
+
+   public boolean isCompressionLevelSet() {
+      return compressionLevel != -1;
+   }
+
+   public int getCompressionLevel() {
+      return compressionLevel;
+   }
+
+   public void setCompressionLevel(int compressionLevel) {
+      this.compressionLevel = compressionLevel;
+   }
+
+   public boolean isWriteBatchSet() {
+      return writeBatch != -1;
+   }
+
+   public int getWriteBatch() {
+      return writeBatch;
+   }
+
+   public void setWriteBatch(int writeBatch) {
+      this.writeBatch = writeBatch;
+   }
+
+   public boolean isFlushDelaySet() {
+      return flushDelay != -1;
+   }
+
+   /**
+    * @return The flush delay in microseconds
+    */
+   public long getFlushDelay() {
+      return flushDelay;
+   }
+
+   public void setFlushDelay(long flushDelay) {
+      this.flushDelay = flushDelay;
+   }
+
+   public boolean isHandshakeTimeoutSet() {
+      return handshakeTimeout != -1;
+   }
+
+   /**
+    * @return The handshake timeout in milliseconds
+    */
+   public long getHandshakeTimeout() {
+      return handshakeTimeout;
+   }
+
+   public void setHandshakeTimeout(long handshakeTimeout) {
+      this.handshakeTimeout = handshakeTimeout;
+   }
+
+   public boolean isIdleTimeoutSet() {
+      return idleTimeout != -1;
+   }
+
+   /**
+    * @return The idle timeout in milliseconds
+    */
+   public long getIdleTimeout() {
+      return idleTimeout;
+   }
+
+   public void setIdleTimeout(long idleTimeout) {
+      this.idleTimeout = idleTimeout;
+   }
+
+   public boolean isStallTimeoutSet() {
+      return stallTimeout != -1;
+   }
+
+   /**
+    * @return The stall timeout in milliseconds
+    */
+   public long getStallTimeout() {
+      return stallTimeout;
+   }
+
+   public void setStallTimeout(long stallTimeout) {
+      this.stallTimeout = stallTimeout;
+   }
+
+   public boolean isListenersSet() {
+      return listeners != -1;
+   }
+
+   public int getListeners() {
+      return listeners;
+   }
+
+   public void setListeners(int listeners) {
+      this.listeners = listeners;
+   }
+
 }
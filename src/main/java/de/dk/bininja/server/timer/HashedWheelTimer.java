@@ -0,0 +1,219 @@
+package de.dk.bininja.server.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer for a large number of timeouts, that are mostly cancelled before they expire.
+ * The timeouts are kept in a wheel of buckets, each bucket covers one tick.
+ * A timeout, that is more than one revolution of the wheel away, counts the remaining revolutions down.
+ * Scheduling and cancelling a timeout is O(1), a single worker thread advances the wheel once per tick
+ * and runs the expired tasks, so the tasks must not block.
+ * Timeouts expire up to one tick late.
+ */
+public class HashedWheelTimer {
+   private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+   public static final long DEFAULT_TICK_MILLIS = 100;
+   public static final int DEFAULT_WHEEL_SIZE = 512;
+
+   private final long tickNanos;
+   private final Timeout[] wheel;
+   private final int mask;
+   private final long start = System.nanoTime();
+   private final Thread worker;
+
+   private long tick;
+   private int pending;
+   private volatile boolean stopped;
+   private final LongAdder expired = new LongAdder();
+
+   /**
+    * @param name The name of the worker thread
+    * @param tickMillis The duration of one tick in milliseconds
+    * @param wheelSize The number of buckets, rounded up to a power of two
+    */
+   public HashedWheelTimer(String name, long tickMillis, int wheelSize) throws IllegalArgumentException {
+      if (tickMillis < 1)
+         throw new IllegalArgumentException("Invalid tick duration: " + tickMillis);
+      if (wheelSize < 1 || wheelSize > 1 << 30)
+         throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+
+      this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+      int size = 1;
+      while (size < wheelSize)
+         size <<= 1;
+
+      this.wheel = new Timeout[size];
+      this.mask = size - 1;
+      this.worker = new Thread(this::run, name);
+      worker.setDaemon(true);
+      worker.start();
+   }
+
+   public HashedWheelTimer(String name) {
+      this(name, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+   }
+
+   /**
+    * Schedules the task to run on the worker thread after the delay.
+    *
+    * @return The timeout, that can be cancelled
+    *
+    * @throws IllegalStateException If the timer is stopped
+    */
+   public Timeout schedule(Runnable task, long delay, TimeUnit unit) throws IllegalStateException {
+      Timeout timeout = new Timeout(task);
+      long deadline = System.nanoTime() - start + unit.toNanos(Math.max(0, delay));
+      // The tick t is processed at the end of its duration, at (t + 1) * tickNanos
+      long deadlineTick = (deadline + tickNanos - 1) / tickNanos - 1;
+      synchronized (this) {
+         if (stopped)
+            throw new IllegalStateException("The timer is stopped");
+
+         long ticks = Math.max(tick, deadlineTick);
+         timeout.rounds = (ticks - tick) / wheel.length;
+         timeout.bucket = (int) (ticks & mask);
+         link(timeout);
+         pending++;
+      }
+      return timeout;
+   }
+
+   private void link(Timeout timeout) {
+      Timeout head = wheel[timeout.bucket];
+      timeout.next = head;
+      if (head != null)
+         head.previous = timeout;
+
+      wheel[timeout.bucket] = timeout;
+   }
+
+   private void unlink(Timeout timeout) {
+      if (timeout.previous == null)
+         wheel[timeout.bucket] = timeout.next;
+      else
+         timeout.previous.next = timeout.next;
+
+      if (timeout.next != null)
+         timeout.next.previous = timeout.previous;
+
+      timeout.previous = null;
+      timeout.next = null;
+   }
+
+   private void run() {
+      List<Timeout> due = new ArrayList<>();
+      while (!stopped) {
+         long sleep;
+         synchronized (this) {
+            sleep = start + (tick + 1) * tickNanos - System.nanoTime();
+         }
+         if (sleep > 0) {
+            try {
+               TimeUnit.NANOSECONDS.sleep(sleep);
+            } catch (InterruptedException e) {
+               continue;
+            }
+         }
+
+         synchronized (this) {
+            Timeout timeout = wheel[(int) (tick & mask)];
+            while (timeout != null) {
+               Timeout next = timeout.next;
+               if (timeout.rounds == 0) {
+                  unlink(timeout);
+                  timeout.state = Timeout.EXPIRED;
+                  pending--;
+                  due.add(timeout);
+               } else {
+                  timeout.rounds--;
+               }
+               timeout = next;
+            }
+            tick++;
+         }
+
+         for (Timeout timeout : due) {
+            expired.increment();
+            try {
+               timeout.task.run();
+            } catch (RuntimeException e) {
+               LOGGER.error("A timeout task failed.", e);
+            }
+         }
+         due.clear();
+      }
+   }
+
+   /**
+    * Stops the worker thread. The pending timeouts never expire.
+    */
+   public void stop() {
+      synchronized (this) {
+         stopped = true;
+      }
+      worker.interrupt();
+   }
+
+   /**
+    * @return The number of timeouts, that neither expired nor were cancelled yet
+    */
+   public synchronized int getPending() {
+      return pending;
+   }
+
+   /**
+    * @return The number of timeouts, that expired
+    */
+   public long getExpired() {
+      return expired.sum();
+   }
+
+   /**
+    * A task scheduled to run once after a delay.
+    */
+   public class Timeout {
+      private static final int PENDING = 0;
+      private static final int CANCELLED = 1;
+      private static final int EXPIRED = 2;
+
+      private final Runnable task;
+      private Timeout previous;
+      private Timeout next;
+      private int bucket;
+      private long rounds;
+      private int state = PENDING;
+
+      private Timeout(Runnable task) {
+         this.task = task;
+      }
+
+      /**
+       * @return <code>true</code> if the timeout was cancelled,
+       * <code>false</code> if it already expired or was cancelled before
+       */
+      public boolean cancel() {
+         synchronized (HashedWheelTimer.this) {
+            if (state != PENDING)
+               return false;
+
+            state = CANCELLED;
+            unlink(this);
+            pending--;
+            return true;
+         }
+      }
+
+      public boolean isExpired() {
+         synchronized (HashedWheelTimer.this) {
+            return state == EXPIRED;
+         }
+      }
+   }
+}
@@ -0,0 +1,32 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content of a download, that is transferred to the client.
+ */
+public interface Content {
+   /**
+    * @return The total length of the content in bytes or -1 if unknown
+    */
+   public long getLength();
+
+   /**
+    * @return The position in the content, the input stream starts at
+    */
+   public long getPosition();
+   public String getFilename();
+
+   /**
+    * @return The <code>ETag</code> or <code>Last-Modified</code> value of the content or <code>null</code>
+    */
+   public String getValidator();
+
+   /**
+    * @return The <code>Content-Type</code> of the content or <code>null</code> if unknown
+    */
+   public String getContentType();
+   public InputStream getInputStream() throws IOException;
+   public void close();
+}
@@ -0,0 +1,226 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.cache.Spool;
+
+/**
+ * A fetch of the content of an url into a temporary spool file, that any number of downloads can read at the same time.
+ * Every subscriber reads the spool at its own pace, so a slow subscriber does not stall the others.
+ * The fetch is stopped as soon as the last subscriber is closed before the content is complete.
+ * The spool file is deleted when the fetch ended and all subscribers are closed.
+ */
+public class Flight {
+   private static final Logger LOGGER = LoggerFactory.getLogger(Flight.class);
+
+   private final URL url;
+   private final long length;
+   private final String filename;
+   private final String validator;
+   private final String contentType;
+   private final Spool spool;
+   private final List<Runnable> endListeners = new ArrayList<>();
+
+   private int subscribers;
+   private boolean ended;
+   private volatile boolean stopped;
+
+   /**
+    * @param response The connected response, the content is fetched from
+    * @param filename The filename of the content
+    * @param spoolFile The temporary file, the content is written to
+    */
+   public Flight(URLConnection response, String filename, Path spoolFile) throws IOException {
+      this.url = response.getURL();
+      this.length = response.getContentLengthLong();
+      this.filename = filename;
+      String etag = response.getHeaderField("ETag");
+      this.validator = etag != null ? etag : response.getHeaderField("Last-Modified");
+      this.contentType = response.getContentType();
+      this.spool = Spool.create(spoolFile);
+   }
+
+   /**
+    * Subscribes to the content from the given position on.
+    *
+    * @return The content or <code>null</code> if the flight already ended
+    */
+   public synchronized Subscription subscribe(long position) throws IOException {
+      if (ended)
+         return null;
+
+      InputStream in = spool.newInputStream(position);
+      subscribers++;
+      return new Subscription(position, in);
+   }
+
+   private void unsubscribe() {
+      boolean abandoned;
+      synchronized (this) {
+         abandoned = --subscribers == 0 && !ended;
+      }
+      if (abandoned) {
+         LOGGER.debug("All subscribers of " + url + " are gone. Stopping the fetch.");
+         fail(new IOException("The fetch of " + url + " was abandoned."));
+      }
+   }
+
+   /**
+    * Called by the writer, when the content is complete.
+    */
+   public void complete() {
+      spool.complete();
+      end();
+   }
+
+   /**
+    * Called by the writer, when the content could not be fetched.
+    */
+   public void fail(IOException failure) {
+      stopped = true;
+      spool.fail(failure);
+      end();
+   }
+
+   private void end() {
+      List<Runnable> listeners;
+      synchronized (this) {
+         if (ended)
+            return;
+
+         this.ended = true;
+         listeners = new ArrayList<>(endListeners);
+      }
+      spool.discard();
+      listeners.forEach(Runnable::run);
+   }
+
+   /**
+    * Adds a listener, that is called once the flight ended.
+    * The listener is called immediately, if the flight already ended.
+    */
+   public void addEndListener(Runnable listener) {
+      synchronized (this) {
+         if (!ended) {
+            endListeners.add(listener);
+            return;
+         }
+      }
+      listener.run();
+   }
+
+   /**
+    * @return <code>true</code> if the writers should stop, because the fetch failed or nobody reads the content anymore
+    */
+   public boolean isStopped() {
+      return stopped;
+   }
+
+   public synchronized boolean isEnded() {
+      return ended;
+   }
+
+   public synchronized int getSubscribers() {
+      return subscribers;
+   }
+
+   public Spool getSpool() {
+      return spool;
+   }
+
+   public URL getUrl() {
+      return url;
+   }
+
+   public long getLength() {
+      return length;
+   }
+
+   public String getValidator() {
+      return validator;
+   }
+
+   public String getContentType() {
+      return contentType;
+   }
+
+   @Override
+   public String toString() {
+      return "Flight { url=" + url + ", subscribers=" + getSubscribers() + ", available=" + spool.getAvailable() + " }";
+   }
+
+   public class Subscription implements Content {
+      private final long position;
+      private final InputStream in;
+      private boolean closed;
+
+      private Subscription(long position, InputStream in) {
+         this.position = position;
+         this.in = in;
+      }
+
+      public Flight getFlight() {
+         return Flight.this;
+      }
+
+      @Override
+      public long getLength() {
+         return length;
+      }
+
+      @Override
+      public long getPosition() {
+         return position;
+      }
+
+      @Override
+      public String getFilename() {
+         return filename;
+      }
+
+      @Override
+      public String getValidator() {
+         return validator;
+      }
+
+      @Override
+      public String getContentType() {
+         return contentType;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+         return in;
+      }
+
+      @Override
+      public void close() {
+         synchronized (this) {
+            if (closed)
+               return;
+
+            closed = true;
+         }
+         try {
+            in.close();
+         } catch (IOException e) {
+            // Closing a spool stream does not throw
+         }
+         unsubscribe();
+      }
+
+      @Override
+      public String toString() {
+         return "Subscription { flight=" + Flight.this + ", position=" + position + " }";
+      }
+   }
+}
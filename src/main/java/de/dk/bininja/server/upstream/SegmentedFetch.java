@@ -0,0 +1,194 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.cache.Spool;
+
+/**
+ * Fetches the content of a {@link Flight} from the origin in several byte ranges at the same time.
+ * The ranges are written into the spool of the flight, which is advanced over the contiguous prefix.
+ * A segment, that fails, is requested again from where it stopped.
+ * The first segment is read from the response of the initial request.
+ */
+public class SegmentedFetch {
+   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedFetch.class);
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final Flight flight;
+   private final URL url;
+   private final long length;
+   private final String validator;
+   private final int retries;
+   private final UpstreamClient upstream;
+
+   private final Spool spool;
+   private final Segment[] segments;
+
+   private SegmentedFetch(Flight flight, long minSegmentSize, int segmentCount, int retries, UpstreamClient upstream) {
+      this.flight = flight;
+      this.url = flight.getUrl();
+      this.length = flight.getLength();
+      this.validator = flight.getValidator();
+      this.spool = flight.getSpool();
+      this.retries = retries;
+      this.upstream = upstream;
+
+      long segmentSize = Math.max(minSegmentSize, (length + segmentCount - 1) / segmentCount);
+      int count = (int) ((length + segmentSize - 1) / segmentSize);
+      this.segments = new Segment[count];
+      for (int i = 0; i < count; i++)
+         segments[i] = new Segment(i, i * segmentSize, Math.min(length, (i + 1) * segmentSize));
+   }
+
+   /**
+    * Starts to fetch the content of the flight in segments.
+    *
+    * @param request The connected initial request, that was checked with {@link #isSupported(URLConnection, int, long)}
+    * @param flight The flight, the segments are written to
+    * @param segmentCount The maximum number of segments
+    * @param minSegmentSize The minimum size of a segment in bytes
+    * @param retries How often a failed segment is requested again
+    * @param upstream Opens the range requests of the segments
+    * @param executor Runs the segments
+    */
+   public static void start(UpstreamRequest request,
+                            Flight flight,
+                            int segmentCount,
+                            long minSegmentSize,
+                            int retries,
+                            UpstreamClient upstream,
+                            Executor executor) throws IOException {
+      SegmentedFetch fetch = new SegmentedFetch(flight, minSegmentSize, segmentCount, retries, upstream);
+      LOGGER.debug("Fetching " + fetch.url + " in " + fetch.segments.length + " segments.");
+      fetch.segments[0].initial = request;
+      try {
+         for (int i = 1; i < fetch.segments.length; i++)
+            executor.execute(fetch.segments[i]);
+
+         executor.execute(fetch.segments[0]);
+      } catch (RejectedExecutionException e) {
+         IOException failure = new IOException("Could not start to fetch the segments of " + fetch.url, e);
+         flight.fail(failure);
+         throw failure;
+      }
+   }
+
+   /**
+    * Checks if the response of the connection allows to fetch the content in more than one segment.
+    */
+   public static boolean isSupported(URLConnection connection, int segmentCount, long minSegmentSize) throws IOException {
+      if (segmentCount < 2 || !(connection instanceof HttpURLConnection))
+         return false;
+
+      HttpURLConnection http = (HttpURLConnection) connection;
+      return http.getResponseCode() == HttpURLConnection.HTTP_OK
+             && "bytes".equalsIgnoreCase(http.getHeaderField("Accept-Ranges"))
+             && http.getHeaderField("Content-Encoding") == null
+             && http.getContentLengthLong() >= 2 * minSegmentSize;
+   }
+
+   private void progress() {
+      long available = 0;
+      for (Segment segment : segments) {
+         available = segment.getPosition();
+         if (available < segment.end)
+            break;
+      }
+      spool.advance(available);
+      if (available == length)
+         flight.complete();
+   }
+
+   private class Segment implements Runnable {
+      private final int index;
+      private final long end;
+      private volatile long position;
+      private UpstreamRequest initial;
+
+      public Segment(int index, long start, long end) {
+         this.index = index;
+         this.end = end;
+         this.position = start;
+      }
+
+      @Override
+      public void run() {
+         int attempt = 0;
+         while (!flight.isStopped() && position < end) {
+            try {
+               fetch();
+            } catch (IOException e) {
+               if (flight.isStopped())
+                  return;
+
+               if (++attempt > retries) {
+                  LOGGER.warn("Segment " + index + " of " + url + " failed " + attempt + " times.", e);
+                  flight.fail(e);
+                  return;
+               }
+               LOGGER.debug("Segment " + index + " of " + url + " failed at " + position + ". Retrying.", e);
+            }
+         }
+      }
+
+      private void fetch() throws IOException {
+         UpstreamRequest request;
+         if (initial != null) {
+            request = initial;
+            initial = null;
+         } else {
+            request = openRange();
+         }
+
+         try {
+            InputStream in = request.getInputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (position < end && !flight.isStopped()) {
+               int n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+               if (n == -1)
+                  throw new EOFException("Segment " + index + " ended at " + position + " instead of " + end);
+
+               spool.write(position, buffer, 0, n);
+               position += n;
+               progress();
+            }
+         } finally {
+            request.close();
+         }
+      }
+
+      private UpstreamRequest openRange() throws IOException {
+         UpstreamRequest request = upstream.open(url);
+         HttpURLConnection connection = (HttpURLConnection) request.getConnection();
+         connection.setRequestProperty("Range", "bytes=" + position + "-" + (end - 1));
+         if (validator != null)
+            connection.setRequestProperty("If-Range", validator);
+
+         try {
+            request.connect();
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_PARTIAL)
+               throw new IOException("The origin answered the range request of segment " + index + " with " + code);
+         } catch (IOException | RuntimeException e) {
+            request.close();
+            throw e;
+         }
+         return request;
+      }
+
+      public long getPosition() {
+         return position;
+      }
+   }
+}
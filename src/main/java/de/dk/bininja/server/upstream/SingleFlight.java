@@ -0,0 +1,145 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent downloads of the same url into one {@link Flight}.
+ * The first download of an url launches the flight, all downloads of the url,
+ * that arrive until the flight ended, subscribe to it.
+ * Downloads, that arrive while the flight is still being launched, wait for it, but at most the launch timeout.
+ * They are prepared on the executor of the downloads, so no receiver thread of a connection waits here.
+ */
+public class SingleFlight {
+   private static final Logger LOGGER = LoggerFactory.getLogger(SingleFlight.class);
+
+   public static final long DEFAULT_LAUNCH_TIMEOUT_MILLIS = 60 * 1000;
+
+   private final ConcurrentMap<String, CompletableFuture<Flight>> flights = new ConcurrentHashMap<>();
+   private final LongAdder launched = new LongAdder();
+   private final LongAdder joined = new LongAdder();
+   private final LongAdder timedOut = new LongAdder();
+   private volatile long launchTimeout = DEFAULT_LAUNCH_TIMEOUT_MILLIS;
+
+   /**
+    * Opens the content of the url through the flight of the url.
+    * A subscriber starts at the offset, if the flight matches the validator or no validator is given.
+    * Otherwise it starts at 0.
+    *
+    * @param launcher Launches a new flight, if there is none for the url.
+    * If <code>null</code> only an existing flight is joined.
+    *
+    * @return The content or <code>null</code> if there is no flight to join and no launcher was given
+    */
+   public Content open(URL url, long offset, String validator, Launcher launcher) throws IOException {
+      String key = url.toString();
+      while (true) {
+         CompletableFuture<Flight> pending = flights.get(key);
+         if (pending == null) {
+            if (launcher == null)
+               return null;
+
+            CompletableFuture<Flight> launching = new CompletableFuture<>();
+            pending = flights.putIfAbsent(key, launching);
+            if (pending == null)
+               return launch(key, launching, launcher);
+         }
+
+         Flight flight = await(key, pending);
+         if (flight != null) {
+            Content content = flight.subscribe(startOf(flight, offset, validator));
+            if (content != null) {
+               LOGGER.debug("Joined " + flight);
+               joined.increment();
+               return content;
+            }
+         }
+         // The flight ended or could not be launched
+         flights.remove(key, pending);
+      }
+   }
+
+   private Content launch(String key, CompletableFuture<Flight> launching, Launcher launcher) throws IOException {
+      Flight.Subscription subscription;
+      try {
+         subscription = launcher.launch();
+      } catch (IOException | RuntimeException e) {
+         flights.remove(key, launching);
+         launching.complete(null);
+         throw e;
+      }
+
+      Flight flight = subscription.getFlight();
+      flight.addEndListener(() -> flights.remove(key, launching));
+      launching.complete(flight);
+      launched.increment();
+      return subscription;
+   }
+
+   private static long startOf(Flight flight, long offset, String validator) {
+      if (validator != null && !validator.equals(flight.getValidator()))
+         return 0;
+
+      return flight.getLength() == -1 ? offset : Math.min(offset, flight.getLength());
+   }
+
+   private Flight await(String key, CompletableFuture<Flight> pending) throws IOException {
+      try {
+         return pending.get(launchTimeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for a flight to be launched");
+      } catch (ExecutionException e) {
+         return null;
+      } catch (TimeoutException e) {
+         timedOut.increment();
+         throw new IOException("Timed out waiting for the flight of " + key + " to be launched");
+      }
+   }
+
+   /**
+    * @return The time in milliseconds, a download waits at most for a flight, that is being launched
+    */
+   public long getLaunchTimeout() {
+      return launchTimeout;
+   }
+
+   public void setLaunchTimeout(long launchTimeout) {
+      if (launchTimeout <= 0)
+         throw new IllegalArgumentException("Invalid launch timeout: " + launchTimeout);
+
+      this.launchTimeout = launchTimeout;
+   }
+
+   public Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("flights", (long) flights.size());
+      statistics.put("launched", launched.sum());
+      statistics.put("joined", joined.sum());
+      statistics.put("timedOut", timedOut.sum());
+      return statistics;
+   }
+
+   @FunctionalInterface
+   public static interface Launcher {
+      /**
+       * Launches a new flight.
+       *
+       * @return The subscription of the download, that launched the flight
+       */
+      Flight.Subscription launch() throws IOException;
+   }
+}
@@ -0,0 +1,68 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.cache.Spool;
+
+/**
+ * Fetches the content of a {@link Flight} from the response of a single request.
+ */
+public class StreamFetch implements Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(StreamFetch.class);
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final UpstreamRequest request;
+   private final Flight flight;
+
+   private StreamFetch(UpstreamRequest request, Flight flight) {
+      this.request = request;
+      this.flight = flight;
+   }
+
+   /**
+    * Starts to fetch the content of the flight from the response of the connected request.
+    */
+   public static void start(UpstreamRequest request, Flight flight, Executor executor) throws IOException {
+      try {
+         executor.execute(new StreamFetch(request, flight));
+      } catch (RejectedExecutionException e) {
+         IOException failure = new IOException("Could not start to fetch " + flight.getUrl(), e);
+         flight.fail(failure);
+         throw failure;
+      }
+   }
+
+   @Override
+   public void run() {
+      Spool spool = flight.getSpool();
+      long length = flight.getLength();
+      try (UpstreamRequest upstream = request) {
+         InputStream in = upstream.getInputStream();
+         byte[] buffer = new byte[BUFFER_SIZE];
+         int readBytes;
+         while (!flight.isStopped() && (readBytes = in.read(buffer)) != -1)
+            spool.append(buffer, 0, readBytes);
+
+         if (flight.isStopped())
+            return;
+
+         if (length != -1 && spool.getAvailable() != length)
+            throw new EOFException("Expected " + length + " bytes, but got " + spool.getAvailable());
+
+         flight.complete();
+      } catch (IOException e) {
+         if (!flight.isStopped())
+            LOGGER.warn("Could not fetch " + flight.getUrl(), e);
+
+         flight.fail(e);
+      }
+   }
+}
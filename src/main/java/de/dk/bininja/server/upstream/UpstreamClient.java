@@ -0,0 +1,247 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.dk.bininja.server.metrics.Counter;
+import de.dk.bininja.server.metrics.Histogram;
+import de.dk.bininja.server.metrics.Metrics;
+
+/**
+ * Opens the requests to the origins.
+ * The connections are kept alive and reused by the keep-alive cache of the java runtime,
+ * as long as the responses are read completely and closed, which {@link UpstreamRequest} takes care of.
+ * The number of concurrent requests per host can be limited.
+ * The keep-alive cache of the runtime is configured once per process with {@link #configureKeepAlive(int)}.
+ */
+public class UpstreamClient {
+   public static final int UNLIMITED = 0;
+   public static final int DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST = 5;
+   public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30 * 1000;
+
+   /**
+    * The time the runtime keeps an idle connection alive, if the origin does not announce its own keep-alive timeout.
+    */
+   public static final long KEEP_ALIVE_MILLIS = 5 * 1000;
+
+   private final int maxConnectionsPerHost;
+   private final int maxIdleConnectionsPerHost;
+   private final ConcurrentMap<String, HostPool> hosts = new ConcurrentHashMap<>();
+   private final Histogram timeToFirstByte;
+   private final Counter failures;
+   private volatile long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+
+   /**
+    * @param maxConnectionsPerHost The maximum number of concurrent requests per host or {@link #UNLIMITED}
+    * @param maxIdleConnectionsPerHost The maximum number of idle connections per host,
+    * the keep-alive cache was configured with by {@link #configureKeepAlive(int)}
+    * @param metrics The metrics, the time to the first byte of the origins is recorded in
+    */
+   public UpstreamClient(int maxConnectionsPerHost, int maxIdleConnectionsPerHost, Metrics metrics) {
+      if (maxConnectionsPerHost < 0)
+         throw new IllegalArgumentException("Invalid maximum number of connections: " + maxConnectionsPerHost);
+      if (maxIdleConnectionsPerHost < 0)
+         throw new IllegalArgumentException("Invalid maximum number of idle connections: " + maxIdleConnectionsPerHost);
+
+      this.maxConnectionsPerHost = maxConnectionsPerHost;
+      this.maxIdleConnectionsPerHost = maxIdleConnectionsPerHost;
+      this.timeToFirstByte = timeToFirstByte(metrics);
+      this.failures = failures(metrics);
+   }
+
+   public UpstreamClient() {
+      Metrics metrics = new Metrics();
+      this.maxConnectionsPerHost = UNLIMITED;
+      this.maxIdleConnectionsPerHost = DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST;
+      this.timeToFirstByte = timeToFirstByte(metrics);
+      this.failures = failures(metrics);
+   }
+
+   /**
+    * Configures the keep-alive cache of the runtime, that is shared by all http connections of the process.
+    * The runtime reads these system properties only once, when the first http connection is opened,
+    * so this has to be called at startup before any request is made. Later changes have no effect.
+    *
+    * @param maxIdleConnectionsPerHost The maximum number of idle connections kept alive per host
+    */
+   public static void configureKeepAlive(int maxIdleConnectionsPerHost) {
+      if (maxIdleConnectionsPerHost < 0)
+         throw new IllegalArgumentException("Invalid maximum number of idle connections: " + maxIdleConnectionsPerHost);
+
+      System.setProperty("http.keepAlive", "true");
+      System.setProperty("http.maxConnections", Integer.toString(maxIdleConnectionsPerHost));
+   }
+
+   private static Histogram timeToFirstByte(Metrics metrics) {
+      return metrics.histogram("bininja_upstream_first_byte_seconds",
+                               "The time from opening a request to an origin until its response arrives");
+   }
+
+   private static Counter failures(Metrics metrics) {
+      return metrics.counter("bininja_upstream_failures_total", "The requests to origins, that failed to connect");
+   }
+
+   /**
+    * Opens a request to the url. Blocks while the maximum number of requests to the host is reached,
+    * but at most for the acquire timeout.
+    * The request has to be closed.
+    *
+    * @throws IOException If the request could not be opened or no request to the host became available in time
+    */
+   public UpstreamRequest open(URL url) throws IOException {
+      HostPool pool = hosts.computeIfAbsent(hostOf(url), HostPool::new);
+      pool.acquire();
+      try {
+         URLConnection connection = url.openConnection();
+         return new UpstreamRequest(connection, pool, this);
+      } catch (IOException | RuntimeException e) {
+         pool.release(false);
+         throw e;
+      }
+   }
+
+   /**
+    * @return The time in milliseconds, {@link #open(URL)} waits at most for a request to the host to become available
+    */
+   public long getAcquireTimeout() {
+      return acquireTimeout;
+   }
+
+   public void setAcquireTimeout(long acquireTimeout) {
+      if (acquireTimeout < 0)
+         throw new IllegalArgumentException("Invalid acquire timeout: " + acquireTimeout);
+
+      this.acquireTimeout = acquireTimeout;
+   }
+
+   void connected(long nanos) {
+      timeToFirstByte.record(nanos);
+   }
+
+   void failed() {
+      failures.increment();
+   }
+
+   private static String hostOf(URL url) {
+      int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+      return url.getProtocol() + "://" + url.getHost() + ":" + port;
+   }
+
+   /**
+    * The idle, created and reused connections are estimated, because the keep-alive cache of the runtime
+    * can not be inspected. A connection, that was returned to the cache, is counted as idle
+    * until it is taken by the next request, it expires after {@link #KEEP_ALIVE_MILLIS}
+    * or it is pushed out by more than the maximum number of idle connections.
+    *
+    * @return The statistics of the requests per host
+    */
+   public Map<String, Long> getStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<>();
+      statistics.put("maxConnectionsPerHost", (long) maxConnectionsPerHost);
+      for (HostPool pool : hosts.values()) {
+         statistics.put(pool.host + ".active", (long) pool.active.get());
+         statistics.put(pool.host + ".waiting", (long) pool.waiting.get());
+         statistics.put(pool.host + ".idle", (long) pool.idle(System.currentTimeMillis()));
+         statistics.put(pool.host + ".created", pool.created.sum());
+         statistics.put(pool.host + ".reused", pool.reused.sum());
+         statistics.put(pool.host + ".timedOut", pool.timedOut.sum());
+         statistics.put(pool.host + ".opened", pool.opened.sum());
+         statistics.put(pool.host + ".returned", pool.returned.sum());
+         statistics.put(pool.host + ".discarded", pool.discarded.sum());
+      }
+      return statistics;
+   }
+
+   class HostPool {
+      private final String host;
+      private final Semaphore permits;
+      private final AtomicInteger active = new AtomicInteger();
+      private final AtomicInteger waiting = new AtomicInteger();
+      private final LongAdder opened = new LongAdder();
+      private final LongAdder returned = new LongAdder();
+      private final LongAdder discarded = new LongAdder();
+      private final LongAdder timedOut = new LongAdder();
+      private final LongAdder created = new LongAdder();
+      private final LongAdder reused = new LongAdder();
+      private final Deque<Long> idleSince = new ArrayDeque<>();
+
+      public HostPool(String host) {
+         this.host = host;
+         this.permits = maxConnectionsPerHost == UNLIMITED ? null : new Semaphore(maxConnectionsPerHost, true);
+      }
+
+      public void acquire() throws IOException {
+         if (permits != null) {
+            waiting.incrementAndGet();
+            try {
+               if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                  timedOut.increment();
+                  throw new IOException("Timed out waiting for a connection to " + host);
+               }
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+            } finally {
+               waiting.decrementAndGet();
+            }
+         }
+         active.incrementAndGet();
+         opened.increment();
+         if (takeIdle(System.currentTimeMillis()))
+            reused.increment();
+         else
+            created.increment();
+      }
+
+      /**
+       * @param reusable If the connection was handed back to the keep-alive cache
+       */
+      public void release(boolean reusable) {
+         active.decrementAndGet();
+         if (reusable) {
+            returned.increment();
+            putIdle(System.currentTimeMillis());
+         } else {
+            discarded.increment();
+         }
+
+         if (permits != null)
+            permits.release();
+      }
+
+      private synchronized boolean takeIdle(long now) {
+         expire(now);
+         // The runtime hands out the most recently returned connection first
+         return idleSince.pollLast() != null;
+      }
+
+      private synchronized void putIdle(long now) {
+         expire(now);
+         idleSince.addLast(now);
+         while (idleSince.size() > maxIdleConnectionsPerHost)
+            idleSince.pollFirst();
+      }
+
+      private synchronized int idle(long now) {
+         expire(now);
+         return idleSince.size();
+      }
+
+      private void expire(long now) {
+         while (!idleSince.isEmpty() && now - idleSince.peekFirst() >= KEEP_ALIVE_MILLIS)
+            idleSince.pollFirst();
+      }
+   }
+}
@@ -0,0 +1,140 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.server.upstream.UpstreamClient.HostPool;
+
+/**
+ * A request to an origin, that was opened by the {@link UpstreamClient}.
+ * Closing the request releases its slot of the host and hands the connection back to the keep-alive cache,
+ * if the response was read completely.
+ */
+public class UpstreamRequest implements AutoCloseable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamRequest.class);
+
+   private static final int MAX_DRAIN = 8 * 1024;
+
+   private final URLConnection connection;
+   private final HostPool pool;
+   private final UpstreamClient client;
+
+   private boolean connected;
+   private ResponseInputStream in;
+   private boolean closed;
+
+   UpstreamRequest(URLConnection connection, HostPool pool, UpstreamClient client) {
+      this.connection = connection;
+      this.pool = pool;
+      this.client = client;
+   }
+
+   public URLConnection getConnection() {
+      return connection;
+   }
+
+   /**
+    * Connects to the origin and waits for the response headers.
+    */
+   public void connect() throws IOException {
+      long start = System.nanoTime();
+      try {
+         connection.connect();
+         this.connected = true;
+         if (connection instanceof HttpURLConnection)
+            ((HttpURLConnection) connection).getResponseCode();
+      } catch (IOException e) {
+         client.failed();
+         throw e;
+      }
+      client.connected(System.nanoTime() - start);
+   }
+
+   public synchronized InputStream getInputStream() throws IOException {
+      if (in == null)
+         this.in = new ResponseInputStream(connection.getInputStream());
+
+      return in;
+   }
+
+   @Override
+   public synchronized void close() {
+      if (closed)
+         return;
+
+      closed = true;
+      boolean reusable = false;
+      try {
+         if (in != null) {
+            reusable = in.eof;
+            in.close();
+         } else if (connected) {
+            reusable = drain();
+         }
+      } catch (IOException e) {
+         LOGGER.debug("Error closing the request to " + connection.getURL(), e);
+      } finally {
+         pool.release(reusable);
+      }
+   }
+
+   /**
+    * Reads the rest of a small response, that was not read, like the empty body of a <code>304</code>,
+    * so the connection can be reused.
+    */
+   private boolean drain() throws IOException {
+      InputStream body;
+      try {
+         body = connection.getInputStream();
+      } catch (IOException e) {
+         if (!(connection instanceof HttpURLConnection))
+            throw e;
+
+         body = ((HttpURLConnection) connection).getErrorStream();
+         if (body == null)
+            return false;
+      }
+
+      try (InputStream in = body) {
+         byte[] buffer = new byte[512];
+         int drained = 0;
+         int n;
+         while (drained <= MAX_DRAIN && (n = in.read(buffer)) != -1)
+            drained += n;
+
+         return drained <= MAX_DRAIN;
+      }
+   }
+
+   private static class ResponseInputStream extends FilterInputStream {
+      private volatile boolean eof;
+
+      public ResponseInputStream(InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException {
+         int b = super.read();
+         if (b == -1)
+            eof = true;
+
+         return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         int n = super.read(b, off, len);
+         if (n == -1)
+            eof = true;
+
+         return n;
+      }
+   }
+}
@@ -0,0 +1,109 @@
+package de.dk.bininja.server.upstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.Objects;
+
+/**
+ * Content read directly from the response of a connected {@link UpstreamRequest}.
+ * If the origin answered with a partial response, the content starts at the position of its
+ * <code>Content-Range</code>.
+ */
+public class UrlContent implements Content {
+   private final UpstreamRequest request;
+   private final URLConnection connection;
+   private final String filename;
+   private final long position;
+   private final long length;
+
+   public UrlContent(UpstreamRequest request, String filename) throws IOException {
+      this.request = Objects.requireNonNull(request);
+      this.connection = request.getConnection();
+      this.filename = filename;
+
+      String range = connection.getHeaderField("Content-Range");
+      if (connection instanceof HttpURLConnection
+          && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL
+          && range != null) {
+         this.position = parseRangeStart(range);
+         this.length = parseRangeLength(range);
+      } else {
+         this.position = 0;
+         this.length = connection.getContentLengthLong();
+      }
+   }
+
+   /**
+    * Requests the content of the connection from the given offset on.
+    * If the validator is given, the origin only answers with the requested range,
+    * if the content still matches the validator.
+    */
+   public static void requestRange(URLConnection connection, long offset, String validator) {
+      connection.setRequestProperty("Range", "bytes=" + offset + "-");
+      if (validator != null)
+         connection.setRequestProperty("If-Range", validator);
+   }
+
+   private static long parseRangeStart(String range) throws IOException {
+      // bytes <start>-<end>/<length>
+      int start = range.indexOf(' ');
+      int end = range.indexOf('-');
+      try {
+         return Long.parseLong(range.substring(start + 1, end).trim());
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+         throw new IOException("Invalid Content-Range: " + range, e);
+      }
+   }
+
+   private static long parseRangeLength(String range) {
+      String length = range.substring(range.indexOf('/') + 1).trim();
+      try {
+         return Long.parseLong(length);
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   @Override
+   public long getLength() {
+      return length;
+   }
+
+   @Override
+   public long getPosition() {
+      return position;
+   }
+
+   @Override
+   public String getValidator() {
+      String etag = connection.getHeaderField("ETag");
+      return etag != null ? etag : connection.getHeaderField("Last-Modified");
+   }
+
+   @Override
+   public String getContentType() {
+      return connection.getContentType();
+   }
+
+   @Override
+   public String getFilename() {
+      return filename;
+   }
+
+   @Override
+   public InputStream getInputStream() throws IOException {
+      return request.getInputStream();
+   }
+
+   @Override
+   public void close() {
+      request.close();
+   }
+
+   @Override
+   public String toString() {
+      return "UrlContent { url=" + connection.getURL() + " }";
+   }
+}
@@ -0,0 +1,121 @@
+package de.dk.bininja.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContentCacheTest {
+   private static final long NOW = 1_700_000_000_000L;
+
+   private Path directory;
+   private ContentCache cache;
+
+   @Before
+   public void createCache() throws IOException {
+      this.directory = Files.createTempDirectory("bininja-cache");
+      this.cache = new ContentCache(directory, 1000, Runnable::run);
+   }
+
+   @After
+   public void deleteDirectory() throws IOException {
+      Files.delete(directory);
+   }
+
+   @Test
+   public void cachesCompleteResponsesWithValidator() throws IOException {
+      assertTrue(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "1000")));
+      assertTrue(cache.isCacheable(response(200, "Last-Modified", "Tue, 14 Nov 2023 22:13:20 GMT",
+                                            "Content-Length", "10",
+                                            "Cache-Control", "public, max-age=60")));
+   }
+
+   @Test
+   public void refusesResponsesThatCanNotBeServedAgain() throws IOException {
+      assertFalse(cache.isCacheable(response(206, "ETag", "\"v1\"", "Content-Length", "10")));
+      assertFalse(cache.isCacheable(response(200, "Content-Length", "10")));
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"")));
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "1001")));
+   }
+
+   @Test
+   public void refusesResponsesForOneClient() throws IOException {
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "10",
+                                             "Cache-Control", "max-age=60, no-store")));
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "10",
+                                             "Cache-Control", "Private")));
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "10",
+                                             "Cache-Control", "private=\"Set-Cookie\"")));
+      assertFalse(cache.isCacheable(response(200, "ETag", "\"v1\"", "Content-Length", "10",
+                                             "Vary", "Accept-Encoding")));
+   }
+
+   @Test
+   public void sharedMaxAgeTakesPrecedenceAndAgeCounts() throws IOException {
+      assertEquals(NOW + 50_000, ContentCache.freshUntil(response(200, "Cache-Control", "max-age=60",
+                                                                  "Age", "10"), NOW));
+      assertEquals(NOW + 120_000, ContentCache.freshUntil(response(200, "Cache-Control", "max-age=60, s-maxage=120",
+                                                                   "Expires", "Thu, 01 Jan 1970 00:00:00 GMT"), NOW));
+   }
+
+   @Test
+   public void expiresIsRelativeToTheDateOfTheOrigin() throws IOException {
+      // The clock of the origin is an hour ahead, the response is fresh for 30 seconds
+      assertEquals(NOW + 30_000, ContentCache.freshUntil(response(200, "Date", "Tue, 14 Nov 2023 23:13:20 GMT",
+                                                                  "Expires", "Tue, 14 Nov 2023 23:13:50 GMT"), NOW));
+   }
+
+   @Test
+   public void mustBeRevalidatedWithoutFreshness() throws IOException {
+      assertEquals(0, ContentCache.freshUntil(response(200), NOW));
+      assertEquals(0, ContentCache.freshUntil(response(200, "Cache-Control", "max-age=60, no-cache"), NOW));
+      assertEquals(0, ContentCache.freshUntil(response(200, "Cache-Control", "max-age=10", "Age", "20"), NOW));
+   }
+
+   /**
+    * @param headers Pairs of header name and value
+    */
+   private static HttpURLConnection response(int status, String... headers) throws IOException {
+      Map<String, String> fields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (int i = 0; i < headers.length; i += 2)
+         fields.put(headers[i], headers[i + 1]);
+
+      return new HttpURLConnection(new URL("http://origin.test/file")) {
+         @Override
+         public void connect() {
+
+         }
+
+         @Override
+         public void disconnect() {
+
+         }
+
+         @Override
+         public boolean usingProxy() {
+            return false;
+         }
+
+         @Override
+         public int getResponseCode() {
+            return status;
+         }
+
+         @Override
+         public String getHeaderField(String name) {
+            return fields.get(name);
+         }
+      };
+   }
+}
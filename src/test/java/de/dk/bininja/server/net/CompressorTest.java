@@ -0,0 +1,97 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class CompressorTest {
+   private static final int CHUNK = 64 * 1024;
+
+   @Test
+   public void everyChunkInflatesOnArrival() throws DataFormatException {
+      Compressor compressor = new Compressor(6, CHUNK);
+      Inflater inflater = new Inflater(true);
+      byte[] text = text(CHUNK);
+      for (int i = 0; i < 2 * Compressor.SAMPLE_SIZE / CHUNK; i++) {
+         byte[] compressed = compressor.compress(text, text.length);
+         assertNotNull(compressed);
+         assertArrayEquals(text, inflate(inflater, compressed, text.length));
+      }
+      assertTrue(compressor.isEnabled());
+      compressor.close();
+   }
+
+   @Test
+   public void givesUpOnIncompressibleContent() {
+      Compressor compressor = new Compressor(6, CHUNK);
+      byte[] random = new byte[CHUNK];
+      new Random(1).nextBytes(random);
+      // The chunk, that completes the sample, is still compressed
+      for (int i = 0; i < Compressor.SAMPLE_SIZE / CHUNK; i++)
+         assertNotNull(compressor.compress(random, random.length));
+
+      assertFalse(compressor.isEnabled());
+      assertNull(compressor.compress(random, random.length));
+      compressor.close();
+   }
+
+   @Test
+   public void pooledCompressorStartsANewStream() throws DataFormatException {
+      Compressor.Pool pool = new Compressor.Pool();
+      Compressor compressor = pool.acquire(6, CHUNK);
+      byte[] random = new byte[CHUNK];
+      new Random(1).nextBytes(random);
+      for (int i = 0; i < Compressor.SAMPLE_SIZE / CHUNK; i++)
+         compressor.compress(random, random.length);
+      pool.release(compressor);
+
+      Compressor reused = pool.acquire(6, CHUNK);
+      assertSame(compressor, reused);
+      assertTrue(reused.isEnabled());
+      byte[] text = text(CHUNK);
+      assertArrayEquals(text, inflate(new Inflater(true), reused.compress(text, text.length), text.length));
+      pool.release(reused);
+      pool.close();
+   }
+
+   @Test
+   public void skipsCompressedTypes() {
+      assertTrue(Compressor.isCompressible(null));
+      assertTrue(Compressor.isCompressible("text/html; charset=UTF-8"));
+      assertTrue(Compressor.isCompressible("image/svg+xml"));
+      assertFalse(Compressor.isCompressible("image/png"));
+      assertFalse(Compressor.isCompressible("Video/MP4"));
+      assertFalse(Compressor.isCompressible("application/zip"));
+      assertFalse(Compressor.isCompressible("application/x-gzip; foo=bar"));
+   }
+
+   private static byte[] inflate(Inflater inflater, byte[] compressed, int length) throws DataFormatException {
+      inflater.setInput(compressed);
+      byte[] output = new byte[length];
+      int inflated = 0;
+      while (inflated < length && !inflater.needsInput())
+         inflated += inflater.inflate(output, inflated, length - inflated);
+
+      return Arrays.copyOf(output, inflated);
+   }
+
+   private static byte[] text(int length) {
+      byte[] line = "The quick brown fox jumps over the lazy dog.\n".getBytes(StandardCharsets.US_ASCII);
+      byte[] text = new byte[length];
+      for (int i = 0; i < length; i++)
+         text[i] = line[i % line.length];
+
+      return text;
+   }
+}
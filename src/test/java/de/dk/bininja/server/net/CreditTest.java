@@ -0,0 +1,97 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class CreditTest {
+   @Test(timeout = 10000)
+   public void unlimitedUntilTheFirstGrant() throws Exception {
+      Credit credit = new Credit();
+      assertFalse(credit.isLimited());
+      assertEquals(4096, credit.await(4096));
+      credit.consume(4096);
+      assertEquals(Long.MAX_VALUE, credit.getAvailable());
+   }
+
+   @Test(timeout = 10000)
+   public void sendsAtMostTheGrantedBytes() throws Exception {
+      Credit credit = new Credit();
+      credit.grant(1000);
+      assertEquals(1000, credit.await(4096));
+      credit.consume(600);
+      assertEquals(400, credit.await(4096));
+      assertEquals(100, credit.await(100));
+   }
+
+   @Test(timeout = 10000)
+   public void waitsForTheNextGrant() throws Exception {
+      Credit credit = new Credit();
+      credit.grant(100);
+      credit.consume(100);
+      CompletableFuture<Integer> waiting = await(credit, 4096);
+      assertWaiting(waiting);
+
+      credit.grant(50);
+      assertEquals(50, (int) waiting.get(5, TimeUnit.SECONDS));
+   }
+
+   @Test(timeout = 10000)
+   public void closingWakesTheWaitingDownload() throws Exception {
+      Credit credit = new Credit();
+      credit.grant(0);
+      CompletableFuture<Integer> waiting = await(credit, 4096);
+      assertWaiting(waiting);
+
+      credit.close();
+      try {
+         waiting.get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+         assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+         return;
+      }
+      throw new AssertionError("A closed credit must not be awaited");
+   }
+
+   @Test
+   public void grantsDoNotOverflow() {
+      Credit credit = new Credit();
+      credit.grant(Long.MAX_VALUE);
+      credit.grant(Long.MAX_VALUE);
+      assertEquals(Long.MAX_VALUE, credit.getAvailable());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void refusesNegativeCredit() {
+      new Credit().grant(-1);
+   }
+
+   private static CompletableFuture<Integer> await(Credit credit, int max) {
+      CompletableFuture<Integer> future = new CompletableFuture<>();
+      new Thread(() -> {
+         try {
+            future.complete(credit.await(max));
+         } catch (IOException | InterruptedException e) {
+            future.completeExceptionally(e);
+         }
+      }).start();
+      return future;
+   }
+
+   private static void assertWaiting(CompletableFuture<Integer> future) throws Exception {
+      try {
+         future.get(100, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+         return;
+      }
+      throw new AssertionError("Did not wait for credit");
+   }
+}
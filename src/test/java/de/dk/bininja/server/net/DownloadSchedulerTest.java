@@ -0,0 +1,109 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DownloadSchedulerTest {
+   private final List<String> admitted = new ArrayList<>();
+
+   @Test
+   public void admitsImmediatelyBelowTheMaximum() {
+      DownloadScheduler scheduler = new DownloadScheduler(2);
+      assertTrue(submit(scheduler, "a", 0).isAdmittedImmediately());
+      assertTrue(submit(scheduler, "b", 0).isAdmittedImmediately());
+      assertFalse(submit(scheduler, "c", 0).isAdmittedImmediately());
+      assertEquals(2, scheduler.getRunning());
+      assertEquals(1, scheduler.getQueued());
+   }
+
+   @Test
+   public void admitsByPriorityThenInOrderOfArrival() {
+      DownloadScheduler scheduler = new DownloadScheduler(1);
+      DownloadScheduler.Ticket running = submit(scheduler, "running", 0);
+      submit(scheduler, "low", 0);
+      submit(scheduler, "high", 5);
+      submit(scheduler, "second low", 0);
+      submit(scheduler, "second high", 5);
+
+      running.release();
+      assertEquals(Arrays.asList("high"), admitted);
+      scheduler.setMaxConcurrent(DownloadScheduler.UNLIMITED);
+      assertEquals(Arrays.asList("high", "second high", "low", "second low"), admitted);
+   }
+
+   @Test
+   public void releasingAQueuedTicketLeavesTheQueue() {
+      DownloadScheduler scheduler = new DownloadScheduler(1);
+      DownloadScheduler.Ticket running = submit(scheduler, "running", 0);
+      DownloadScheduler.Ticket queued = submit(scheduler, "queued", 0);
+      submit(scheduler, "next", 0);
+
+      queued.release();
+      assertEquals(1, scheduler.getQueued());
+      assertEquals(1, scheduler.getRunning());
+
+      running.release();
+      assertEquals(Arrays.asList("next"), admitted);
+      assertEquals(1, scheduler.getRunning());
+   }
+
+   @Test
+   public void onlyTheFirstReleaseFreesTheSlot() {
+      DownloadScheduler scheduler = new DownloadScheduler(1);
+      DownloadScheduler.Ticket running = submit(scheduler, "running", 0);
+      submit(scheduler, "first", 0);
+      submit(scheduler, "second", 0);
+
+      running.release();
+      running.release();
+      assertEquals(Arrays.asList("first"), admitted);
+      assertEquals(1, scheduler.getRunning());
+      assertEquals(1, scheduler.getQueued());
+   }
+
+   @Test
+   public void raisingTheMaximumAdmitsQueuedDownloads() {
+      DownloadScheduler scheduler = new DownloadScheduler(1);
+      submit(scheduler, "running", 0);
+      submit(scheduler, "first", 0);
+      submit(scheduler, "second", 0);
+
+      scheduler.setMaxConcurrent(DownloadScheduler.UNLIMITED);
+      assertEquals(Arrays.asList("first", "second"), admitted);
+      assertEquals(3, scheduler.getRunning());
+   }
+
+   @Test
+   public void movesQueuedDownloads() {
+      DownloadScheduler scheduler = new DownloadScheduler(1);
+      DownloadScheduler.Ticket running = submit(scheduler, "running", 0);
+      submit(scheduler, "first", 0);
+      DownloadScheduler.Ticket last = submit(scheduler, "last", 0);
+
+      assertTrue(scheduler.move(last.getId(), 1));
+      assertFalse(scheduler.move(running.getId(), 1));
+      running.release();
+      assertEquals(Arrays.asList("last"), admitted);
+   }
+
+   private DownloadScheduler.Ticket submit(DownloadScheduler scheduler, String url, int priority) {
+      return scheduler.submit("client", url, priority, new DownloadScheduler.Listener() {
+         @Override
+         public void admitted() {
+            admitted.add(url);
+         }
+
+         @Override
+         public void queued(int position, long etaMillis) {
+
+         }
+      });
+   }
+}
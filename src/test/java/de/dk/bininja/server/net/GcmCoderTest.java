@@ -0,0 +1,97 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GcmCoderTest {
+   private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+
+   private GcmCoder server;
+   private GcmCoder client;
+
+   @Before
+   public void createCoders() throws Exception {
+      this.server = new GcmCoder(KEY, true);
+      this.client = new GcmCoder(KEY, false);
+   }
+
+   @Test
+   public void decodesTheMessagesOfTheOtherSide() throws IOException {
+      byte[] message = "chunk".getBytes(StandardCharsets.US_ASCII);
+      assertArrayEquals(message, client.decode(server.encode(message)));
+      assertArrayEquals(message, server.decode(client.encode(message)));
+      assertArrayEquals(new byte[0], client.decode(server.encode(new byte[0])));
+   }
+
+   @Test
+   public void decodesReorderedMessagesWithinTheWindow() throws IOException {
+      List<byte[]> messages = encode(GcmCoder.REPLAY_WINDOW);
+      for (int i = messages.size() - 1; i >= 0; i--)
+         assertArrayEquals(new byte[] {(byte) i}, client.decode(messages.get(i)));
+   }
+
+   @Test
+   public void refusesReplayedMessages() throws IOException {
+      List<byte[]> messages = encode(3);
+      client.decode(messages.get(2));
+      client.decode(messages.get(0));
+      assertRefused(messages.get(2));
+      assertRefused(messages.get(0));
+      client.decode(messages.get(1));
+   }
+
+   @Test
+   public void refusesMessagesOlderThanTheWindow() throws IOException {
+      List<byte[]> messages = encode(GcmCoder.REPLAY_WINDOW + 1);
+      client.decode(messages.get(GcmCoder.REPLAY_WINDOW));
+      assertRefused(messages.get(0));
+      client.decode(messages.get(1));
+   }
+
+   @Test
+   public void tamperedMessagesDoNotMoveTheWindow() throws IOException {
+      List<byte[]> messages = encode(GcmCoder.REPLAY_WINDOW + 1);
+      byte[] tampered = messages.get(GcmCoder.REPLAY_WINDOW).clone();
+      tampered[tampered.length - 1] ^= 1;
+      assertRefused(tampered);
+      // The first message would be outside of the window, if the tampered message had moved it
+      client.decode(messages.get(0));
+   }
+
+   @Test
+   public void refusesItsOwnMessages() throws IOException {
+      assertRefused(server, server.encode(new byte[] {1}));
+   }
+
+   private List<byte[]> encode(int count) throws IOException {
+      List<byte[]> messages = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+         messages.add(server.encode(new byte[] {(byte) i}));
+
+      return messages;
+   }
+
+   private void assertRefused(byte[] message) {
+      assertRefused(client, message);
+   }
+
+   private static void assertRefused(GcmCoder coder, byte[] message) {
+      try {
+         coder.decode(message);
+      } catch (IOException e) {
+         return;
+      }
+      fail("The message was decoded");
+   }
+}
@@ -0,0 +1,88 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+public class SessionCacheTest {
+   private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+
+   @Test
+   public void resumesWithTheDerivedKey() throws Exception {
+      SessionCache sessions = new SessionCache();
+      byte[] ticket = sessions.issue(KEY);
+      byte[] clientNonce = nonce(1);
+
+      SessionCache.Resumption resumption = sessions.resume(ticket, clientNonce);
+      assertNotNull(resumption);
+      SecretKey clientKey = SessionCache.derive(KEY, clientNonce, resumption.getServerNonce());
+      assertArrayEquals(clientKey.getEncoded(), resumption.getKey().getEncoded());
+      assertEquals("AES", resumption.getKey().getAlgorithm());
+      assertEquals(16, resumption.getKey().getEncoded().length);
+      assertFalse(Arrays.equals(KEY.getEncoded(), resumption.getKey().getEncoded()));
+   }
+
+   @Test
+   public void ticketIsRedeemedOnlyOnce() {
+      SessionCache sessions = new SessionCache();
+      byte[] ticket = sessions.issue(KEY);
+      assertNotNull(sessions.resume(ticket, nonce(1)));
+      assertNull(sessions.resume(ticket, nonce(1)));
+      assertEquals(1L, (long) sessions.getStatistics().get("unknown"));
+   }
+
+   @Test
+   public void expiredSessionsAreNotResumed() throws Exception {
+      SessionCache sessions = new SessionCache(10, 1);
+      byte[] ticket = sessions.issue(KEY);
+      Thread.sleep(10);
+      assertNull(sessions.resume(ticket, nonce(1)));
+      assertEquals(1L, (long) sessions.getStatistics().get("expired"));
+   }
+
+   @Test
+   public void evictsTheOldestSessions() {
+      SessionCache sessions = new SessionCache(2, SessionCache.DEFAULT_TTL_MILLIS);
+      byte[] oldest = sessions.issue(KEY);
+      byte[] second = sessions.issue(KEY);
+      byte[] newest = sessions.issue(KEY);
+
+      assertNull(sessions.resume(oldest, nonce(1)));
+      assertNotNull(sessions.resume(second, nonce(1)));
+      assertNotNull(sessions.resume(newest, nonce(1)));
+      assertEquals(1L, (long) sessions.getStatistics().get("evicted"));
+   }
+
+   @Test
+   public void refusesMalformedResumptions() {
+      SessionCache sessions = new SessionCache();
+      byte[] ticket = sessions.issue(KEY);
+      assertNull(sessions.resume(Arrays.copyOf(ticket, 16), nonce(1)));
+      assertNull(sessions.resume(ticket, new byte[4]));
+      assertNull(sessions.resume(ticket, null));
+      // A malformed resumption does not use up the ticket
+      assertNotNull(sessions.resume(ticket, nonce(1)));
+   }
+
+   @Test
+   public void differentNoncesDeriveDifferentKeys() throws Exception {
+      SecretKey first = SessionCache.derive(KEY, nonce(1), nonce(2));
+      SecretKey second = SessionCache.derive(KEY, nonce(1), nonce(3));
+      assertFalse(Arrays.equals(first.getEncoded(), second.getEncoded()));
+   }
+
+   private static byte[] nonce(int value) {
+      byte[] nonce = new byte[SessionCache.NONCE_LENGTH];
+      Arrays.fill(nonce, (byte) value);
+      return nonce;
+   }
+}
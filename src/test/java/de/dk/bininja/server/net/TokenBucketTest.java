@@ -0,0 +1,54 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+   private static final long RATE = 1_000_000;
+   /** The bytes of a full bucket at {@link #RATE} */
+   private static final int BURST = (int) (RATE / 10);
+   private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(20);
+
+   @Test
+   public void unlimitedNeverWaits() {
+      TokenBucket bucket = new TokenBucket(() -> Bandwidth.UNLIMITED);
+      assertEquals(0, bucket.take(Integer.MAX_VALUE));
+   }
+
+   @Test
+   public void fullBucketAllowsOneBurst() {
+      TokenBucket bucket = new TokenBucket(() -> RATE);
+      sleepBurst();
+      assertEquals(0, bucket.take(BURST));
+
+      // The burst is used up, the next bytes have to wait for their tokens
+      long wait = bucket.take(BURST);
+      assertTrue("Waits " + wait, wait > TimeUnit.MILLISECONDS.toNanos(100) - TOLERANCE);
+   }
+
+   @Test
+   public void dryBucketPacesToTheRate() {
+      TokenBucket bucket = new TokenBucket(() -> RATE);
+      sleepBurst();
+      bucket.take(BURST);
+      long first = bucket.take(BURST / 2);
+      long second = bucket.take(BURST / 2);
+      assertTrue("Waits " + first, Math.abs(first - TimeUnit.MILLISECONDS.toNanos(50)) < TOLERANCE);
+      assertTrue("Waits " + second, Math.abs(second - TimeUnit.MILLISECONDS.toNanos(100)) < TOLERANCE);
+   }
+
+   /**
+    * Waits until a new bucket is full.
+    */
+   private static void sleepBurst() {
+      try {
+         TimeUnit.MILLISECONDS.sleep(110);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
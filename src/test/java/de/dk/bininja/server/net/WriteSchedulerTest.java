@@ -0,0 +1,161 @@
+package de.dk.bininja.server.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.server.buffer.BufferPool;
+
+public class WriteSchedulerTest {
+   private DownloadContext context;
+   private final List<Runnable> writers = new ArrayList<>();
+   private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+   @Before
+   public void createContext() {
+      this.context = new DownloadContext(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), new BufferPool());
+   }
+
+   @After
+   public void closeContext() {
+      context.close();
+   }
+
+   @Test(timeout = 10000)
+   public void flowsShareTheConnectionByWeight() throws Exception {
+      // The writer runs on the test thread, once all packets are queued
+      context.setWriteExecutor(new ManualExecutor());
+      context.setWriteBatchSize(WriteScheduler.QUANTUM);
+      context.setFlushDelay(0);
+      WriteScheduler scheduler = new WriteScheduler(context);
+      WriteScheduler.Flow light = scheduler.newFlow(1, packet -> sent.add("light"));
+      WriteScheduler.Flow heavy = scheduler.newFlow(2, packet -> sent.add("heavy"));
+      for (int i = 0; i < WriteScheduler.LOOKAHEAD; i++) {
+         light.send(packet(WriteScheduler.QUANTUM, i), written -> { });
+         heavy.send(packet(WriteScheduler.QUANTUM, i), written -> { });
+      }
+
+      runWriters();
+      assertEquals(Arrays.asList("light", "heavy", "heavy", "light"), sent);
+   }
+
+   @Test(timeout = 10000)
+   public void coalescesSmallPacketsUntilFlushed() throws Exception {
+      context.setWriteBatchSize(WriteScheduler.QUANTUM);
+      context.setFlushDelay(60_000_000);
+      WriteScheduler scheduler = new WriteScheduler(context);
+      List<DownloadDataPacket> packets = Collections.synchronizedList(new ArrayList<>());
+      List<Boolean> written = Collections.synchronizedList(new ArrayList<>());
+      WriteScheduler.Flow flow = scheduler.newFlow(1, packets::add);
+      for (int i = 0; i < 3; i++)
+         flow.send(packet(1024, i), written::add);
+
+      flow.flush();
+      assertEquals(1, packets.size());
+      byte[] expected = new byte[3 * 1024];
+      for (int i = 0; i < 3; i++)
+         Arrays.fill(expected, i * 1024, (i + 1) * 1024, (byte) i);
+
+      assertArrayEquals(expected, packets.get(0).getData());
+      assertEquals(Arrays.asList(true, true, true), written);
+   }
+
+   @Test(timeout = 10000)
+   public void closingDropsTheQueuedPackets() throws Exception {
+      context.setWriteExecutor(new ManualExecutor());
+      WriteScheduler scheduler = new WriteScheduler(context);
+      List<Boolean> written = new ArrayList<>();
+      WriteScheduler.Flow flow = scheduler.newFlow(1, packet -> sent.add("packet"));
+      flow.send(packet(1024, 0), written::add);
+      flow.close();
+
+      runWriters();
+      assertTrue(sent.isEmpty());
+      assertEquals(Arrays.asList(false), written);
+      try {
+         flow.send(packet(1024, 1), written::add);
+         fail("A closed flow accepted a packet");
+      } catch (IOException e) {
+         // Expected
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void failureIsReportedToTheNextSend() throws Exception {
+      context.setWriteExecutor(new ManualExecutor());
+      context.setFlushDelay(0);
+      WriteScheduler scheduler = new WriteScheduler(context);
+      List<Boolean> written = new ArrayList<>();
+      WriteScheduler.Flow flow = scheduler.newFlow(1, packet -> {
+         throw new IOException("The connection is closed");
+      });
+      flow.send(packet(1024, 0), written::add);
+
+      runWriters();
+      assertEquals(Arrays.asList(false), written);
+      try {
+         flow.send(packet(1024, 1), written::add);
+         fail("The failure of the previous packet was not reported");
+      } catch (IOException e) {
+         assertEquals("The connection is closed", e.getMessage());
+      }
+   }
+
+   private void runWriters() {
+      while (!writers.isEmpty())
+         writers.remove(0).run();
+   }
+
+   private static DownloadDataPacket packet(int length, int value) {
+      byte[] data = new byte[length];
+      Arrays.fill(data, (byte) value);
+      return new DownloadDataPacket(data);
+   }
+
+   private class ManualExecutor extends AbstractExecutorService {
+      @Override
+      public void execute(Runnable task) {
+         writers.add(task);
+      }
+
+      @Override
+      public void shutdown() {
+
+      }
+
+      @Override
+      public List<Runnable> shutdownNow() {
+         return Collections.emptyList();
+      }
+
+      @Override
+      public boolean isShutdown() {
+         return false;
+      }
+
+      @Override
+      public boolean isTerminated() {
+         return false;
+      }
+
+      @Override
+      public boolean awaitTermination(long timeout, TimeUnit unit) {
+         return true;
+      }
+   }
+}
@@ -0,0 +1,84 @@
+package de.dk.bininja.server.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+   private static final long TICK_MILLIS = 10;
+
+   private HashedWheelTimer timer;
+
+   @Before
+   public void startTimer() {
+      // A small wheel, so the longer delays need more than one revolution
+      this.timer = new HashedWheelTimer("test-timer", TICK_MILLIS, 4);
+   }
+
+   @After
+   public void stopTimer() {
+      timer.stop();
+   }
+
+   @Test(timeout = 10000)
+   public void expiresAfterTheDelay() throws Exception {
+      assertExpiresAfter(30);
+      assertExpiresAfter(200);
+      assertEquals(2, timer.getExpired());
+      assertEquals(0, timer.getPending());
+   }
+
+   @Test(timeout = 10000)
+   public void cancelledTimeoutsNeverExpire() throws Exception {
+      AtomicBoolean ran = new AtomicBoolean();
+      HashedWheelTimer.Timeout cancelled = timer.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+      assertEquals(1, timer.getPending());
+      assertTrue(cancelled.cancel());
+      assertFalse(cancelled.cancel());
+      assertEquals(0, timer.getPending());
+
+      CountDownLatch later = new CountDownLatch(1);
+      timer.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+      later.await();
+      assertFalse(ran.get());
+      assertFalse(cancelled.isExpired());
+   }
+
+   @Test(timeout = 10000)
+   public void expiredTimeoutsCanNotBeCancelled() throws Exception {
+      CountDownLatch expired = new CountDownLatch(1);
+      HashedWheelTimer.Timeout timeout = timer.schedule(expired::countDown, 0, TimeUnit.MILLISECONDS);
+      expired.await();
+      assertTrue(timeout.isExpired());
+      assertFalse(timeout.cancel());
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void refusesTimeoutsAfterStop() {
+      timer.stop();
+      timer.schedule(() -> { }, 10, TimeUnit.MILLISECONDS);
+   }
+
+   private void assertExpiresAfter(long delayMillis) throws InterruptedException {
+      AtomicLong expiredAt = new AtomicLong();
+      CountDownLatch expired = new CountDownLatch(1);
+      long scheduledAt = System.nanoTime();
+      timer.schedule(() -> {
+         expiredAt.set(System.nanoTime());
+         expired.countDown();
+      }, delayMillis, TimeUnit.MILLISECONDS);
+      expired.await();
+
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(expiredAt.get() - scheduledAt);
+      assertTrue("Expired after " + elapsed + " ms instead of " + delayMillis, elapsed >= delayMillis);
+   }
+}
@@ -0,0 +1,125 @@
+package de.dk.bininja.server.upstream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlightTest {
+   private static final int CHUNK = 64 * 1024;
+
+   private Path directory;
+
+   @Before
+   public void createDirectory() throws IOException {
+      this.directory = Files.createTempDirectory("bininja-flight");
+   }
+
+   @After
+   public void deleteDirectory() throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         for (Path file : (Iterable<Path>) files::iterator)
+            Files.delete(file);
+      }
+      Files.delete(directory);
+   }
+
+   @Test(timeout = 10000)
+   public void cancelledSubscriberDoesNotStopTheOthers() throws Exception {
+      byte[] data = randomBytes(3 * CHUNK);
+      Flight flight = new Flight(response(data.length), "file", directory.resolve("flight.data"));
+      Flight.Subscription cancelled = flight.subscribe(0);
+      Flight.Subscription finishing = flight.subscribe(0);
+      flight.getSpool().append(data, 0, CHUNK);
+
+      // A cancelled download is interrupted, while it reads from the spool
+      AtomicReference<IOException> failure = new AtomicReference<>();
+      Thread reader = new Thread(() -> {
+         Thread.currentThread().interrupt();
+         try {
+            cancelled.getInputStream().read(new byte[CHUNK]);
+         } catch (IOException e) {
+            failure.set(e);
+         }
+         cancelled.close();
+      });
+      reader.start();
+      reader.join();
+      assertTrue(String.valueOf(failure.get()), failure.get() instanceof ClosedByInterruptException);
+
+      flight.getSpool().append(data, CHUNK, 2 * CHUNK);
+      flight.complete();
+
+      assertArrayEquals(data, readAll(finishing.getInputStream()));
+      finishing.close();
+      assertFalse(flight.isStopped());
+      assertFalse(flight.getSpool().isBroken());
+      assertFalse(Files.exists(directory.resolve("flight.data")));
+   }
+
+   @Test(timeout = 10000)
+   public void closingTheLastSubscriberStopsTheFlight() throws Exception {
+      Flight flight = new Flight(response(CHUNK), "file", directory.resolve("flight.data"));
+      Flight.Subscription first = flight.subscribe(0);
+      Flight.Subscription second = flight.subscribe(0);
+
+      first.close();
+      assertFalse(flight.isStopped());
+      assertEquals(1, flight.getSubscribers());
+
+      second.close();
+      assertTrue(flight.isStopped());
+      assertTrue(flight.isEnded());
+   }
+
+   private static byte[] readAll(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int readBytes;
+      while ((readBytes = in.read(buffer)) != -1)
+         out.write(buffer, 0, readBytes);
+
+      return out.toByteArray();
+   }
+
+   private static byte[] randomBytes(int length) {
+      byte[] data = new byte[length];
+      new Random(length).nextBytes(data);
+      return data;
+   }
+
+   private static URLConnection response(long length) throws IOException {
+      return new URLConnection(new URL("http://origin.test/file")) {
+         @Override
+         public void connect() {
+
+         }
+
+         @Override
+         public String getHeaderField(String name) {
+            if ("content-length".equalsIgnoreCase(name))
+               return Long.toString(length);
+            if ("ETag".equalsIgnoreCase(name))
+               return "\"v1\"";
+
+            return null;
+         }
+      };
+   }
+}